@@ -0,0 +1,90 @@
+package com.tong.cits5501.jmh;
+
+import com.tong.cits5501.domolect.codec.CommandDecoder;
+import com.tong.cits5501.domolect.codec.CommandEncoder;
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares moving commands between processes as text, which the receiver
+ * parses again, with moving them in the binary form of
+ * {@link CommandEncoder} and {@link CommandDecoder}, over each family of
+ * command with conditions or a location. The encoder and decoder are kept
+ * for the whole trial, so after the first pass over the lines every name is
+ * sent as a dictionary id, as on a long-lived connection.
+ * <p>
+ * Run with {@code java -cp <classes>:<jmh jars> org.openjdk.jmh.Main CodecBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    private static final int LINES = 4096;
+    private static final long SEED = 5501;
+
+    @Param({"LOCATED", "TIME_CONDITION", "TEMPERATURE_CONDITION"})
+    public CommandMix.Family family;
+
+    private CommandParser parser;
+    private String[] lines;
+    private AugmentedCommand[] commands;
+    private CommandEncoder encoder;
+    private CommandDecoder decoder;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+    private int next;
+
+    /**
+     * Generates and parses the lines, and starts the encoder and decoder
+     * with empty dictionaries.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        REPL repl = new REPL();
+        parser = new CommandParser(repl.getCatalog(), Clock.systemUTC(), () -> 290);
+        lines = CommandMix.lines(repl, family, LINES, SEED);
+        commands = new AugmentedCommand[LINES];
+        for (int i = 0; i < LINES; i++) {
+            commands[i] = parser.parse(lines[i]);
+        }
+        encoder = new CommandEncoder();
+        decoder = new CommandDecoder(repl.getCatalog(), Clock.systemUTC(), () -> 290);
+    }
+
+    /**
+     * Parses the next line, as a receiver of text does.
+     *
+     * @return the command
+     */
+    @Benchmark
+    public AugmentedCommand parse() {
+        String line = lines[next];
+        next = (next + 1) & (LINES - 1);
+        return parser.parse(line);
+    }
+
+    /**
+     * Encodes the next command and decodes it again, as a sender and a
+     * receiver of the binary form do between them.
+     *
+     * @return the decoded command
+     */
+    @Benchmark
+    public AugmentedCommand encodeAndDecode() {
+        AugmentedCommand command = commands[next];
+        next = (next + 1) & (LINES - 1);
+        buffer.clear();
+        encoder.encode(command, buffer);
+        buffer.flip();
+        return decoder.decodeAugmented(buffer);
+    }
+}
@@ -0,0 +1,148 @@
+package com.tong.cits5501.jmh;
+
+import com.tong.cits5501.parser.REPL;
+import com.tong.cits5501.workload.LineWriter;
+import com.tong.cits5501.workload.WorkloadProfile.Action;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates seeded lines of Domolect for the benchmarks, one family of
+ * commands at a time or as a mix weighted the way a household's hubs send
+ * them. Device names come from the grammar of the {@link REPL} the lines are
+ * parsed by, so every line of a valid family parses, and the lines are
+ * written by a {@link LineWriter}, as the load driver's are.
+ */
+public final class CommandMix {
+
+    /**
+     * The families of command line a benchmark can be run over.
+     */
+    public enum Family {
+        /** {@code turn <light or appliance> on|off}. */
+        TURN,
+        /** {@code open|close|lock|unlock <barrier>}. */
+        BARRIER,
+        /** {@code set <thermal device> to <n>K}, with and without a space before the unit. */
+        SET,
+        /** Any of the above, prefixed by one of a few hundred locations. */
+        LOCATED,
+        /** A command with a {@code when} time and, mostly, an {@code until} time. */
+        TIME_CONDITION,
+        /** A command with {@code when} and, sometimes, {@code until} temperature conditions. */
+        TEMPERATURE_CONDITION,
+        /** Lines with one mistake each, as written by {@link LineWriter#appendMistake}. */
+        INVALID,
+        /** All of the above, in the proportions of {@link CommandMix#MIX_WEIGHTS}. */
+        MIXED
+    }
+
+    /**
+     * Percentages of the {@link Family#MIXED} mix, in the order of the other families.
+     */
+    static final int[] MIX_WEIGHTS = {30, 20, 5, 15, 15, 10, 5};
+
+    private static final int LOCATIONS = 300;
+
+    private final String[] switched;
+    private final String[] barriers;
+    private final String[] thermal;
+    private final SplittableRandom random;
+    private final LineWriter writer;
+    private final StringBuilder line = new StringBuilder(96);
+
+    private CommandMix(REPL repl, long seed) {
+        Map<String, List<String>> grammar = repl.getGrammar();
+        List<String> lights = grammar.get("light_source");
+        List<String> appliances = grammar.get("appliance");
+        switched = new String[lights.size() + appliances.size()];
+        for (int i = 0; i < switched.length; i++) {
+            switched[i] = i < lights.size() ? lights.get(i) : appliances.get(i - lights.size());
+        }
+        barriers = grammar.get("barrier").toArray(new String[0]);
+        thermal = grammar.get("thermal_device").toArray(new String[0]);
+        random = new SplittableRandom(seed);
+        writer = new LineWriter(random) {
+            @Override
+            protected StringBuilder appendDevice(StringBuilder line, Action action) {
+                return line.append(any(action == Action.TURN ? switched : action == Action.BARRIER ? barriers : thermal));
+            }
+        };
+    }
+
+    /**
+     * Returns command lines of a family.
+     *
+     * @param repl   the REPL whose grammar supplies device names
+     * @param family the family of the lines
+     * @param count  the number of lines
+     * @param seed   the seed, so that runs can be compared line for line
+     * @return the lines
+     */
+    static String[] lines(REPL repl, Family family, int count, long seed) {
+        CommandMix mix = new CommandMix(repl, seed);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = mix.line(family == Family.MIXED ? mix.pick() : family);
+        }
+        return lines;
+    }
+
+    private Family pick() {
+        int roll = random.nextInt(100);
+        for (int i = 0; i < MIX_WEIGHTS.length; i++) {
+            roll -= MIX_WEIGHTS[i];
+            if (roll < 0) {
+                return Family.values()[i];
+            }
+        }
+        return Family.TURN;
+    }
+
+    private String line(Family family) {
+        line.setLength(0);
+        switch (family) {
+            case TURN:
+                writer.appendAction(line, Action.TURN);
+                break;
+            case BARRIER:
+                writer.appendAction(line, Action.BARRIER);
+                break;
+            case SET:
+                writer.appendAction(line, Action.SET);
+                break;
+            case LOCATED:
+                action(line.append("room").append(random.nextInt(LOCATIONS)).append(' '));
+                break;
+            case TIME_CONDITION:
+                writer.appendTime(action(line).append(" when "));
+                if (random.nextInt(5) != 0) {
+                    writer.appendTime(line.append(" until "));
+                }
+                break;
+            case TEMPERATURE_CONDITION:
+                writer.appendTemperature(action(line).append(" when "));
+                if (random.nextInt(3) == 0) {
+                    writer.appendTemperature(line.append(" until "));
+                }
+                break;
+            case INVALID:
+                writer.appendMistake(line);
+                break;
+            default:
+                throw new IllegalArgumentException("Not a single family: " + family);
+        }
+        return line.toString();
+    }
+
+    private StringBuilder action(StringBuilder line) {
+        int roll = random.nextInt(10);
+        return writer.appendAction(line, roll < 5 ? Action.TURN : roll < 9 ? Action.BARRIER : Action.SET);
+    }
+
+    private String any(String[] words) {
+        return words[random.nextInt(words.length)];
+    }
+}
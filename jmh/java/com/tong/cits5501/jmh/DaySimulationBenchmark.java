@@ -0,0 +1,115 @@
+package com.tong.cits5501.jmh;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.schedule.CommandMonitor;
+import com.tong.cits5501.domolect.sensor.TemperatureSensor;
+import com.tong.cits5501.domolect.sensor.VirtualClock;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a simulated day of scheduled commands for many homes through a
+ * {@link CommandMonitor} on a {@link VirtualClock}, as an offline capacity
+ * test: submitting a day's commands, and running through the day that fires
+ * and reverses them.
+ * <p>
+ * Each home is a location with twenty timed and temperature-triggered
+ * commands, most of which last until a time. The outdoor temperature follows
+ * a daily curve between 283K and 303K. Commands are counted rather than sent
+ * to devices.
+ * <p>
+ * Run with {@code java -cp <classes>:<jmh jars> org.openjdk.jmh.Main DaySimulationBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DaySimulationBenchmark {
+
+    private static final int COMMANDS_PER_HOME = 20;
+    private static final long SEED = 5501;
+
+    @Param({"1000", "10000"})
+    public int homes;
+
+    private String[] lines;
+    private AugmentedCommand[] commands;
+    private CommandMonitor monitor;
+    private long executed;
+
+    /**
+     * Generates the lines of every home, three in four waiting for a time
+     * and the rest for a temperature. Settings of thermal devices cannot be
+     * reversed, so they are left out.
+     */
+    @Setup(Level.Trial)
+    public void generate() {
+        REPL repl = new REPL();
+        int count = homes * COMMANDS_PER_HOME;
+        String[] timed = CommandMix.lines(repl, CommandMix.Family.TIME_CONDITION, 2 * count, SEED);
+        String[] triggered = CommandMix.lines(repl, CommandMix.Family.TEMPERATURE_CONDITION, 2 * count, SEED);
+        lines = new String[count];
+        int nextTimed = 0;
+        int nextTriggered = 0;
+        for (int i = 0; i < count; i++) {
+            String line;
+            do {
+                line = i % 4 == 3 ? triggered[nextTriggered++] : timed[nextTimed++];
+            } while (line.startsWith("set "));
+            lines[i] = "home" + i / COMMANDS_PER_HOME + " " + line;
+        }
+    }
+
+    /**
+     * Parses the lines against a fresh clock set to midnight and builds a
+     * monitor on it, so every invocation simulates the same day.
+     */
+    @Setup(Level.Invocation)
+    public void start() {
+        VirtualClock clock = VirtualClock.at(LocalDateTime.of(2024, 1, 1, 0, 0), ZoneOffset.UTC);
+        TemperatureSensor sensor = () -> {
+            double day = LocalTime.now(clock).toSecondOfDay() / 86_400.0;
+            return (int) Math.round(293 - 10 * Math.cos(2 * Math.PI * (day - 0.125)));
+        };
+        CommandParser parser = new CommandParser(new REPL().getCatalog(), clock, sensor);
+        commands = new AugmentedCommand[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            commands[i] = parser.parse(lines[i]);
+        }
+        monitor = new CommandMonitor(clock, sensor, command -> executed++);
+    }
+
+    /**
+     * Submits every home's commands.
+     *
+     * @return the monitor
+     */
+    @Benchmark
+    public CommandMonitor submit() {
+        for (AugmentedCommand command : commands) {
+            monitor.submit(command);
+        }
+        return monitor;
+    }
+
+    /**
+     * Submits every home's commands and runs through the day.
+     *
+     * @return the number of commands and reversals carried out so far
+     */
+    @Benchmark
+    public long submitAndRunDay() {
+        submit();
+        monitor.runFor(Duration.ofDays(1));
+        return executed;
+    }
+}
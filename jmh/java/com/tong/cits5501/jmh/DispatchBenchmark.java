@@ -0,0 +1,75 @@
+package com.tong.cits5501.jmh;
+
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.execution.LocationDispatcher;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the throughput of a {@link LocationDispatcher} as the number of
+ * shards grows, with each command standing in for an actuation that takes
+ * {@code micros} microseconds. Commands are spread evenly over a few hundred
+ * locations.
+ * <p>
+ * Run with {@code java -cp <classes>:<jmh jars> org.openjdk.jmh.Main DispatchBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    private static final int COMMANDS = 2_000;
+    private static final int LOCATIONS = 256;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int shards;
+
+    @Param({"100"})
+    public int micros;
+
+    private Command[] commands;
+    private LocationDispatcher dispatcher;
+
+    /**
+     * Parses a command for each location and starts the dispatcher.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        CommandParser parser = new REPL().getParser();
+        commands = new Command[LOCATIONS];
+        for (int i = 0; i < LOCATIONS; i++) {
+            commands[i] = parser.parse("room" + i + " turn lamp on").getCommand();
+        }
+        long nanos = micros * 1_000L;
+        dispatcher = new LocationDispatcher(shards, command -> LockSupport.parkNanos(nanos));
+    }
+
+    /**
+     * Stops the dispatcher.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dispatcher.close();
+    }
+
+    /**
+     * Dispatches a batch of commands and waits for them all to finish.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public void dispatch() throws InterruptedException {
+        for (int i = 0; i < COMMANDS; i++) {
+            dispatcher.accept(commands[i % LOCATIONS]);
+        }
+        dispatcher.awaitIdle();
+    }
+}
@@ -0,0 +1,132 @@
+package com.tong.cits5501.jmh;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.ParseException;
+import com.tong.cits5501.parser.ParseResult;
+import com.tong.cits5501.parser.REPL;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing each family of Domolect command, through
+ * {@link REPL#parseCommand}, which also renders the description the REPL
+ * prints, through {@link CommandParser#tryParse} alone, and through
+ * {@link CommandParser#parse}, which reports each error as a
+ * {@link ParseException} the caller catches. Over the {@code INVALID} family
+ * the last two compare the result and exception error paths. Each invocation
+ * parses the next of a few thousand seeded lines of the family, so the branch
+ * predictors see realistic variety rather than one line over and over.
+ * <p>
+ * Run every family in throughput and average-time modes, with allocation
+ * rates from the GC profiler, with
+ * {@code java -cp <classes>:<jmh jars> com.tong.cits5501.jmh.ParserBenchmark},
+ * or pass the usual JMH options to {@code org.openjdk.jmh.Main}, for example
+ * {@code ParserBenchmark -p family=INVALID -prof gc}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    private static final int LINES = 4096;
+    private static final long SEED = 5501;
+
+    @Param
+    public CommandMix.Family family;
+
+    private REPL repl;
+    private CommandParser parser;
+    private String[] lines;
+
+    /**
+     * The position of a benchmark thread in the lines.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        String next(String[] lines) {
+            String line = lines[next];
+            next = (next + 1) & (lines.length - 1);
+            return line;
+        }
+    }
+
+    /**
+     * Generates the lines of the family, and checks that the valid families
+     * parse and the invalid one does not, so a grammar change cannot quietly
+     * turn a benchmark into a measurement of the error path.
+     */
+    @Setup
+    public void setUp() {
+        repl = new REPL();
+        parser = repl.getParser();
+        lines = CommandMix.lines(repl, family, LINES, SEED);
+        if (family != CommandMix.Family.MIXED) {
+            for (String line : lines) {
+                if (parser.tryParse(line).isSuccess() == (family == CommandMix.Family.INVALID)) {
+                    throw new IllegalStateException("Unexpected parse result for " + family + ": " + line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a line and renders the description the REPL prints for it.
+     *
+     * @param cursor the next line
+     * @return the description
+     */
+    @Benchmark
+    public String parseCommand(Cursor cursor) {
+        return repl.parseCommand(cursor.next(lines));
+    }
+
+    /**
+     * Parses a line.
+     *
+     * @param cursor the next line
+     * @return the result
+     */
+    @Benchmark
+    public ParseResult tryParse(Cursor cursor) {
+        return parser.tryParse(cursor.next(lines));
+    }
+
+    /**
+     * Parses a line, catching the exception thrown for an invalid one.
+     *
+     * @param cursor the next line
+     * @return the command, or null if the line is invalid
+     */
+    @Benchmark
+    public AugmentedCommand parseOrCatch(Cursor cursor) {
+        try {
+            return parser.parse(cursor.next(lines));
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs every benchmark in this class with the GC profiler.
+     *
+     * @param args ignored
+     * @throws RunnerException if JMH fails
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ParserBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.tong.cits5501.jmh;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.schedule.ReversalEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link ReversalEngine} holding {@code n} activated commands,
+ * three in four lasting until a time of day and the rest until a
+ * temperature: activating and deactivating one more while they wait, and
+ * firing every reversal by running through a day and then a cold and a hot
+ * reading.
+ * <p>
+ * Run with {@code java -cp <classes>:<jmh jars> org.openjdk.jmh.Main ReversalBenchmark}.
+ */
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReversalBenchmark {
+
+    /**
+     * An engine holding {@code n} activations that are never reversed.
+     */
+    public static class Active extends ScaledWorkload {
+        ReversalEngine engine;
+        AugmentedCommand[] commands;
+        private int next;
+
+        /**
+         * Builds the commands and activates them.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            engine = new ReversalEngine(LocalTime.MIDNIGHT, batch -> { });
+            commands = lasting();
+            for (AugmentedCommand command : commands) {
+                engine.activate(command);
+            }
+        }
+
+        AugmentedCommand next() {
+            AugmentedCommand command = commands[next];
+            next = next + 1 == commands.length ? 0 : next + 1;
+            return command;
+        }
+    }
+
+    /**
+     * An engine given {@code n} fresh activations before every run through
+     * the day, counting the reversals it releases.
+     */
+    public static class Day extends ScaledWorkload {
+        ReversalEngine engine;
+        AugmentedCommand[] commands;
+        int reversed;
+
+        /**
+         * Builds the commands.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            commands = lasting();
+        }
+
+        /**
+         * Activates the commands on an engine starting at midnight.
+         */
+        @Setup(Level.Invocation)
+        public void load() {
+            engine = new ReversalEngine(LocalTime.MIDNIGHT, batch -> reversed += batch.size());
+            for (AugmentedCommand command : commands) {
+                engine.activate(command);
+            }
+        }
+
+        /**
+         * Checks that every command was reversed.
+         */
+        @TearDown(Level.Invocation)
+        public void check() {
+            if (engine.size() != 0) {
+                throw new IllegalStateException(engine.size() + " commands were not reversed");
+            }
+        }
+    }
+
+    /**
+     * Activates one command alongside the {@code n} active ones and deactivates it.
+     *
+     * @param state the engine
+     * @return whether the command was still active when deactivated
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean activateAndDeactivate(Active state) {
+        return state.engine.deactivate(state.engine.activate(state.next()));
+    }
+
+    /**
+     * Reverses {@code n} activated commands: those lasting until a time as
+     * the engine runs through the day minute by minute, then those lasting
+     * until a temperature as a reading below every threshold and one above
+     * every threshold arrive.
+     *
+     * @param state the freshly loaded engine
+     * @return the number of reversals released so far
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int fireReversals(Day state) {
+        for (int minute = 1; minute <= ScaledWorkload.MINUTES_PER_DAY; minute++) {
+            state.engine.advanceTo(minute);
+        }
+        state.engine.onTemperature(ScaledWorkload.COLDEST - 1);
+        state.engine.onTemperature(ScaledWorkload.HOTTEST + 1);
+        return state.reversed;
+    }
+}
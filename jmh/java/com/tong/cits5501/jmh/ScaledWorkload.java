@@ -0,0 +1,123 @@
+package com.tong.cits5501.jmh;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.command.TemperatureCondition;
+import com.tong.cits5501.domolect.command.TimeCondition;
+import com.tong.cits5501.domolect.constant.Comparison;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalTime;
+import java.util.SplittableRandom;
+
+/**
+ * The state shared by the scheduling benchmarks: the number of pending
+ * commands {@code n}, swept over five orders of magnitude so that each
+ * benchmark reports a curve, and the means of making that many commands.
+ * <p>
+ * The commands are built around a few thousand parsed, reversible base
+ * commands, and the conditions come from pools of one condition per minute
+ * of the day and per whole degree, as they would from a parser that shares
+ * them. Only the {@link AugmentedCommand}s themselves are distinct, so the
+ * memory a run needs grows with {@code n} as a household's would.
+ */
+@State(Scope.Benchmark)
+public abstract class ScaledWorkload {
+
+    static final long SEED = 5501;
+    static final int MINUTES_PER_DAY = 24 * 60;
+    static final int COLDEST = 270;
+    static final int HOTTEST = 320;
+
+    private static final int BASE_COMMANDS = 4096;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int n;
+
+    final SplittableRandom random = new SplittableRandom(SEED);
+    private final Command[] base;
+    private final TimeCondition[] times = new TimeCondition[MINUTES_PER_DAY];
+    private final TemperatureCondition[] temperatures = new TemperatureCondition[(HOTTEST - COLDEST + 1) * 2];
+
+    /**
+     * Parses the base commands and builds the condition pools.
+     */
+    protected ScaledWorkload() {
+        REPL repl = new REPL();
+        CommandParser parser = repl.getParser();
+        String[] turns = CommandMix.lines(repl, CommandMix.Family.TURN, BASE_COMMANDS / 2, SEED);
+        String[] barriers = CommandMix.lines(repl, CommandMix.Family.BARRIER, BASE_COMMANDS / 2, SEED);
+        base = new Command[BASE_COMMANDS];
+        for (int i = 0; i < BASE_COMMANDS / 2; i++) {
+            base[2 * i] = parser.parse("room" + i % 300 + " " + turns[i]).getCommand();
+            base[2 * i + 1] = parser.parse("room" + i % 300 + " " + barriers[i]).getCommand();
+        }
+        for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+            times[minute] = new TimeCondition(LocalTime.of(minute / 60, minute % 60));
+        }
+        for (int kelvin = COLDEST; kelvin <= HOTTEST; kelvin++) {
+            temperatures[2 * (kelvin - COLDEST)] = new TemperatureCondition(kelvin, Comparison.GREATER_THAN);
+            temperatures[2 * (kelvin - COLDEST) + 1] = new TemperatureCondition(kelvin, Comparison.LESS_THAN);
+        }
+    }
+
+    /**
+     * Returns a reversible base command.
+     */
+    Command command() {
+        return base[random.nextInt(base.length)];
+    }
+
+    /**
+     * Returns a time condition for a minute spread evenly over the day.
+     */
+    TimeCondition time() {
+        return times[random.nextInt(MINUTES_PER_DAY)];
+    }
+
+    /**
+     * Returns a greater-than or less-than condition between the coldest and
+     * hottest temperatures.
+     */
+    TemperatureCondition temperature() {
+        return temperatures[random.nextInt(temperatures.length)];
+    }
+
+    /**
+     * Returns {@code n} commands that wait for a time of day.
+     */
+    AugmentedCommand[] timed() {
+        AugmentedCommand[] commands = new AugmentedCommand[n];
+        for (int i = 0; i < n; i++) {
+            commands[i] = new AugmentedCommand(time(), null, command());
+        }
+        return commands;
+    }
+
+    /**
+     * Returns {@code n} commands that wait for a temperature.
+     */
+    AugmentedCommand[] triggered() {
+        AugmentedCommand[] commands = new AugmentedCommand[n];
+        for (int i = 0; i < n; i++) {
+            commands[i] = new AugmentedCommand(temperature(), null, command());
+        }
+        return commands;
+    }
+
+    /**
+     * Returns {@code n} commands that last until a time of day or, one in
+     * four, until a temperature.
+     */
+    AugmentedCommand[] lasting() {
+        AugmentedCommand[] commands = new AugmentedCommand[n];
+        for (int i = 0; i < n; i++) {
+            commands[i] = new AugmentedCommand(null, i % 4 == 3 ? temperature() : time(), command());
+        }
+        return commands;
+    }
+}
@@ -0,0 +1,165 @@
+package com.tong.cits5501.jmh;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.schedule.CommandScheduler;
+import com.tong.cits5501.domolect.schedule.TimingWheel;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link CommandScheduler} holding {@code n} pending commands:
+ * inserting and cancelling all of them, inserting and cancelling one more
+ * while they wait, and advancing the clock through a day that fires every
+ * one.
+ * <p>
+ * Run with {@code java -cp <classes>:<jmh jars> org.openjdk.jmh.Main SchedulerBenchmark};
+ * {@code -p n=1000,100000} narrows the sweep.
+ */
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SchedulerBenchmark {
+
+    /**
+     * A scheduler already holding {@code n} commands, each handled by doing nothing.
+     */
+    public static class Loaded extends ScaledWorkload {
+        CommandScheduler scheduler;
+        AugmentedCommand[] commands;
+        private int next;
+
+        /**
+         * Builds the commands and schedules them.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            scheduler = new CommandScheduler(LocalTime.MIDNIGHT, command -> { });
+            commands = timed();
+            for (AugmentedCommand command : commands) {
+                scheduler.schedule(command);
+            }
+        }
+
+        AugmentedCommand next() {
+            AugmentedCommand command = commands[next];
+            next = next + 1 == commands.length ? 0 : next + 1;
+            return command;
+        }
+    }
+
+    /**
+     * An empty scheduler and {@code n} commands to put in it.
+     */
+    public static class Empty extends ScaledWorkload {
+        CommandScheduler scheduler;
+        AugmentedCommand[] commands;
+        TimingWheel.Timer<AugmentedCommand>[] timers;
+
+        /**
+         * Builds the commands without scheduling them.
+         */
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void setUp() {
+            scheduler = new CommandScheduler(LocalTime.MIDNIGHT, command -> { });
+            commands = timed();
+            timers = (TimingWheel.Timer<AugmentedCommand>[]) new TimingWheel.Timer<?>[n];
+        }
+    }
+
+    /**
+     * A scheduler refilled with {@code n} commands before every day it is
+     * advanced through, counting the commands that fire.
+     */
+    public static class Day extends ScaledWorkload {
+        CommandScheduler scheduler;
+        AugmentedCommand[] commands;
+        int fired;
+
+        /**
+         * Builds the commands.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            commands = timed();
+        }
+
+        /**
+         * Schedules the commands on a scheduler starting at midnight.
+         */
+        @Setup(Level.Invocation)
+        public void load() {
+            scheduler = new CommandScheduler(LocalTime.MIDNIGHT, command -> fired++);
+            for (AugmentedCommand command : commands) {
+                scheduler.schedule(command);
+            }
+        }
+
+        /**
+         * Checks that every command fired.
+         */
+        @TearDown(Level.Invocation)
+        public void check() {
+            if (scheduler.size() != 0) {
+                throw new IllegalStateException(scheduler.size() + " commands did not fire");
+            }
+        }
+    }
+
+    /**
+     * Schedules one command alongside the {@code n} pending ones and cancels it.
+     *
+     * @param state the loaded scheduler
+     * @return whether the command was still pending when cancelled
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean scheduleAndCancel(Loaded state) {
+        return state.scheduler.cancel(state.scheduler.schedule(state.next()));
+    }
+
+    /**
+     * Schedules {@code n} commands on an empty scheduler, then cancels them
+     * all, leaving it empty again.
+     *
+     * @param state the empty scheduler
+     * @return the number of commands cancelled
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int insertAndCancelAll(Empty state) {
+        AugmentedCommand[] commands = state.commands;
+        TimingWheel.Timer<AugmentedCommand>[] timers = state.timers;
+        for (int i = 0; i < commands.length; i++) {
+            timers[i] = state.scheduler.schedule(commands[i]);
+        }
+        int cancelled = 0;
+        for (TimingWheel.Timer<AugmentedCommand> timer : timers) {
+            if (state.scheduler.cancel(timer)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Advances a scheduler holding {@code n} commands through a whole day,
+     * minute by minute, firing every command.
+     *
+     * @param state the freshly loaded scheduler
+     * @return the number of commands fired so far
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int advanceThroughDay(Day state) {
+        for (int minute = 1; minute <= ScaledWorkload.MINUTES_PER_DAY; minute++) {
+            state.scheduler.advanceTo(minute);
+        }
+        return state.fired;
+    }
+}
@@ -0,0 +1,109 @@
+package com.tong.cits5501.jmh;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.command.TemperatureCondition;
+import com.tong.cits5501.domolect.schedule.TemperatureIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures pushing sensor readings against {@code n} temperature rules:
+ * through a {@link TemperatureIndex}, which visits only the rules whose truth
+ * value changed, and, for comparison, by evaluating every rule with
+ * {@link TemperatureCondition#isSatisfiedAt(int)}.
+ * <p>
+ * The readings are a seeded random walk of one degree at a time across the
+ * range the rules' thresholds cover, so each reading changes about one rule
+ * in fifty. Run with
+ * {@code java -cp <classes>:<jmh jars> org.openjdk.jmh.Main TemperatureRuleBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TemperatureRuleBenchmark {
+
+    private static final int READINGS = 4096;
+
+    /**
+     * A command waiting on a temperature, told apart by identity as in the
+     * monitor, so that equal commands are separate rules.
+     */
+    static final class Rule {
+        final AugmentedCommand command;
+
+        Rule(AugmentedCommand command) {
+            this.command = command;
+        }
+    }
+
+    /**
+     * {@code n} rules, indexed and in an array, and the readings to push.
+     */
+    public static class Rules extends ScaledWorkload {
+        TemperatureIndex<Rule> index;
+        TemperatureCondition[] conditions;
+        int[] readings;
+        int changed;
+        private int next;
+
+        /**
+         * Builds the rules and the random walk.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            index = new TemperatureIndex<>();
+            conditions = new TemperatureCondition[n];
+            AugmentedCommand[] commands = triggered();
+            for (int i = 0; i < n; i++) {
+                conditions[i] = (TemperatureCondition) commands[i].getWhenCondition();
+                index.add(conditions[i], new Rule(commands[i]));
+            }
+            readings = new int[READINGS];
+            int kelvin = (COLDEST + HOTTEST) / 2;
+            for (int i = 0; i < READINGS; i++) {
+                kelvin += kelvin == COLDEST ? 1 : kelvin == HOTTEST ? -1 : random.nextBoolean() ? 1 : -1;
+                readings[i] = kelvin;
+            }
+            index.update(readings[READINGS - 1], (rule, satisfied) -> { });
+        }
+
+        int next() {
+            int reading = readings[next];
+            next = (next + 1) & (READINGS - 1);
+            return reading;
+        }
+    }
+
+    /**
+     * Pushes a reading through the index.
+     *
+     * @param rules the indexed rules
+     * @return the number of rules that changed truth value so far
+     */
+    @Benchmark
+    public int indexedReading(Rules rules) {
+        rules.index.update(rules.next(), (rule, satisfied) -> rules.changed++);
+        return rules.changed;
+    }
+
+    /**
+     * Evaluates every rule against a reading.
+     *
+     * @param rules the rules
+     * @return the number of rules satisfied
+     */
+    @Benchmark
+    public int evaluateEveryRule(Rules rules) {
+        int kelvin = rules.next();
+        int satisfied = 0;
+        for (TemperatureCondition condition : rules.conditions) {
+            if (condition.isSatisfiedAt(kelvin)) {
+                satisfied++;
+            }
+        }
+        return satisfied;
+    }
+}
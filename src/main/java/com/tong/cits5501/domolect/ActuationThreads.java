@@ -0,0 +1,24 @@
+package com.tong.cits5501.domolect;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the executor that {@link Executable#executeAsync()} runs actions on.
+ * <p>
+ * Every action gets a virtual thread of its own, so an action blocked on slow
+ * hardware parks its thread without tying up a platform thread, and thousands
+ * of actions can be in flight at once. The executor is created on first use
+ * and is never shut down; its threads do not keep the JVM alive.
+ */
+final class ActuationThreads {
+
+    /**
+     * The shared virtual-thread-per-task executor.
+     */
+    static final ExecutorService EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("domolect-actuation-", 0).factory());
+
+    private ActuationThreads() {
+    }
+}
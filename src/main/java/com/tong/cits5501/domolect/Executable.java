@@ -1,5 +1,8 @@
 package com.tong.cits5501.domolect;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * Represents an executable action that can be performed on a device.
  *
@@ -7,6 +10,10 @@ package com.tong.cits5501.domolect;
  * actions that can be executed. Implementing classes should provide the specific
  * implementation of the execute method to define the behavior when the action is
  * performed.
+ * <p>
+ * Actions on real hardware can take hundreds of milliseconds, so an action can
+ * also be started with {@link #executeAsync()}, which returns at once and
+ * runs {@link #execute()} on a virtual thread of its own.
  */
 public interface Executable {
 
@@ -14,4 +21,25 @@ public interface Executable {
    * Executes the defined action or command.
    */
   void execute();
+
+  /**
+   * Starts executing the action on a new virtual thread.
+   *
+   * @return a future completed when the action finishes, or completed
+   *         exceptionally with whatever {@link #execute()} threw
+   */
+  default CompletableFuture<Void> executeAsync() {
+    return executeAsync(ActuationThreads.EXECUTOR);
+  }
+
+  /**
+   * Starts executing the action on the given executor.
+   *
+   * @param executor the executor that runs {@link #execute()}
+   * @return a future completed when the action finishes, or completed
+   *         exceptionally with whatever {@link #execute()} threw
+   */
+  default CompletableFuture<Void> executeAsync(Executor executor) {
+    return CompletableFuture.runAsync(this::execute, executor);
+  }
 }
@@ -0,0 +1,457 @@
+package com.tong.cits5501.domolect.codec;
+
+import com.tong.cits5501.domolect.command.*;
+import com.tong.cits5501.domolect.constant.BarrierAction;
+import com.tong.cits5501.domolect.constant.Comparison;
+import com.tong.cits5501.domolect.constant.DeviceKind;
+import com.tong.cits5501.domolect.constant.State;
+import com.tong.cits5501.domolect.device.Appliance;
+import com.tong.cits5501.domolect.device.Barrier;
+import com.tong.cits5501.domolect.device.DeviceCatalog;
+import com.tong.cits5501.domolect.device.LightSource;
+import com.tong.cits5501.domolect.sensor.TemperatureSensor;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Reads the messages written by a {@link CommandEncoder}, resolving device and
+ * location names through a {@link DeviceCatalog} so that decoded commands
+ * address the same canonical devices as parsed ones.
+ * <p>
+ * The decoder builds the same name dictionary as the encoder it reads from,
+ * and remembers the location and catalog entry for each id, and the device
+ * for each pair of location and device ids, so the catalog is only consulted
+ * the first time a name or a device arrives. Time conditions are shared
+ * between messages, one per minute of the day, so decoding a message
+ * allocates nothing beyond the command and temperature conditions it
+ * returns.
+ * <p>
+ * A message is read in full and checked before anything in it is resolved:
+ * only a well-formed command for a known device adds its location to the
+ * catalog, so malformed or hostile input leaves the catalog as it was.
+ * <p>
+ * If the buffer runs out part way through a message, as when a message has
+ * only partly arrived, the buffer's position is put back to where the message
+ * started and the dictionary is left untouched, so the message can be read
+ * again once the rest has arrived. This class is not thread-safe.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * CommandDecoder decoder = new CommandDecoder(catalog, clock, sensor);
+ * buffer.flip();
+ * AugmentedCommand command = decoder.decodeAugmented(buffer);
+ * </pre>
+ */
+public final class CommandDecoder {
+
+    private static final int NONE = Integer.MIN_VALUE;
+    private static final int MAX_CACHED_ID = 1 << 27;
+
+    private static final State[] STATES = State.values();
+    private static final BarrierAction[] ACTIONS = BarrierAction.values();
+    private static final Comparison[] COMPARISONS = Comparison.values();
+
+    private final DeviceCatalog catalog;
+    private final Clock clock;
+    private final TemperatureSensor sensor;
+
+    private String[] names = new String[64];
+    private Location[] locations = new Location[64];
+    private DeviceCatalog.Entry[] entries = new DeviceCatalog.Entry[64];
+    private int size;
+
+    /**
+     * Names sent in full in the message being read, which join the
+     * dictionary once it is complete. Handles to them are negative.
+     */
+    private final String[] literals = new String[2];
+    private int literalCount;
+
+    /**
+     * The fields of the command being read, held until the whole message has
+     * been read and its location and device can be resolved.
+     */
+    private byte kind;
+    private int locationName;
+    private int deviceName;
+    private DeviceCatalog.Entry entry;
+    private int value;
+
+    private final TimeCondition[] times = new TimeCondition[Wire.MINUTES_PER_DAY];
+
+    /**
+     * The devices decoded so far, keyed by kind, location id and device id,
+     * in an open-addressing table where a key of zero marks a free slot.
+     */
+    private long[] deviceKeys = new long[64];
+    private Object[] devices = new Object[64];
+    private int deviceCount;
+
+    /**
+     * Constructs a decoder with an empty dictionary.
+     *
+     * @param catalog resolves device and location names
+     * @param clock   the clock for decoded time conditions
+     * @param sensor  the sensor for decoded temperature conditions; may be null
+     */
+    public CommandDecoder(DeviceCatalog catalog, Clock clock, TemperatureSensor sensor) {
+        this.catalog = Objects.requireNonNull(catalog, "catalog must not be null");
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+        this.sensor = sensor;
+    }
+
+    /**
+     * Reads an augmented command.
+     *
+     * @param in the buffer to read from
+     * @return the command
+     * @throws IllegalArgumentException if the message is of another version or type, or is malformed
+     * @throws BufferUnderflowException if the buffer ends before the message does
+     */
+    public AugmentedCommand decodeAugmented(ByteBuffer in) {
+        int start = begin(in, Wire.AUGMENTED);
+        AugmentedCommand command;
+        try {
+            readCommand(in);
+            Condition when = getCondition(in);
+            Condition until = getCondition(in);
+            command = new AugmentedCommand(when, until, buildCommand());
+        } catch (RuntimeException e) {
+            abort(in, start);
+            throw e;
+        }
+        commit();
+        return command;
+    }
+
+    /**
+     * Reads a command.
+     *
+     * @param in the buffer to read from
+     * @return the command
+     * @throws IllegalArgumentException if the message is of another version or type, or is malformed
+     * @throws BufferUnderflowException if the buffer ends before the message does
+     */
+    public Command decodeCommand(ByteBuffer in) {
+        int start = begin(in, Wire.COMMAND);
+        Command command;
+        try {
+            readCommand(in);
+            command = buildCommand();
+        } catch (RuntimeException e) {
+            abort(in, start);
+            throw e;
+        }
+        commit();
+        return command;
+    }
+
+    /**
+     * Reads a condition.
+     *
+     * @param in the buffer to read from
+     * @return the condition, or null if none was written
+     * @throws IllegalArgumentException if the message is of another version or type, or is malformed
+     * @throws BufferUnderflowException if the buffer ends before the message does
+     */
+    public Condition decodeCondition(ByteBuffer in) {
+        int start = begin(in, Wire.CONDITION);
+        try {
+            return getCondition(in);
+        } catch (RuntimeException e) {
+            abort(in, start);
+            throw e;
+        }
+    }
+
+    private int begin(ByteBuffer in, byte type) {
+        int start = in.position();
+        literalCount = 0;
+        try {
+            checkVersion(in.get());
+            byte actual = in.get();
+            if (actual != type) {
+                throw new IllegalArgumentException("Expected message type " + type + " but found " + actual);
+            }
+        } catch (RuntimeException e) {
+            in.position(start);
+            throw e;
+        }
+        return start;
+    }
+
+    private static void checkVersion(byte version) {
+        if (version != Wire.VERSION) {
+            throw new IllegalArgumentException("Unsupported encoding version: " + version);
+        }
+    }
+
+    private void abort(ByteBuffer in, int start) {
+        in.position(start);
+        literalCount = 0;
+    }
+
+    private void commit() {
+        for (int i = 0; i < literalCount; i++) {
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                locations = Arrays.copyOf(locations, size * 2);
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            names[size++] = literals[i];
+            literals[i] = null;
+        }
+        literalCount = 0;
+    }
+
+    /**
+     * Reads and checks the fields of a command without resolving its
+     * location or device.
+     */
+    private void readCommand(ByteBuffer in) {
+        kind = in.get();
+        locationName = getName(in);
+        deviceName = getName(in);
+        switch (kind) {
+            case Wire.LIGHTING:
+                entry = entry(deviceName, DeviceKind.LIGHT_SOURCE);
+                value = constant(STATES, in.get()).ordinal();
+                break;
+            case Wire.APPLIANCE:
+                entry = entry(deviceName, DeviceKind.APPLIANCE);
+                value = constant(STATES, in.get()).ordinal();
+                break;
+            case Wire.BARRIER:
+                entry = entry(deviceName, DeviceKind.BARRIER);
+                value = constant(ACTIONS, in.get()).ordinal();
+                break;
+            case Wire.THERMAL:
+                entry = entry(deviceName, DeviceKind.THERMAL_DEVICE);
+                value = Wire.getVarint(in);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command kind: " + kind);
+        }
+    }
+
+    /**
+     * Builds the command read by {@link #readCommand}, resolving its location
+     * and device.
+     */
+    private Command buildCommand() {
+        Location location = location(locationName);
+        switch (kind) {
+            case Wire.LIGHTING:
+                return new LightingCommand(location, (LightSource) device(location), STATES[value]);
+            case Wire.APPLIANCE:
+                return new ApplianceCommand(location, (Appliance) device(location), STATES[value]);
+            case Wire.BARRIER:
+                return new BarrierCommand(location, ACTIONS[value], (Barrier) device(location));
+            default:
+                return new ThermalDeviceCommand(location, entry.getName(), value);
+        }
+    }
+
+    /**
+     * Returns the canonical device of the command read at a location, from
+     * the cache if both names are already in the dictionary.
+     */
+    private Object device(Location location) {
+        boolean cacheable = locationName == NONE || locationName >= 0 && locationName < MAX_CACHED_ID;
+        cacheable &= deviceName >= 0 && deviceName < MAX_CACHED_ID;
+        long key = 0;
+        if (cacheable) {
+            key = (long) kind << 56 | (long) (locationName == NONE ? 0 : locationName + 1) << 28 | deviceName;
+            int mask = deviceKeys.length - 1;
+            for (int i = spread(key) & mask; deviceKeys[i] != 0; i = (i + 1) & mask) {
+                if (deviceKeys[i] == key) {
+                    return devices[i];
+                }
+            }
+        }
+        Object device;
+        switch (kind) {
+            case Wire.LIGHTING:
+                device = catalog.lightSource(location, entry);
+                break;
+            case Wire.APPLIANCE:
+                device = catalog.appliance(location, entry);
+                break;
+            default:
+                device = catalog.barrier(location, entry);
+                break;
+        }
+        if (cacheable) {
+            cacheDevice(key, device);
+        }
+        return device;
+    }
+
+    private void cacheDevice(long key, Object device) {
+        if ((deviceCount + 1) * 2 > deviceKeys.length) {
+            long[] oldKeys = deviceKeys;
+            Object[] oldDevices = devices;
+            deviceKeys = new long[oldKeys.length * 2];
+            devices = new Object[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    insertDevice(oldKeys[i], oldDevices[i]);
+                }
+            }
+        }
+        insertDevice(key, device);
+        deviceCount++;
+    }
+
+    private void insertDevice(long key, Object device) {
+        int mask = deviceKeys.length - 1;
+        int i = spread(key) & mask;
+        while (deviceKeys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        deviceKeys[i] = key;
+        devices[i] = device;
+    }
+
+    private static int spread(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private Condition getCondition(ByteBuffer in) {
+        byte tag = in.get();
+        switch (tag) {
+            case Wire.NO_CONDITION:
+                return null;
+            case Wire.TIME:
+                int minute = Short.toUnsignedInt(in.getShort());
+                if (minute >= Wire.MINUTES_PER_DAY) {
+                    throw new IllegalArgumentException("Minute of day out of range: " + minute);
+                }
+                TimeCondition time = times[minute];
+                if (time == null) {
+                    time = new TimeCondition(LocalTime.of(minute / 60, minute % 60), clock);
+                    times[minute] = time;
+                }
+                return time;
+            case Wire.TEMPERATURE:
+                int kelvin = Wire.getVarint(in);
+                return new TemperatureCondition(kelvin, constant(COMPARISONS, in.get()), sensor);
+            default:
+                throw new IllegalArgumentException("Unknown condition tag: " + tag);
+        }
+    }
+
+    private static <E> E constant(E[] values, byte ordinal) {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalArgumentException("Unknown " + values[0].getClass().getSimpleName() + " ordinal: " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Reads a name, returning its dictionary id, the negated position plus
+     * one of a literal in this message, or {@link #NONE}.
+     */
+    private int getName(ByteBuffer in) {
+        int ref = Wire.getVarint(in);
+        if (ref == Wire.NO_NAME) {
+            return NONE;
+        }
+        if (ref == Wire.LITERAL) {
+            int length = Wire.getVarint(in);
+            if (length < 0 || length > in.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) Wire.getVarint(in);
+            }
+            if (literalCount == literals.length) {
+                throw new IllegalArgumentException("Too many new names in one message");
+            }
+            literals[literalCount] = new String(chars);
+            return -(++literalCount);
+        }
+        int id = ref - Wire.FIRST_ID;
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown name id: " + id);
+        }
+        return id;
+    }
+
+    private Location location(int name) {
+        if (name == NONE) {
+            return null;
+        }
+        if (name < 0) {
+            return catalog.location(literals[-name - 1]);
+        }
+        Location location = locations[name];
+        if (location == null) {
+            location = catalog.location(names[name]);
+            locations[name] = location;
+        }
+        return location;
+    }
+
+    private DeviceCatalog.Entry entry(int name, DeviceKind kind) {
+        if (name == NONE) {
+            throw new IllegalArgumentException("Missing device name");
+        }
+        DeviceCatalog.Entry entry;
+        if (name < 0) {
+            entry = find(literals[-name - 1]);
+        } else {
+            entry = entries[name];
+            if (entry == null) {
+                entry = find(names[name]);
+                entries[name] = entry;
+            }
+        }
+        if (!entry.is(kind)) {
+            throw new IllegalArgumentException("Device " + entry.getName() + " is not a " + kind);
+        }
+        return entry;
+    }
+
+    private DeviceCatalog.Entry find(String name) {
+        DeviceCatalog.Entry entry = catalog.find(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("Unknown device: " + name);
+        }
+        return entry;
+    }
+
+    /**
+     * Forgets every name received so far, as when the stream is restarted.
+     */
+    public void reset() {
+        Arrays.fill(names, null);
+        Arrays.fill(locations, null);
+        Arrays.fill(entries, null);
+        Arrays.fill(deviceKeys, 0);
+        Arrays.fill(devices, null);
+        size = 0;
+        deviceCount = 0;
+    }
+
+    /**
+     * Returns the number of names received so far.
+     *
+     * @return the size of the dictionary
+     */
+    public int getDictionarySize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandDecoder{dictionary=" + size + "}";
+    }
+}
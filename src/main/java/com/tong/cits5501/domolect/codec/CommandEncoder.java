@@ -0,0 +1,279 @@
+package com.tong.cits5501.domolect.codec;
+
+import com.tong.cits5501.domolect.command.*;
+
+import java.nio.ByteBuffer;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * Writes commands and conditions in a compact, versioned binary form that a
+ * {@link CommandDecoder} on the other side of a stream turns back into
+ * objects, without the text being parsed again.
+ * <p>
+ * Device and location names are dictionary-encoded: the first time a name is
+ * written it is sent in full, and afterwards as a small id, so a stream of
+ * commands for a known set of rooms costs a few bytes per command. The
+ * dictionary lives in the encoder, and a decoder builds the same dictionary
+ * as it reads, so an encoder and a decoder must see the same messages in the
+ * same order, and both be {@link #reset()} together when a stream is
+ * restarted. The wire format is described in {@link Wire}.
+ * <p>
+ * Writing allocates nothing once a name is in the dictionary. If the buffer
+ * fills up part way through a message, the buffer's position is put back to
+ * where the message started and the dictionary is left untouched, so the
+ * message can be written again into a larger buffer. This class is not
+ * thread-safe.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * CommandEncoder encoder = new CommandEncoder();
+ * ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+ * encoder.encode(parser.parse("kitchen turn lamp on when 07:00 am"), buffer);
+ * </pre>
+ */
+public final class CommandEncoder {
+
+    /**
+     * The ids of names sent so far, in an open-addressing table.
+     */
+    private String[] keys = new String[64];
+    private int[] ids = new int[64];
+    private int size;
+    private int nextId;
+
+    /**
+     * Names sent in full in the message being written, which join the
+     * dictionary once it is complete.
+     */
+    private final String[] literals = new String[2];
+    private int literalCount;
+
+    /**
+     * Constructs an encoder with an empty dictionary.
+     */
+    public CommandEncoder() {
+    }
+
+    /**
+     * Writes an augmented command with its conditions.
+     *
+     * @param command the command to write
+     * @param out     the buffer to write to
+     * @throws IllegalArgumentException if the command or a condition is of an unknown type, or a time has seconds
+     * @throws java.nio.BufferOverflowException if the message does not fit the buffer
+     */
+    public void encode(AugmentedCommand command, ByteBuffer out) {
+        int start = begin(out, Wire.AUGMENTED);
+        try {
+            putCommand(command.getCommand(), out);
+            putCondition(command.getWhenCondition(), out);
+            putCondition(command.getUntilCondition(), out);
+        } catch (RuntimeException e) {
+            abort(out, start);
+            throw e;
+        }
+        commit();
+    }
+
+    /**
+     * Writes a command.
+     *
+     * @param command the command to write
+     * @param out     the buffer to write to
+     * @throws IllegalArgumentException if the command is of an unknown type
+     * @throws java.nio.BufferOverflowException if the message does not fit the buffer
+     */
+    public void encode(Command command, ByteBuffer out) {
+        int start = begin(out, Wire.COMMAND);
+        try {
+            putCommand(command, out);
+        } catch (RuntimeException e) {
+            abort(out, start);
+            throw e;
+        }
+        commit();
+    }
+
+    /**
+     * Writes a condition.
+     *
+     * @param condition the condition to write; may be null
+     * @param out       the buffer to write to
+     * @throws IllegalArgumentException if the condition is of an unknown type, or a time has seconds
+     * @throws java.nio.BufferOverflowException if the message does not fit the buffer
+     */
+    public void encode(Condition condition, ByteBuffer out) {
+        int start = begin(out, Wire.CONDITION);
+        try {
+            putCondition(condition, out);
+        } catch (RuntimeException e) {
+            abort(out, start);
+            throw e;
+        }
+    }
+
+    private int begin(ByteBuffer out, byte type) {
+        int start = out.position();
+        literalCount = 0;
+        try {
+            out.put(Wire.VERSION);
+            out.put(type);
+        } catch (RuntimeException e) {
+            out.position(start);
+            throw e;
+        }
+        return start;
+    }
+
+    private void abort(ByteBuffer out, int start) {
+        out.position(start);
+        literalCount = 0;
+    }
+
+    private void commit() {
+        for (int i = 0; i < literalCount; i++) {
+            add(literals[i]);
+            literals[i] = null;
+        }
+        literalCount = 0;
+    }
+
+    private void putCommand(Command command, ByteBuffer out) {
+        Location location = command.getLocation();
+        if (command instanceof LightingCommand cmd) {
+            out.put(Wire.LIGHTING);
+            putName(out, location == null ? null : location.getName());
+            putName(out, cmd.getLightSource().getName());
+            out.put((byte) cmd.getState().ordinal());
+        } else if (command instanceof ApplianceCommand cmd) {
+            out.put(Wire.APPLIANCE);
+            putName(out, location == null ? null : location.getName());
+            putName(out, cmd.getAppliance().getName());
+            out.put((byte) cmd.getState().ordinal());
+        } else if (command instanceof BarrierCommand cmd) {
+            out.put(Wire.BARRIER);
+            putName(out, location == null ? null : location.getName());
+            putName(out, cmd.getBarrier().getName());
+            out.put((byte) cmd.getAction().ordinal());
+        } else if (command instanceof ThermalDeviceCommand cmd) {
+            out.put(Wire.THERMAL);
+            putName(out, location == null ? null : location.getName());
+            putName(out, cmd.getThermalDevice());
+            Wire.putVarint(out, cmd.getTemperature());
+        } else {
+            throw new IllegalArgumentException("Cannot encode command: " + command);
+        }
+    }
+
+    private void putCondition(Condition condition, ByteBuffer out) {
+        if (condition == null) {
+            out.put(Wire.NO_CONDITION);
+        } else if (condition instanceof TimeCondition time) {
+            LocalTime at = time.getTime();
+            if (at.getSecond() != 0 || at.getNano() != 0) {
+                throw new IllegalArgumentException("Only whole minutes can be encoded: " + at);
+            }
+            out.put(Wire.TIME);
+            out.putShort((short) (at.getHour() * 60 + at.getMinute()));
+        } else if (condition instanceof TemperatureCondition temperature) {
+            out.put(Wire.TEMPERATURE);
+            Wire.putVarint(out, temperature.getKelvin());
+            out.put((byte) temperature.getComparison().ordinal());
+        } else {
+            throw new IllegalArgumentException("Cannot encode condition: " + condition);
+        }
+    }
+
+    private void putName(ByteBuffer out, String name) {
+        if (name == null) {
+            Wire.putVarint(out, Wire.NO_NAME);
+            return;
+        }
+        int id = idOf(name);
+        if (id >= 0) {
+            Wire.putVarint(out, Wire.FIRST_ID + id);
+            return;
+        }
+        Wire.putVarint(out, Wire.LITERAL);
+        Wire.putVarint(out, name.length());
+        for (int i = 0; i < name.length(); i++) {
+            Wire.putVarint(out, name.charAt(i));
+        }
+        literals[literalCount++] = name;
+    }
+
+    private int idOf(String name) {
+        int mask = keys.length - 1;
+        for (int i = spread(name.hashCode()) & mask; ; i = (i + 1) & mask) {
+            String key = keys[i];
+            if (key == null) {
+                return -1;
+            }
+            if (key.equals(name)) {
+                return ids[i];
+            }
+        }
+    }
+
+    /**
+     * Gives a name the next id. A name sent in full twice in one message
+     * uses up two ids, as it does in the decoder, but keeps the first.
+     */
+    private void add(String name) {
+        int id = nextId++;
+        if (idOf(name) >= 0) {
+            return;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            String[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new String[oldKeys.length * 2];
+            ids = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    insert(oldKeys[i], oldIds[i]);
+                }
+            }
+        }
+        insert(name, id);
+        size++;
+    }
+
+    private void insert(String name, int id) {
+        int mask = keys.length - 1;
+        int i = spread(name.hashCode()) & mask;
+        while (keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = name;
+        ids[i] = id;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Forgets every name sent so far, as when the stream is restarted.
+     */
+    public void reset() {
+        Arrays.fill(keys, null);
+        size = 0;
+        nextId = 0;
+    }
+
+    /**
+     * Returns the number of ids given out so far.
+     *
+     * @return the size of the dictionary
+     */
+    public int getDictionarySize() {
+        return nextId;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandEncoder{dictionary=" + nextId + "}";
+    }
+}
@@ -0,0 +1,88 @@
+package com.tong.cits5501.domolect.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and primitive encodings shared by {@link CommandEncoder} and
+ * {@link CommandDecoder}.
+ * <p>
+ * Every message starts with the format version and a message type. The body
+ * of a command is its kind, a location name, a device name and then one
+ * byte for a state or barrier action, or a varint for the target temperature
+ * of a thermal device. The body of a condition is a tag, followed by the
+ * minute of the day as an unsigned short for a time, or by the Kelvin value
+ * as a varint and the comparison ordinal as a byte for a temperature. An
+ * augmented command is a command followed by its "when" and "until"
+ * conditions.
+ * <p>
+ * A name is a varint: {@link #NO_NAME} for a missing location,
+ * {@link #LITERAL} followed by the name, or {@link #FIRST_ID} plus the
+ * dictionary id of a name sent before. A literal name is its length in chars
+ * as a varint followed by each char as a varint, and once the message it
+ * appears in is complete it is given the next dictionary id on both sides.
+ * Varints are unsigned LEB128: seven bits per byte, least significant first,
+ * with the top bit set on every byte but the last.
+ * <p>
+ * The command journal stores each pending command as one augmented-command
+ * message written with an empty dictionary, so this is the only binary
+ * format for commands.
+ */
+final class Wire {
+
+    static final byte VERSION = 1;
+
+    static final byte COMMAND = 1;
+    static final byte CONDITION = 2;
+    static final byte AUGMENTED = 3;
+
+    static final byte LIGHTING = 1;
+    static final byte APPLIANCE = 2;
+    static final byte BARRIER = 3;
+    static final byte THERMAL = 4;
+
+    static final byte NO_CONDITION = 0;
+    static final byte TIME = 1;
+    static final byte TEMPERATURE = 2;
+
+    static final int NO_NAME = 0;
+    static final int LITERAL = 1;
+    static final int FIRST_ID = 2;
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    private Wire() {
+    }
+
+    /**
+     * Writes an int as an unsigned varint.
+     *
+     * @param out   the buffer to write to
+     * @param value the value; negative values take five bytes
+     */
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned varint written by {@link #putVarint}.
+     *
+     * @param in the buffer to read from
+     * @return the value
+     * @throws IllegalArgumentException if the varint is longer than five bytes
+     */
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
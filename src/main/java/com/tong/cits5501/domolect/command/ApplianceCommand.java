@@ -2,6 +2,7 @@ package com.tong.cits5501.domolect.command;
 
 import com.tong.cits5501.domolect.constant.State;
 import com.tong.cits5501.domolect.device.Appliance;
+import com.tong.cits5501.domolect.metrics.Latencies;
 
 /**
  * Represents a command to control an {@link Appliance} within the
@@ -75,14 +76,19 @@ public final class ApplianceCommand extends Command {
     /**
      * Executes the command by sending instructions to the
      * appropriate Appliance.
+     *
+     * @return the state the appliance was driven to
      */
     @Override
-    public void execute() {
+    protected Enum<?> doExecute() {
+        long actuation = Latencies.start();
         if (state == State.ON) {
             appliance.turnOn();
         } else {
             appliance.turnOff();
         }
+        Latencies.recordActuation(getLocation(), appliance.getName(), actuation);
+        return state;
     }
 
     @Override
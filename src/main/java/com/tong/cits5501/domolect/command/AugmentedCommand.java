@@ -3,6 +3,8 @@ package com.tong.cits5501.domolect.command;
 import com.tong.cits5501.domolect.Executable;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Represents an augmented command that is executed based on specified conditions.
@@ -114,4 +116,16 @@ public final class AugmentedCommand implements Executable {
     public void execute() {
         this.command.execute();
     }
+
+    /**
+     * Starts executing the base command on the given executor. As with
+     * {@link #execute()}, the conditions are not consulted.
+     *
+     * @param executor the executor that runs the base command
+     * @return a future completed when the base command finishes
+     */
+    @Override
+    public CompletableFuture<Void> executeAsync(Executor executor) {
+        return command.executeAsync(executor);
+    }
 }
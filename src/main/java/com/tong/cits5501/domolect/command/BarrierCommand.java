@@ -2,6 +2,7 @@ package com.tong.cits5501.domolect.command;
 
 import com.tong.cits5501.domolect.constant.BarrierAction;
 import com.tong.cits5501.domolect.device.Barrier;
+import com.tong.cits5501.domolect.metrics.Latencies;
 
 /**
  * Represents a command to perform an action on a {@link Barrier} within the
@@ -63,9 +64,12 @@ public final class BarrierCommand extends Command {
     /**
      * Executes the command by sending instructions to the
      * appropriate Barrier.
+     *
+     * @return the action the barrier was driven through
      */
     @Override
-    public void execute() {
+    protected Enum<?> doExecute() {
+        long actuation = Latencies.start();
         switch (action) {
             case OPEN:
                 barrier.open();
@@ -80,6 +84,8 @@ public final class BarrierCommand extends Command {
                 barrier.unlock();
                 break;
         }
+        Latencies.recordActuation(getLocation(), barrier.getName(), actuation);
+        return action;
     }
 
     @Override
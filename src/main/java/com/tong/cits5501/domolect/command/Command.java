@@ -1,6 +1,9 @@
 package com.tong.cits5501.domolect.command;
 
 import com.tong.cits5501.domolect.Executable;
+import com.tong.cits5501.domolect.events.DeviceTransitionEvent;
+import com.tong.cits5501.domolect.events.ExecuteEvent;
+import com.tong.cits5501.domolect.metrics.Latencies;
 
 /**
  * Represents a base class for commands within the Domotopia system. 
@@ -12,7 +15,14 @@ import com.tong.cits5501.domolect.Executable;
  * specified, the command applies globally to the entire premises.
  * 
  * <p>Concrete subclasses must implement the specific behavior of the 
- * command and define the context in which it operates.
+ * command and define the context in which it operates. They do so in
+ * {@link #doExecute()}, which only drives the device; {@link #execute()}
+ * wraps it with the {@link ExecuteEvent}, the execution latency of the
+ * command's type and, once the device has been driven, the
+ * {@link DeviceTransitionEvent}, so every command is observed the same way.
+ *
+ * <p>A command can be started without waiting for the hardware with
+ * {@link #executeAsync()}, which runs {@link #execute()} on a virtual thread.
  */
 public abstract class Command implements Executable {
   
@@ -39,11 +49,40 @@ public abstract class Command implements Executable {
   }
 
   /**
-   * Executes the command. The specific implementation will be defined 
-   * in subclasses of {@code Command}.
+   * Executes the command by calling {@link #doExecute()}, recording an
+   * {@link ExecuteEvent} and the {@link Latencies.Stage#EXECUTE} latency of
+   * the command's type whether or not it succeeds, and a
+   * {@link DeviceTransitionEvent} if it does.
    */
   @Override
-  public abstract void execute();
+  public final void execute() {
+    ExecuteEvent event = new ExecuteEvent();
+    event.begin();
+    long start = Latencies.start();
+    Throwable failure = null;
+    Enum<?> transition;
+    try {
+      transition = doExecute();
+    } catch (RuntimeException e) {
+      failure = e;
+      throw e;
+    } finally {
+      Latencies.record(Latencies.Stage.EXECUTE, getClass(), start);
+      event.end(this, failure);
+    }
+    if (transition != null) {
+      DeviceTransitionEvent.emit(this, transition);
+    }
+  }
+
+  /**
+   * Drives the device to carry out the command. The specific
+   * implementation will be defined in subclasses of {@code Command}.
+   *
+   * @return the state or action the device was driven to, or null if
+   *         there is no transition to report
+   */
+  protected abstract Enum<?> doExecute();
 
   @Override
   public String toString() {
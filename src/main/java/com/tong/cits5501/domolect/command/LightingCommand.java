@@ -2,6 +2,7 @@ package com.tong.cits5501.domolect.command;
 
 import com.tong.cits5501.domolect.constant.State;
 import com.tong.cits5501.domolect.device.LightSource;
+import com.tong.cits5501.domolect.metrics.Latencies;
 
 /**
  * Represents a command to control a light source.
@@ -46,9 +47,12 @@ public final class LightingCommand extends Command {
     /**
      * Executes the command by sending instructions to the
      * appropriate LightSource.
+     *
+     * @return the state the light source was driven to
      */
     @Override
-    public void execute() {
+    protected Enum<?> doExecute() {
+        long actuation = Latencies.start();
         switch (getState()) {
             case ON:
                 getLightSource().turnOn();
@@ -57,6 +61,8 @@ public final class LightingCommand extends Command {
                 getLightSource().turnOff();
                 break;
         }
+        Latencies.recordActuation(getLocation(), lightSource.getName(), actuation);
+        return getState();
     }
 
     @Override
@@ -1,6 +1,7 @@
 package com.tong.cits5501.domolect.command;
 
 import com.tong.cits5501.domolect.constant.Comparison;
+import com.tong.cits5501.domolect.sensor.TemperatureSensor;
 
 import java.util.Objects;
 
@@ -14,25 +15,42 @@ import java.util.Objects;
  * For example, if the comparison is LESS_THAN, then
  * the condition is fulfilled when the actual temperature
  * is less than the target temperature.
+ * <p>
+ * The actual temperature is read from a {@link TemperatureSensor}, which can
+ * be a real sensor or a simulated one.
  */
 public final class TemperatureCondition extends Condition {
 
     private final int kelvin;
     private final Comparison comparison;
+    private final TemperatureSensor sensor;
 
     /**
      * Constructs a TemperatureCondition with the specified temperature in Kelvin
-     * and the desired comparison.
+     * and the desired comparison, without a sensor to evaluate it against.
      *
      * @param kelvin     the temperature in Kelvin; must be a positive value
      * @param comparison the comparison result to be applied (LESS_THAN, EQUAL_TO, GREATER_THAN)
      */
     public TemperatureCondition(int kelvin, Comparison comparison) {
+        this(kelvin, comparison, null);
+    }
+
+    /**
+     * Constructs a TemperatureCondition with the specified temperature in Kelvin
+     * and the desired comparison, evaluated against the given sensor.
+     *
+     * @param kelvin     the temperature in Kelvin; must be a positive value
+     * @param comparison the comparison result to be applied (LESS_THAN, EQUAL_TO, GREATER_THAN)
+     * @param sensor     the sensor that reads the actual temperature; may be null
+     */
+    public TemperatureCondition(int kelvin, Comparison comparison, TemperatureSensor sensor) {
         if (kelvin <= 0) {
             throw new IllegalArgumentException("Temperature must be a positive value.");
         }
         this.kelvin = kelvin;
         this.comparison = comparison;
+        this.sensor = sensor;
     }
 
     /**
@@ -53,6 +71,35 @@ public final class TemperatureCondition extends Condition {
         return comparison;
     }
 
+    /**
+     * Returns the sensor this condition is evaluated against.
+     *
+     * @return the sensor, or null if none is attached
+     */
+    public TemperatureSensor getSensor() {
+        return sensor;
+    }
+
+    /**
+     * Checks whether a temperature satisfies this condition, that is, whether
+     * it holds this condition's comparison to the target temperature.
+     *
+     * @param actualKelvin the temperature to test, in Kelvin
+     * @return true if the condition holds at that temperature, false otherwise
+     */
+    public boolean isSatisfiedAt(int actualKelvin) {
+        switch (comparison) {
+            case LESS_THAN:
+                return actualKelvin < kelvin;
+            case EQUAL_TO:
+                return actualKelvin == kelvin;
+            case GREATER_THAN:
+                return actualKelvin > kelvin;
+            default:
+                throw new IllegalStateException("Unknown comparison: " + comparison);
+        }
+    }
+
     /**
      * Returns a string representation of the TemperatureCondition.
      *
@@ -68,7 +115,8 @@ public final class TemperatureCondition extends Condition {
      *
      * @param o the object to compare to
      * @return true if the other object is a TemperatureCondition
-     * with the same Kelvin value and comparison result, false otherwise
+     * with the same Kelvin value and comparison result, false otherwise;
+     * the sensors are not compared
      */
     @Override
     public boolean equals(Object o) {
@@ -93,9 +141,13 @@ public final class TemperatureCondition extends Condition {
      * queries to appropriate sensors.
      *
      * @return true if the condition is satisfied, false otherwise
+     * @throws IllegalStateException if no sensor is attached to this condition
      */
     @Override
     public boolean isSatisfied() {
-        throw new RuntimeException("The isSatisfied method is not implemented yet.");
+        if (sensor == null) {
+            throw new IllegalStateException("No temperature sensor is attached to this condition.");
+        }
+        return isSatisfiedAt(sensor.readKelvin());
     }
 }
@@ -53,9 +53,11 @@ public final class ThermalDeviceCommand extends Command {
 
     /**
      * Executes the command by sending instructions to the specified device.
+     *
+     * @return never returns normally
      */
     @Override
-    public void execute() {
+    protected Enum<?> doExecute() {
         throw new RuntimeException("The turnOff method is not implemented yet.");
     }
 
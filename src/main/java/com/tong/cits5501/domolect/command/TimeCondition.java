@@ -1,22 +1,40 @@
 package com.tong.cits5501.domolect.command;
 
+import java.time.Clock;
 import java.time.LocalTime;
 import java.util.Objects;
 
 /**
  * Represents a time condition defined by a specific {@link LocalTime}.
  * This condition can be used to determine when a certain time of day is reached.
+ * <p>
+ * The condition reads the time from a {@link Clock}, which defaults to the
+ * system clock and can be replaced with a virtual one for simulation.
  */
 public final class TimeCondition extends Condition {
     private final LocalTime time;
+    private final Clock clock;
 
     /**
-     * Constructs a TimeCondition with the specified time.
+     * Constructs a TimeCondition with the specified time, evaluated against
+     * the system clock.
      *
      * @param time the time as a {@link LocalTime}
      */
     public TimeCondition(LocalTime time) {
+        this(time, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructs a TimeCondition with the specified time, evaluated against
+     * the given clock.
+     *
+     * @param time  the time as a {@link LocalTime}
+     * @param clock the clock used to tell the current time
+     */
+    public TimeCondition(LocalTime time, Clock clock) {
         this.time = Objects.requireNonNull(time, "time must not be null");
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
     }
 
     /**
@@ -28,6 +46,15 @@ public final class TimeCondition extends Condition {
         return time;
     }
 
+    /**
+     * Returns the clock this condition is evaluated against.
+     *
+     * @return the clock
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
     /**
      * Returns a string representation of the TimeCondition.
      *
@@ -43,7 +70,7 @@ public final class TimeCondition extends Condition {
      *
      * @param o the object to compare to
      * @return true if the other object is a TimeCondition with the same time,
-     * false otherwise
+     * false otherwise; the clocks are not compared
      */
     @Override
     public boolean equals(Object o) {
@@ -64,12 +91,24 @@ public final class TimeCondition extends Condition {
     }
 
     /**
-     * Checks if this time condition is satisfied.
+     * Checks if this time condition is satisfied, that is, whether the
+     * condition's clock is within the minute of the condition's time.
      *
      * @return true if the condition is satisfied, false otherwise
      */
     @Override
     public boolean isSatisfied() {
-        throw new RuntimeException("The isSatisfied method is not implemented yet.");
+        return isSatisfied(clock);
+    }
+
+    /**
+     * Checks if the given clock is within the minute of this condition's time.
+     *
+     * @param clock the clock to read the current time from
+     * @return true if the condition is satisfied, false otherwise
+     */
+    public boolean isSatisfied(Clock clock) {
+        LocalTime now = LocalTime.now(clock);
+        return now.getHour() == time.getHour() && now.getMinute() == time.getMinute();
     }
 }
@@ -0,0 +1,38 @@
+package com.tong.cits5501.domolect.constant;
+
+/**
+ * Represents the kinds of device that Domolect commands can address.
+ * A single device name may belong to more than one kind (for example,
+ * an "oven" is both an appliance and a thermal device).
+ */
+public enum DeviceKind {
+
+    /**
+     * A light source such as a lamp, bulb or sconce.
+     */
+    LIGHT_SOURCE,
+
+    /**
+     * A barrier such as a gate, window or drawbridge.
+     */
+    BARRIER,
+
+    /**
+     * An appliance such as a coffee maker or air conditioner.
+     */
+    APPLIANCE,
+
+    /**
+     * A thermal device whose target temperature can be set, such as a thermostat.
+     */
+    THERMAL_DEVICE;
+
+    /**
+     * Returns the bit used for this kind in a kind mask.
+     *
+     * @return a mask with only this kind's bit set
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+}
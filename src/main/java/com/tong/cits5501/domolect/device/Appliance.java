@@ -9,7 +9,16 @@ import com.tong.cits5501.domolect.constant.State;
  * An appliance is a type of device
  * that can be controlled using simple commands like turning the appliance
  * "on" or "off".
- *
+ * <p>
+ * The state of the appliance is not held by this object but in a
+ * {@link DeviceStateStore}, shared by every device from the same
+ * {@link DeviceCatalog}. An appliance constructed on its own has a store of
+ * its own, holding its state alone.
+ * <p>
+ * Turning an appliance on or off checks and changes its state in a single
+ * atomic step, so it is safe to control from several threads: when two
+ * threads turn the same appliance on at once, exactly one succeeds and the
+ * other gets an IllegalStateException.
  *
  * <h2>Example usage:</h2>
  * <pre>
@@ -26,20 +35,37 @@ public final class Appliance {
      * (e.g., "coffee-maker", "oven", "air-conditioner").
      */
     private final String name;
-    private State state;
+    private final DeviceStateStore store;
+    private final int id;
 
     /**
-     * Constructs an {@code Appliance} with the specified name.
+     * Constructs an {@code Appliance} with the specified name, whose state is
+     * kept in a store of its own.
      *
-     * @param name The name of the appliance, must be a non-null, non-empty
-     *             string corresponding to a valid appliance name.
+     * @param name  The name of the appliance, must be a non-null, non-empty
+     *              string corresponding to a valid appliance name.
+     * @param state The initial state; may be null if it is not known.
      */
     public Appliance(String name, State state) {
         if (name == null || name.isEmpty()) {
             throw new IllegalArgumentException("Appliance name cannot be null or empty.");
         }
         this.name = name;
-        this.state = state;
+        this.store = new DeviceStateStore();
+        this.id = store.register(state);
+    }
+
+    /**
+     * Constructs an {@code Appliance} whose state is kept in a shared store.
+     *
+     * @param name  the name of the appliance
+     * @param store the store holding the state
+     * @param id    the id of this appliance in the store
+     */
+    Appliance(String name, DeviceStateStore store, int id) {
+        this.name = name;
+        this.store = store;
+        this.id = id;
     }
 
     /**
@@ -62,10 +88,9 @@ public final class Appliance {
      * If the appliance is already on, an IllegalStateException is thrown.
      */
     public void turnOn() {
-        if (State.ON.equals(state)) {
+        if (!store.transition(id, State.ON)) {
             throw new IllegalStateException("Appliance is already on: " + name);
         }
-        state = State.ON;
         System.out.println("Turning on the appliance: " + name);
     }
 
@@ -78,16 +103,33 @@ public final class Appliance {
      * If the appliance is already off, an IllegalStateException is thrown.
      */
     public void turnOff() {
-        if (State.OFF.equals(state)) {
+        if (!store.transition(id, State.OFF)) {
             throw new IllegalStateException("Appliance is already off: " + name);
         }
-        state = State.OFF;
         System.out.println("Turning off the appliance: " + name);
     }
 
+    /**
+     * Returns the current state of the appliance.
+     *
+     * @return the state, or null if it is not known
+     */
+    public State getState() {
+        return store.get(id);
+    }
+
+    /**
+     * Returns the id of this appliance in its state store.
+     *
+     * @return the id
+     */
+    int getId() {
+        return id;
+    }
+
     @Override
     public String toString() {
-        return "Appliance{name='" + name + "', state=" + state + "}";
+        return "Appliance{name='" + name + "', state=" + getState() + "}";
     }
 
 }
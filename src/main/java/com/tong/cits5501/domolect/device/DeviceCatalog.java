@@ -0,0 +1,323 @@
+package com.tong.cits5501.domolect.device;
+
+import com.tong.cits5501.domolect.command.Location;
+import com.tong.cits5501.domolect.constant.DeviceKind;
+import com.tong.cits5501.domolect.constant.State;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A hash-indexed registry of the devices known to the Domotopia system.
+ * <p>
+ * The catalog maps each device name to the {@link DeviceKind}s it belongs to,
+ * and hands out one canonical device object for every (location, name) pair,
+ * so that repeated commands addressing the same device operate on the same
+ * object and therefore see the same state. Locations are interned as well,
+ * in keeping with the rule that equal {@link Location}s are the same object.
+ * The states of the catalog's light sources and appliances are kept together
+ * in one {@link DeviceStateStore}.
+ * <p>
+ * Names can be looked up with a region of a character sequence, which lets a
+ * parser resolve a device in one probe without building a substring.
+ * <p>
+ * Device names are fixed when they are registered, but locations are
+ * open-ended, and each new one brings its own device objects and states. A
+ * catalog fed with untrusted lines can be bounded with
+ * {@link #limitLocations}: once it holds that many locations,
+ * {@link #admitLocation} refuses names it does not already know.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * DeviceCatalog catalog = new DeviceCatalog();
+ * catalog.register(DeviceKind.LIGHT_SOURCE, List.of("lamp", "bulb"));
+ * DeviceCatalog.Entry lamp = catalog.find("lamp");
+ * LightSource kitchenLamp = catalog.lightSource(catalog.location("kitchen"), lamp);
+ * </pre>
+ */
+public final class DeviceCatalog {
+
+    /**
+     * Stands in for a null location in the instance maps, which do not accept null keys.
+     */
+    private static final Location GLOBAL = new Location("");
+
+    /**
+     * A device name registered in the catalog, together with the kinds it
+     * belongs to and the canonical device objects created for it so far.
+     */
+    public static final class Entry {
+        private final String name;
+        private volatile int kinds;
+        private final ConcurrentHashMap<Location, LightSource> lightSources = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Location, Appliance> appliances = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Location, Barrier> barriers = new ConcurrentHashMap<>();
+
+        private Entry(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the device name.
+         *
+         * @return the name of the device
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Checks whether this device belongs to the given kind.
+         *
+         * @param kind the kind to check
+         * @return true if the device is of that kind, false otherwise
+         */
+        public boolean is(DeviceKind kind) {
+            return (kinds & kind.mask()) != 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{name='" + name + "', kinds=" + kinds + "}";
+        }
+    }
+
+    /**
+     * Receives the light sources and appliances created by a catalog, with their states.
+     */
+    @FunctionalInterface
+    public interface StateVisitor {
+
+        /**
+         * Visits one device.
+         *
+         * @param kind     {@link DeviceKind#LIGHT_SOURCE} or {@link DeviceKind#APPLIANCE}
+         * @param location the location of the device, or null for the premises-wide device
+         * @param name     the name of the device
+         * @param state    the state of the device, or null if it is not known
+         */
+        void visit(DeviceKind kind, Location location, String name, State state);
+    }
+
+    private final NameTable<Entry> devices = new NameTable<>();
+    private final NameTable<Location> locations = new NameTable<>();
+    private final DeviceStateStore states = new DeviceStateStore();
+    private volatile int locationLimit = Integer.MAX_VALUE;
+
+    /**
+     * Registers device names as belonging to a kind. A name may be registered
+     * under several kinds.
+     *
+     * @param kind  the kind of device
+     * @param names the device names
+     */
+    public synchronized void register(DeviceKind kind, Collection<String> names) {
+        for (String name : names) {
+            Entry entry = devices.get(name);
+            if (entry == null) {
+                entry = new Entry(name);
+                devices.put(name, entry);
+            }
+            entry.kinds |= kind.mask();
+        }
+    }
+
+    /**
+     * Finds the device whose name occupies {@code [start, end)} of {@code text}.
+     *
+     * @param text  the characters containing the name
+     * @param start the offset of the first character
+     * @param end   the offset just past the last character
+     * @return the catalog entry, or null if no device has that name
+     */
+    public Entry find(CharSequence text, int start, int end) {
+        return devices.get(text, start, end);
+    }
+
+    /**
+     * Finds a device by name.
+     *
+     * @param name the device name
+     * @return the catalog entry, or null if no device has that name
+     */
+    public Entry find(String name) {
+        return devices.get(name);
+    }
+
+    /**
+     * Finds the canonical {@link Location} whose name occupies
+     * {@code [start, end)} of {@code text}, without creating it.
+     *
+     * @param text  the characters containing the name
+     * @param start the offset of the first character
+     * @param end   the offset just past the last character
+     * @return the interned location, or null if no location has that name yet
+     */
+    public Location findLocation(CharSequence text, int start, int end) {
+        return locations.get(text, start, end);
+    }
+
+    /**
+     * Returns the canonical {@link Location} whose name occupies
+     * {@code [start, end)} of {@code text}, creating it on first use.
+     *
+     * @param text  the characters containing the name
+     * @param start the offset of the first character
+     * @param end   the offset just past the last character
+     * @return the interned location
+     */
+    public Location location(CharSequence text, int start, int end) {
+        return locations.computeIfAbsent(text, start, end, Location::new);
+    }
+
+    /**
+     * Returns the canonical {@link Location} whose name occupies
+     * {@code [start, end)} of {@code text}, creating it on first use only if
+     * the catalog holds fewer locations than its limit. Parsers admit the
+     * locations of untrusted lines through this method; locations restored
+     * from a journal or snapshot were admitted when they were first parsed,
+     * and are interned with {@link #location} regardless of the limit.
+     *
+     * @param text  the characters containing the name
+     * @param start the offset of the first character
+     * @param end   the offset just past the last character
+     * @return the interned location, or null if it is new and the catalog is at its limit
+     */
+    public Location admitLocation(CharSequence text, int start, int end) {
+        return locations.computeIfAbsent(text, start, end, locationLimit, Location::new);
+    }
+
+    /**
+     * Caps the number of locations {@link #admitLocation} lets the catalog
+     * hold. Locations already interned are kept even if there are more.
+     *
+     * @param limit the largest number of locations
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    public void limitLocations(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Location limit must not be negative: " + limit);
+        }
+        locationLimit = limit;
+    }
+
+    /**
+     * Returns the number of locations {@link #admitLocation} lets the catalog hold.
+     *
+     * @return the location limit, or {@link Integer#MAX_VALUE} if there is none
+     */
+    public int getLocationLimit() {
+        return locationLimit;
+    }
+
+    /**
+     * Returns the canonical {@link Location} with the given name, creating it on first use.
+     *
+     * @param name the location name
+     * @return the interned location
+     */
+    public Location location(String name) {
+        return location(name, 0, name.length());
+    }
+
+    /**
+     * Returns the light source with the given entry's name at a location.
+     *
+     * @param location the location of the device; may be null for the premises-wide device
+     * @param entry    the catalog entry of the device
+     * @return the canonical light source
+     * @throws IllegalArgumentException if the entry is not a light source
+     */
+    public LightSource lightSource(Location location, Entry entry) {
+        requireKind(entry, DeviceKind.LIGHT_SOURCE);
+        return entry.lightSources.computeIfAbsent(key(location), l -> new LightSource(entry.name, states, states.register(null)));
+    }
+
+    /**
+     * Returns the appliance with the given entry's name at a location.
+     *
+     * @param location the location of the device; may be null for the premises-wide device
+     * @param entry    the catalog entry of the device
+     * @return the canonical appliance
+     * @throws IllegalArgumentException if the entry is not an appliance
+     */
+    public Appliance appliance(Location location, Entry entry) {
+        requireKind(entry, DeviceKind.APPLIANCE);
+        return entry.appliances.computeIfAbsent(key(location), l -> new Appliance(entry.name, states, states.register(null)));
+    }
+
+    /**
+     * Returns the barrier with the given entry's name at a location.
+     *
+     * @param location the location of the device; may be null for the premises-wide device
+     * @param entry    the catalog entry of the device
+     * @return the canonical barrier
+     * @throws IllegalArgumentException if the entry is not a barrier
+     */
+    public Barrier barrier(Location location, Entry entry) {
+        requireKind(entry, DeviceKind.BARRIER);
+        return entry.barriers.computeIfAbsent(key(location), l -> new Barrier(entry.name));
+    }
+
+    /**
+     * Returns the store holding the states of this catalog's light sources and appliances.
+     *
+     * @return the state store
+     */
+    public DeviceStateStore getStateStore() {
+        return states;
+    }
+
+    /**
+     * Visits every light source and appliance created so far, with its
+     * current state. Devices created or switched during the visit may or may
+     * not be seen.
+     *
+     * @param visitor receives each device
+     */
+    public void forEachState(StateVisitor visitor) {
+        devices.forEach(entry -> {
+            entry.lightSources.forEach((location, device) ->
+                    visitor.visit(DeviceKind.LIGHT_SOURCE, unkey(location), entry.name, device.getState()));
+            entry.appliances.forEach((location, device) ->
+                    visitor.visit(DeviceKind.APPLIANCE, unkey(location), entry.name, device.getState()));
+        });
+    }
+
+    /**
+     * Sets the state of a light source or appliance without switching it, as
+     * when restoring states saved earlier.
+     *
+     * @param kind     {@link DeviceKind#LIGHT_SOURCE} or {@link DeviceKind#APPLIANCE}
+     * @param location the location of the device; may be null for the premises-wide device
+     * @param entry    the catalog entry of the device
+     * @param state    the state; may be null if it is not known
+     * @throws IllegalArgumentException if the entry is not of that kind, or the kind has no state
+     */
+    public void restoreState(DeviceKind kind, Location location, Entry entry, State state) {
+        switch (kind) {
+            case LIGHT_SOURCE:
+                states.set(lightSource(location, entry).getId(), state);
+                break;
+            case APPLIANCE:
+                states.set(appliance(location, entry).getId(), state);
+                break;
+            default:
+                throw new IllegalArgumentException("Devices of kind " + kind + " have no state.");
+        }
+    }
+
+    private static Location key(Location location) {
+        return location == null ? GLOBAL : location;
+    }
+
+    private static Location unkey(Location location) {
+        return location == GLOBAL ? null : location;
+    }
+
+    private static void requireKind(Entry entry, DeviceKind kind) {
+        if (!entry.is(kind)) {
+            throw new IllegalArgumentException("Device " + entry.name + " is not a " + kind);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.tong.cits5501.domolect.device;
+
+import com.tong.cits5501.domolect.constant.State;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * A packed store of switchable device states, holding one byte per device.
+ * <p>
+ * Each registered device is given a dense int id, and its state is kept at
+ * that index rather than in a field of the device object, so the states of
+ * every device sit together in memory and can be copied or scanned in one
+ * linear pass. {@link LightSource} and {@link Appliance} objects are thin
+ * views that hold only their name, their store and their id.
+ * <p>
+ * The bytes live in chunks that double in size, starting at
+ * {@value #FIRST_CHUNK} bytes, so a store for a single device is tiny, a store
+ * for millions of devices wastes at most half of its last chunk, and no state
+ * is ever moved once written. Chunks are published through a volatile
+ * directory, so registering a device never blocks readers.
+ * <p>
+ * States are read and written with volatile semantics, and
+ * {@link #transition(int, State)} changes a state with a compare-and-set on
+ * its byte, so concurrent commands on the same device are serialised without
+ * locks: of two threads switching a device on at once, exactly one succeeds.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * DeviceStateStore store = new DeviceStateStore();
+ * int lamp = store.register(null);
+ * store.set(lamp, State.ON);
+ * int on = store.count(State.ON);
+ * </pre>
+ */
+public final class DeviceStateStore {
+
+    private static final VarHandle STATES = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private static final int FIRST_CHUNK_BITS = 4;
+    private static final int FIRST_CHUNK = 1 << FIRST_CHUNK_BITS;
+
+    /**
+     * The byte stored for a device whose state is not known.
+     */
+    public static final byte UNKNOWN = 0;
+
+    /**
+     * The byte stored for a device that is on.
+     */
+    public static final byte ON = 1;
+
+    /**
+     * The byte stored for a device that is off.
+     */
+    public static final byte OFF = 2;
+
+    /**
+     * Chunk {@code k} holds the states of ids {@code [16 * (2^k - 1), 16 * (2^(k+1) - 1))}.
+     */
+    private volatile byte[][] chunks = new byte[0][];
+    private volatile int size;
+
+    /**
+     * Constructs an empty store.
+     */
+    public DeviceStateStore() {
+    }
+
+    /**
+     * Encodes a state as the byte stored for it.
+     *
+     * @param state the state; may be null for an unknown state
+     * @return the encoded state
+     */
+    public static byte encode(State state) {
+        if (state == null) {
+            return UNKNOWN;
+        }
+        return state == State.ON ? ON : OFF;
+    }
+
+    /**
+     * Decodes a stored byte into a state.
+     *
+     * @param code the encoded state
+     * @return the state, or null if it is unknown
+     */
+    public static State decode(byte code) {
+        switch (code) {
+            case ON:
+                return State.ON;
+            case OFF:
+                return State.OFF;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Allocates an id for a new device.
+     *
+     * @param state the initial state of the device; may be null if unknown
+     * @return the id of the device
+     */
+    public synchronized int register(State state) {
+        int id = size;
+        int chunk = chunkOf(id);
+        byte[][] current = chunks;
+        if (chunk == current.length) {
+            byte[][] grown = Arrays.copyOf(current, chunk + 1);
+            grown[chunk] = new byte[FIRST_CHUNK << chunk];
+            chunks = grown;
+            current = grown;
+        }
+        STATES.setRelease(current[chunk], offsetOf(id, chunk), encode(state));
+        size = id + 1;
+        return id;
+    }
+
+    private static int chunkOf(int id) {
+        return 31 - Integer.numberOfLeadingZeros((id >>> FIRST_CHUNK_BITS) + 1);
+    }
+
+    private static int offsetOf(int id, int chunk) {
+        return id - ((FIRST_CHUNK << chunk) - FIRST_CHUNK);
+    }
+
+    /**
+     * Returns the encoded state of a device.
+     *
+     * @param id the id of the device
+     * @return {@link #ON}, {@link #OFF} or {@link #UNKNOWN}
+     */
+    public byte getCode(int id) {
+        int chunk = chunkOf(id);
+        return (byte) STATES.getVolatile(chunks[chunk], offsetOf(id, chunk));
+    }
+
+    /**
+     * Returns the state of a device.
+     *
+     * @param id the id of the device
+     * @return the state, or null if it is unknown
+     */
+    public State get(int id) {
+        return decode(getCode(id));
+    }
+
+    /**
+     * Sets the state of a device.
+     *
+     * @param id    the id of the device
+     * @param state the new state; may be null to mark it unknown
+     */
+    public void set(int id, State state) {
+        int chunk = chunkOf(id);
+        STATES.setVolatile(chunks[chunk], offsetOf(id, chunk), encode(state));
+    }
+
+    /**
+     * Atomically moves a device into a state, unless it is already in it.
+     *
+     * @param id     the id of the device
+     * @param target the state to move to
+     * @return true if this call changed the state, false if the device was already in the target state
+     */
+    public boolean transition(int id, State target) {
+        int chunk = chunkOf(id);
+        byte[] states = chunks[chunk];
+        int offset = offsetOf(id, chunk);
+        byte code = encode(target);
+        while (true) {
+            byte current = (byte) STATES.getVolatile(states, offset);
+            if (current == code) {
+                return false;
+            }
+            if (STATES.compareAndSet(states, offset, current, code)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of devices registered.
+     *
+     * @return the number of ids allocated
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Counts the devices in a state with one pass over the store.
+     *
+     * @param state the state to count; null counts devices whose state is unknown
+     * @return the number of devices in that state
+     */
+    public int count(State state) {
+        byte code = encode(state);
+        int remaining = size;
+        int count = 0;
+        for (byte[] chunk : chunks) {
+            int length = Math.min(remaining, chunk.length);
+            for (int i = 0; i < length; i++) {
+                if (chunk[i] == code) {
+                    count++;
+                }
+            }
+            remaining -= length;
+        }
+        return count;
+    }
+
+    /**
+     * Copies the encoded state of every device, indexed by id, with one pass
+     * over the store. States changed during the copy may or may not be seen.
+     *
+     * @return an array of {@link #size()} encoded states
+     */
+    public byte[] snapshot() {
+        int total = size;
+        byte[] copy = new byte[total];
+        int position = 0;
+        for (byte[] chunk : chunks) {
+            int length = Math.min(total - position, chunk.length);
+            System.arraycopy(chunk, 0, copy, position, length);
+            position += length;
+        }
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceStateStore{size=" + size + "}";
+    }
+}
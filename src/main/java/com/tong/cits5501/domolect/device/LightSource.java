@@ -8,22 +8,49 @@ import com.tong.cits5501.domolect.constant.State;
  * <p>This class represents a light source, identified by its
  * name. It can be used to represent various types of light sources such as
  * lamps, bulbs, or neon lights.</p>
+ *
+ * <p>The state of the light source is not held by this object but in a
+ * {@link DeviceStateStore}, shared by every device from the same
+ * {@link DeviceCatalog}. A light source constructed on its own has a store
+ * of its own, holding its state alone.</p>
+ *
+ * <p>Turning a light source on or off checks and changes its state in a
+ * single atomic step, so it is safe to control from several threads: when
+ * two threads turn the same light source on at once, exactly one succeeds
+ * and the other gets an IllegalStateException.</p>
  */
 public final class LightSource {
     private final String name;
-    private State state;
+    private final DeviceStateStore store;
+    private final int id;
 
     /**
-     * Constructs a LightSource with the specified name.
+     * Constructs a LightSource with the specified name, whose state is kept
+     * in a store of its own.
      *
-     * @param name the name of the light source; must not be empty
+     * @param name  the name of the light source; must not be empty
+     * @param state the initial state; may be null if it is not known
      */
     public LightSource(String name, State state) {
         if (name == null || name.isEmpty()) {
             throw new IllegalArgumentException("Light source name cannot be null or empty.");
         }
         this.name = name;
-        this.state = state;
+        this.store = new DeviceStateStore();
+        this.id = store.register(state);
+    }
+
+    /**
+     * Constructs a light source whose state is kept in a shared store.
+     *
+     * @param name  the name of the light source
+     * @param store the store holding the state
+     * @param id    the id of this light source in the store
+     */
+    LightSource(String name, DeviceStateStore store, int id) {
+        this.name = name;
+        this.store = store;
+        this.id = id;
     }
 
     /**
@@ -43,10 +70,9 @@ public final class LightSource {
      * If the light source is already on, an IllegalStateException is thrown.
      */
     public void turnOn() {
-        if (State.ON.equals(state)) {
+        if (!store.transition(id, State.ON)) {
             throw new IllegalStateException("Light source is already on: " + name);
         }
-        state = State.ON;
         System.out.println("Turning on the light source: " + name);
     }
 
@@ -58,16 +84,33 @@ public final class LightSource {
      * If the light source is already off, an IllegalStateException is thrown.
      */
     public void turnOff() {
-        if (State.OFF.equals(state)) {
+        if (!store.transition(id, State.OFF)) {
             throw new IllegalStateException("Light source is already off: " + name);
         }
-        state = State.OFF;
         System.out.println("Turning off the light source: " + name);
     }
 
+    /**
+     * Returns the current state of the light source.
+     *
+     * @return the state, or null if it is not known
+     */
+    public State getState() {
+        return store.get(id);
+    }
+
+    /**
+     * Returns the id of this light source in its state store.
+     *
+     * @return the id
+     */
+    int getId() {
+        return id;
+    }
+
     @Override
     public String toString() {
-        return "LightSource{name='" + name + "', state=" + state + "}";
+        return "LightSource{name='" + name + "', state=" + getState() + "}";
     }
 
 }
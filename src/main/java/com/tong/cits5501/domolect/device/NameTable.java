@@ -0,0 +1,204 @@
+package com.tong.cits5501.domolect.device;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An open-addressing hash table keyed by name, which can be probed with a
+ * region of a character sequence so that callers never need to build a
+ * substring to look a name up.
+ * <p>
+ * Reads are lock-free. Writers are serialised on the table; a new name is
+ * published into a free slot with a release store of its value and then its
+ * name, which readers load with acquire semantics, so a reader that sees a
+ * name also sees its value. The slot arrays are only copied when the table
+ * grows or a value is replaced, so an insert costs amortised constant time
+ * even for open-ended vocabularies such as locations.
+ *
+ * @param <T> the type of value associated with each name
+ */
+final class NameTable<T> {
+
+    private static final VarHandle NAMES = MethodHandles.arrayElementVarHandle(String[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private static final class Slots {
+        final String[] names;
+        final Object[] values;
+
+        /**
+         * The number of names present; only read and written under the table's lock.
+         */
+        int size;
+
+        Slots(int capacity, int size) {
+            this.names = new String[capacity];
+            this.values = new Object[capacity];
+            this.size = size;
+        }
+    }
+
+    private volatile Slots slots = new Slots(16, 0);
+
+    /**
+     * Computes the hash of a region using the same function as {@link String#hashCode()}.
+     *
+     * @param text  the characters to hash
+     * @param start the offset of the first character
+     * @param end   the offset just past the last character
+     * @return the hash of the region
+     */
+    static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Looks up the value for the name occupying {@code [start, end)} of {@code text}.
+     *
+     * @param text  the characters containing the name
+     * @param start the offset of the first character
+     * @param end   the offset just past the last character
+     * @return the associated value, or null if the name is not present
+     */
+    @SuppressWarnings("unchecked")
+    T get(CharSequence text, int start, int end) {
+        Slots current = slots;
+        int mask = current.names.length - 1;
+        int length = end - start;
+        for (int i = spread(hash(text, start, end)) & mask; ; i = (i + 1) & mask) {
+            String name = (String) NAMES.getAcquire(current.names, i);
+            if (name == null) {
+                return null;
+            }
+            if (name.length() == length && regionEquals(name, text, start)) {
+                return (T) VALUES.getAcquire(current.values, i);
+            }
+        }
+    }
+
+    /**
+     * Looks up the value for a name.
+     *
+     * @param name the name to look up
+     * @return the associated value, or null if the name is not present
+     */
+    T get(String name) {
+        return get(name, 0, name.length());
+    }
+
+    /**
+     * Returns the value for the name occupying {@code [start, end)} of
+     * {@code text}, inserting one created by {@code factory} if it is absent.
+     *
+     * @param text    the characters containing the name
+     * @param start   the offset of the first character
+     * @param end     the offset just past the last character
+     * @param factory creates the value for a new name
+     * @return the existing or newly inserted value
+     */
+    T computeIfAbsent(CharSequence text, int start, int end, Function<String, T> factory) {
+        return computeIfAbsent(text, start, end, Integer.MAX_VALUE, factory);
+    }
+
+    /**
+     * Returns the value for the name occupying {@code [start, end)} of
+     * {@code text}, inserting one created by {@code factory} if it is absent
+     * and the table holds fewer than {@code limit} names.
+     *
+     * @param text    the characters containing the name
+     * @param start   the offset of the first character
+     * @param end     the offset just past the last character
+     * @param limit   the number of names beyond which nothing is inserted
+     * @param factory creates the value for a new name
+     * @return the existing or newly inserted value, or null if the name is absent and the table is full
+     */
+    T computeIfAbsent(CharSequence text, int start, int end, int limit, Function<String, T> factory) {
+        T value = get(text, start, end);
+        if (value != null) {
+            return value;
+        }
+        synchronized (this) {
+            value = get(text, start, end);
+            if (value == null && slots.size < limit) {
+                String name = text.subSequence(start, end).toString();
+                value = factory.apply(name);
+                put(name, value);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Associates a value with a name, replacing any existing value.
+     *
+     * @param name  the name
+     * @param value the value; must not be null
+     */
+    synchronized void put(String name, T value) {
+        Slots current = slots;
+        boolean replacing = get(name) != null;
+        if (!replacing && (current.size + 1) * 2 <= current.names.length) {
+            insert(current, name, value);
+            current.size++;
+            return;
+        }
+        int size = replacing ? current.size : current.size + 1;
+        int capacity = current.names.length;
+        while (size * 2 > capacity) {
+            capacity *= 2;
+        }
+        Slots next = new Slots(capacity, size);
+        for (int i = 0; i < current.names.length; i++) {
+            if (current.names[i] != null && !(replacing && current.names[i].equals(name))) {
+                insert(next, current.names[i], current.values[i]);
+            }
+        }
+        insert(next, name, value);
+        slots = next;
+    }
+
+    /**
+     * Passes every value to an action, in no particular order. Values added
+     * during the call may or may not be seen.
+     *
+     * @param action receives each value
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<? super T> action) {
+        Slots current = slots;
+        for (int i = 0; i < current.names.length; i++) {
+            if (NAMES.getAcquire(current.names, i) != null) {
+                action.accept((T) VALUES.getAcquire(current.values, i));
+            }
+        }
+    }
+
+    private static void insert(Slots target, String name, Object value) {
+        int mask = target.names.length - 1;
+        int i = spread(name.hashCode()) & mask;
+        while (target.names[i] != null) {
+            i = (i + 1) & mask;
+        }
+        VALUES.setRelease(target.values, i, value);
+        NAMES.setRelease(target.names, i, name);
+    }
+
+    private static boolean regionEquals(String name, CharSequence text, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package com.tong.cits5501.domolect.events;
+
+import com.tong.cits5501.domolect.command.ApplianceCommand;
+import com.tong.cits5501.domolect.command.BarrierCommand;
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.command.LightingCommand;
+import com.tong.cits5501.domolect.command.ThermalDeviceCommand;
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * The fields shared by the Java Flight Recorder events of a command's life:
+ * the type of command, the device it addresses and its location.
+ * <p>
+ * The events follow the usual JFR pattern: an event is created and begun
+ * before the work it times, and its fields are only filled in if
+ * {@link #shouldCommit()} says a recording wants it. While no recording has
+ * the event enabled, the event object does not escape and is optimised
+ * away, so the events can stay compiled in at no cost.
+ * <p>
+ * A parse takes a few hundred nanoseconds, so recording an event for each
+ * would swamp any recording that did not ask for them: the events are off
+ * unless a recording enables them, for example with
+ * {@code -XX:StartFlightRecording:+domolect.Parse#enabled=true}, and stack
+ * traces are not recorded.
+ */
+@Category({"Domolect", "Commands"})
+@Enabled(false)
+@StackTrace(false)
+abstract class CommandEvent extends Event {
+
+    @Label("Command Type")
+    String commandType;
+
+    @Label("Device")
+    String device;
+
+    @Label("Location")
+    String location;
+
+    /**
+     * Fills in the fields describing a command.
+     *
+     * @param command the command, or null to leave the fields empty
+     */
+    void describe(Command command) {
+        if (command == null) {
+            return;
+        }
+        commandType = command.getClass().getSimpleName();
+        location = command.getLocation() == null ? null : command.getLocation().getName();
+        if (command instanceof LightingCommand cmd) {
+            device = cmd.getLightSource().getName();
+        } else if (command instanceof ApplianceCommand cmd) {
+            device = cmd.getAppliance().getName();
+        } else if (command instanceof BarrierCommand cmd) {
+            device = cmd.getBarrier().getName();
+        } else if (command instanceof ThermalDeviceCommand cmd) {
+            device = cmd.getThermalDevice();
+        }
+    }
+
+    /**
+     * Returns the outcome of a step that may have failed.
+     *
+     * @param failure the exception the step threw, or null if it succeeded
+     * @return {@code "ok"}, or the simple name of the exception
+     */
+    static String outcome(Throwable failure) {
+        return failure == null ? "ok" : failure.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,41 @@
+package com.tong.cits5501.domolect.events;
+
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.command.Condition;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A "when" condition met, releasing its command, or an "until" condition
+ * met, releasing the command that reverses the one waiting on it.
+ */
+@Name("domolect.ConditionFired")
+@Label("Condition Fired")
+@Description("A when or until condition met")
+public final class ConditionFiredEvent extends CommandEvent {
+
+    @Label("Clause")
+    @Description("when or until")
+    String clause;
+
+    @Label("Condition")
+    String condition;
+
+    /**
+     * Commits an instant event for a condition met if it is being recorded.
+     *
+     * @param clause    {@code "when"} or {@code "until"}
+     * @param condition the condition met
+     * @param command   the command released
+     */
+    public static void emit(String clause, Condition condition, Command command) {
+        ConditionFiredEvent event = new ConditionFiredEvent();
+        if (event.shouldCommit()) {
+            event.describe(command);
+            event.clause = clause;
+            event.condition = String.valueOf(condition);
+            event.commit();
+        }
+    }
+}
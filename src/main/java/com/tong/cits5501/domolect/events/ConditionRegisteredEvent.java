@@ -0,0 +1,41 @@
+package com.tong.cits5501.domolect.events;
+
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.command.Condition;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A command filed to wait for its "when" condition, or an executed command
+ * filed to be reversed when its "until" condition is met.
+ */
+@Name("domolect.ConditionRegistered")
+@Label("Condition Registered")
+@Description("A command filed under a when or until condition")
+public final class ConditionRegisteredEvent extends CommandEvent {
+
+    @Label("Clause")
+    @Description("when or until")
+    String clause;
+
+    @Label("Condition")
+    String condition;
+
+    /**
+     * Commits an instant event for a registration if it is being recorded.
+     *
+     * @param clause    {@code "when"} or {@code "until"}
+     * @param condition the condition waited for
+     * @param command   the command waiting
+     */
+    public static void emit(String clause, Condition condition, Command command) {
+        ConditionRegisteredEvent event = new ConditionRegisteredEvent();
+        if (event.shouldCommit()) {
+            event.describe(command);
+            event.clause = clause;
+            event.condition = String.valueOf(condition);
+            event.commit();
+        }
+    }
+}
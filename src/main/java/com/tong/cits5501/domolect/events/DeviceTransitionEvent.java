@@ -0,0 +1,37 @@
+package com.tong.cits5501.domolect.events;
+
+import com.tong.cits5501.domolect.command.Command;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A device driven to a new state by a command: a light or appliance turned
+ * on or off, or a barrier opened, closed, locked or unlocked. Commands the
+ * device refused, such as turning on a lamp that is already on, produce an
+ * {@link ExecuteEvent} with the failure but no transition.
+ */
+@Name("domolect.DeviceTransition")
+@Label("Device Transition")
+@Description("A device driven to a new state")
+public final class DeviceTransitionEvent extends CommandEvent {
+
+    @Label("Transition")
+    @Description("The state or action the device was driven to, such as ON or LOCK")
+    String transition;
+
+    /**
+     * Commits an instant event for a transition if it is being recorded.
+     *
+     * @param command    the command that drove the device
+     * @param transition the state or action the device was driven to
+     */
+    public static void emit(Command command, Enum<?> transition) {
+        DeviceTransitionEvent event = new DeviceTransitionEvent();
+        if (event.shouldCommit()) {
+            event.describe(command);
+            event.transition = transition.name();
+            event.commit();
+        }
+    }
+}
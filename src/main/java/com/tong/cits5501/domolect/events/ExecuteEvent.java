@@ -0,0 +1,52 @@
+package com.tong.cits5501.domolect.events;
+
+import com.tong.cits5501.domolect.command.Command;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A run of {@link Command#execute()}, whether or not it succeeded. The
+ * event is recorded by {@code execute()} itself, around the command's
+ * {@code doExecute()}, so commands do not record it themselves.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * // In Command.execute()
+ * ExecuteEvent event = new ExecuteEvent();
+ * event.begin();
+ * Throwable failure = null;
+ * try {
+ *     transition = doExecute();
+ * } catch (RuntimeException e) {
+ *     failure = e;
+ *     throw e;
+ * } finally {
+ *     event.end(this, failure);
+ * }
+ * </pre>
+ */
+@Name("domolect.Execute")
+@Label("Execute Command")
+@Description("Command.execute() run against a device")
+public final class ExecuteEvent extends CommandEvent {
+
+    @Label("Outcome")
+    @Description("ok, or the exception the command threw")
+    String outcome;
+
+    /**
+     * Ends the event and commits it if it is being recorded.
+     *
+     * @param command the command executed
+     * @param failure the exception the command threw, or null if it succeeded
+     */
+    public void end(Command command, Throwable failure) {
+        end();
+        if (shouldCommit()) {
+            describe(command);
+            outcome = outcome(failure);
+            commit();
+        }
+    }
+}
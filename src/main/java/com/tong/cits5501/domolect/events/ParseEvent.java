@@ -0,0 +1,48 @@
+package com.tong.cits5501.domolect.events;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A command line parsed, with the command it produced or the error that
+ * stopped it.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * ParseEvent event = new ParseEvent();
+ * event.begin();
+ * AugmentedCommand command = parseCommand(tokens);
+ * event.end(line, command, command == null ? tokens.error().name() : null);
+ * </pre>
+ */
+@Name("domolect.Parse")
+@Label("Parse Command")
+@Description("A Domolect command line parsed")
+public final class ParseEvent extends CommandEvent {
+
+    @Label("Line")
+    String line;
+
+    @Label("Outcome")
+    @Description("ok, or the parse error")
+    String outcome;
+
+    /**
+     * Ends the event and commits it if it is being recorded.
+     *
+     * @param text    the line parsed
+     * @param command the command parsed, or null if the line was invalid
+     * @param error   the parse error, or null if the line was valid
+     */
+    public void end(CharSequence text, AugmentedCommand command, String error) {
+        end();
+        if (shouldCommit()) {
+            describe(command == null ? null : command.getCommand());
+            line = text == null ? null : text.toString();
+            outcome = error == null ? "ok" : error;
+            commit();
+        }
+    }
+}
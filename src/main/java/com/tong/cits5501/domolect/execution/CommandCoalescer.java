@@ -0,0 +1,280 @@
+package com.tong.cits5501.domolect.execution;
+
+import com.tong.cits5501.domolect.command.*;
+import com.tong.cits5501.domolect.constant.BarrierAction;
+import com.tong.cits5501.domolect.constant.State;
+import com.tong.cits5501.domolect.device.Barrier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * An optional stage in front of command execution that merges bursts of
+ * commands addressed to the same device.
+ * <p>
+ * The first command for a device opens a window of the configured length.
+ * Every later command for that device within the window replaces the one
+ * held, so only the last writer survives. When the window closes the held
+ * command is passed downstream, unless it would not change anything: a
+ * lighting or appliance command is dropped if it requests the state last
+ * passed downstream for its device or, before any has been, the state the
+ * device is in. A burst such as on, off, on sent to a lamp that is off
+ * thus reaches the lamp as a single "on", and reaches a lamp that is already
+ * on not at all. Comparing with what was passed downstream rather than with
+ * the device keeps this right when the downstream stage is asynchronous, as
+ * a {@link LocationDispatcher} is, and a released command has yet to reach
+ * the device; it assumes the downstream stage carries out what it is given.
+ * <p>
+ * Devices are told apart by identity, so commands must address the canonical
+ * devices handed out by a {@link com.tong.cits5501.domolect.device.DeviceCatalog}.
+ * A barrier is treated as two devices, one opened and closed and one locked
+ * and unlocked, so that "open gate" followed by "lock gate" keeps both. A
+ * thermal device is identified by its location and name.
+ * <p>
+ * Windows are closed by {@link #poll()}, which the caller runs periodically,
+ * for example from a scheduled executor, using the same clock as the
+ * coalescer. Commands may be submitted from any thread; {@code poll} and
+ * {@link #flush()} should be called from one thread at a time so that the
+ * commands for a device are released in order. With a zero window, commands
+ * pass straight through, with no-ops still dropped.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * CommandCoalescer coalescer = new CommandCoalescer(Duration.ofMillis(50), Clock.systemUTC(), Command::execute);
+ * timer.scheduleAtFixedRate(coalescer::poll, 10, 10, TimeUnit.MILLISECONDS);
+ * coalescer.accept(command);
+ * </pre>
+ */
+public final class CommandCoalescer implements Consumer<Command> {
+
+    /**
+     * Identifies the lock of a barrier, as distinct from its opening.
+     */
+    private record LockKey(Barrier barrier) {
+    }
+
+    /**
+     * Identifies a thermal device, which has no device object of its own.
+     */
+    private record ThermalKey(Location location, String thermalDevice) {
+    }
+
+    /**
+     * The command held for a device, and when its window closes.
+     */
+    private static final class Held {
+        final long deadline;
+        Command command;
+
+        Held(long deadline, Command command) {
+            this.deadline = deadline;
+            this.command = command;
+        }
+    }
+
+    private final long windowMillis;
+    private final Clock clock;
+    private final Consumer<? super Command> downstream;
+
+    /**
+     * The held commands in the order their windows opened, which is also the
+     * order their windows close.
+     */
+    private final LinkedHashMap<Object, Held> held = new LinkedHashMap<>();
+
+    /**
+     * The state last passed downstream for each light source and appliance, by identity.
+     */
+    private final Map<Object, State> sent = new IdentityHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder released = new LongAdder();
+
+    /**
+     * Constructs a coalescer.
+     *
+     * @param window     how long a device's first command is held while later ones are merged into it
+     * @param clock      the clock that measures the window
+     * @param downstream receives the commands that survive coalescing
+     * @throws IllegalArgumentException if the window is negative
+     */
+    public CommandCoalescer(Duration window, Clock clock, Consumer<? super Command> downstream) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("Coalescing window must not be negative: " + window);
+        }
+        this.windowMillis = window.toMillis();
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+        this.downstream = Objects.requireNonNull(downstream, "downstream must not be null");
+    }
+
+    /**
+     * Submits a command, holding it until its device's window closes.
+     *
+     * @param command the command to execute
+     */
+    @Override
+    public void accept(Command command) {
+        submitted.increment();
+        if (windowMillis > 0) {
+            Object key = keyOf(command);
+            synchronized (this) {
+                Held current = held.get(key);
+                if (current != null) {
+                    current.command = command;
+                    superseded.increment();
+                } else {
+                    held.put(key, new Held(clock.millis() + windowMillis, command));
+                }
+                return;
+            }
+        }
+        release(command);
+    }
+
+    /**
+     * Passes downstream every held command whose window has closed.
+     */
+    public void poll() {
+        long now = clock.millis();
+        List<Command> due = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Held> iterator = held.values().iterator();
+            while (iterator.hasNext()) {
+                Held entry = iterator.next();
+                if (entry.deadline > now) {
+                    break;
+                }
+                due.add(entry.command);
+                iterator.remove();
+            }
+        }
+        due.forEach(this::release);
+    }
+
+    /**
+     * Passes downstream every held command at once, without waiting for
+     * their windows to close.
+     */
+    public void flush() {
+        List<Command> due = new ArrayList<>();
+        synchronized (this) {
+            for (Held entry : held.values()) {
+                due.add(entry.command);
+            }
+            held.clear();
+        }
+        due.forEach(this::release);
+    }
+
+    private void release(Command command) {
+        if (isNoOp(command)) {
+            dropped.increment();
+            return;
+        }
+        released.increment();
+        downstream.accept(command);
+    }
+
+    private static Object keyOf(Command command) {
+        if (command instanceof LightingCommand cmd) {
+            return cmd.getLightSource();
+        } else if (command instanceof ApplianceCommand cmd) {
+            return cmd.getAppliance();
+        } else if (command instanceof BarrierCommand cmd) {
+            BarrierAction action = cmd.getAction();
+            return action == BarrierAction.LOCK || action == BarrierAction.UNLOCK
+                    ? new LockKey(cmd.getBarrier())
+                    : cmd.getBarrier();
+        } else if (command instanceof ThermalDeviceCommand cmd) {
+            return new ThermalKey(cmd.getLocation(), cmd.getThermalDevice());
+        }
+        // Unknown commands are never merged
+        return new Object();
+    }
+
+    /**
+     * Checks whether a command requests the state last passed downstream for
+     * its device, or the device's own state if none has been, and records
+     * the state it requests as passed downstream.
+     */
+    private synchronized boolean isNoOp(Command command) {
+        Object device;
+        State current;
+        State requested;
+        if (command instanceof LightingCommand cmd) {
+            device = cmd.getLightSource();
+            current = cmd.getLightSource().getState();
+            requested = cmd.getState();
+        } else if (command instanceof ApplianceCommand cmd) {
+            device = cmd.getAppliance();
+            current = cmd.getAppliance().getState();
+            requested = cmd.getState();
+        } else {
+            return false;
+        }
+        State last = sent.put(device, requested);
+        return requested == (last != null ? last : current);
+    }
+
+    /**
+     * Returns the number of commands waiting for their window to close.
+     *
+     * @return the number of held commands
+     */
+    public synchronized int getHeld() {
+        return held.size();
+    }
+
+    /**
+     * Returns the number of commands submitted.
+     *
+     * @return the submitted count
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * Returns the number of commands replaced by a later command for the same device.
+     *
+     * @return the superseded count
+     */
+    public long getSuperseded() {
+        return superseded.sum();
+    }
+
+    /**
+     * Returns the number of commands dropped because they would not change anything.
+     *
+     * @return the dropped count
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of commands passed downstream.
+     *
+     * @return the released count
+     */
+    public long getReleased() {
+        return released.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CommandCoalescer{held=" + getHeld() + ", submitted=" + getSubmitted() + ", superseded=" + getSuperseded()
+                + ", dropped=" + getDropped() + ", released=" + getReleased() + "}";
+    }
+}
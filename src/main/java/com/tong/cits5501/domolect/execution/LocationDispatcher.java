@@ -0,0 +1,282 @@
+package com.tong.cits5501.domolect.execution;
+
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.command.Location;
+
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Executes commands in parallel across locations while keeping the commands
+ * for each location in the order they were submitted.
+ * <p>
+ * Commands are sharded by the hash of their {@link Location} onto a fixed
+ * number of shards, each a queue drained by a single thread of its own. Two
+ * commands for the same location always land on the same shard and so run
+ * one after the other in submission order; commands for different locations
+ * usually land on different shards and run side by side.
+ * <p>
+ * A command without a location applies to the whole premises, so it is
+ * ordered against every other command: it runs only once every command
+ * submitted before it has finished on every shard, and no command submitted
+ * after it starts until it has finished. It is passed to every shard as a
+ * barrier; the last shard to reach the barrier runs the command while the
+ * others wait. Global commands are therefore expensive and should be rare.
+ * <p>
+ * A command that throws does not stop its shard: the exception is counted
+ * and the shard moves on to the next command. Commands may be submitted from
+ * any thread, but the order between two commands is only defined if they are
+ * submitted from the same thread. Shard threads are daemon threads; call
+ * {@link #close()} to finish the queued commands and stop them.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * try (LocationDispatcher dispatcher = new LocationDispatcher(4, Command::execute)) {
+ *     dispatcher.accept(command);
+ * }
+ * </pre>
+ */
+public final class LocationDispatcher implements Consumer<Command>, AutoCloseable {
+
+    /**
+     * A global command passed to every shard. The last shard to arrive runs
+     * the command and then lets the others continue.
+     */
+    private static final class Barrier {
+        final Command command;
+        final AtomicInteger waiting;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Barrier(Command command, int shards) {
+            this.command = command;
+            this.waiting = new AtomicInteger(shards);
+        }
+    }
+
+    /**
+     * Queued on every shard by {@link #close()} to stop its thread.
+     */
+    private static final Object STOP = new Object();
+
+    private final Consumer<? super Command> executor;
+    private final BlockingQueue<Object>[] queues;
+    private final Thread[] threads;
+
+    /**
+     * Guards submission against {@link #close()}, and makes a global command
+     * reach every shard before any later command reaches one.
+     */
+    private final Object submitLock = new Object();
+    private boolean closed;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Constructs a dispatcher with one shard per available processor.
+     *
+     * @param executor carries out each command
+     */
+    public LocationDispatcher(Consumer<? super Command> executor) {
+        this(Runtime.getRuntime().availableProcessors(), executor);
+    }
+
+    /**
+     * Constructs a dispatcher and starts its shard threads.
+     *
+     * @param shards   the number of shards, and so of threads
+     * @param executor carries out each command
+     * @throws IllegalArgumentException if the number of shards is not positive
+     */
+    @SuppressWarnings("unchecked")
+    public LocationDispatcher(int shards, Consumer<? super Command> executor) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Number of shards must be positive: " + shards);
+        }
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        this.queues = (BlockingQueue<Object>[]) new BlockingQueue<?>[shards];
+        this.threads = new Thread[shards];
+        for (int i = 0; i < shards; i++) {
+            BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+            queues[i] = queue;
+            threads[i] = Thread.ofPlatform()
+                    .name("domolect-shard-" + i)
+                    .daemon(true)
+                    .start(() -> drain(queue));
+        }
+    }
+
+    /**
+     * Returns the shard that runs the commands for a location.
+     *
+     * @param location the location; must not be null
+     * @return the index of the shard
+     */
+    public int shardOf(Location location) {
+        int hash = location.hashCode();
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, queues.length);
+    }
+
+    /**
+     * Queues a command on the shard for its location, or on every shard if it
+     * has no location.
+     *
+     * @param command the command to execute
+     * @throws IllegalStateException if the dispatcher has been closed
+     */
+    @Override
+    public void accept(Command command) {
+        Objects.requireNonNull(command, "command must not be null");
+        Location location = command.getLocation();
+        synchronized (submitLock) {
+            if (closed) {
+                throw new IllegalStateException("Dispatcher is closed.");
+            }
+            if (location != null) {
+                queues[shardOf(location)].add(command);
+            } else {
+                broadcast(new Barrier(command, queues.length));
+            }
+        }
+    }
+
+    /**
+     * Waits until every command submitted before this call has finished.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the dispatcher has been closed
+     */
+    public void awaitIdle() throws InterruptedException {
+        Barrier barrier = new Barrier(null, queues.length);
+        synchronized (submitLock) {
+            if (closed) {
+                throw new IllegalStateException("Dispatcher is closed.");
+            }
+            broadcast(barrier);
+        }
+        barrier.done.await();
+    }
+
+    private void broadcast(Object item) {
+        for (BlockingQueue<Object> queue : queues) {
+            queue.add(item);
+        }
+    }
+
+    private void drain(BlockingQueue<Object> queue) {
+        while (true) {
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (item == STOP) {
+                return;
+            }
+            if (item instanceof Command command) {
+                run(command);
+            } else if (item instanceof Barrier barrier) {
+                arrive(barrier);
+            }
+        }
+    }
+
+    private void arrive(Barrier barrier) {
+        if (barrier.waiting.decrementAndGet() == 0) {
+            try {
+                if (barrier.command != null) {
+                    run(barrier.command);
+                }
+            } finally {
+                barrier.done.countDown();
+            }
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                barrier.done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(Command command) {
+        try {
+            executor.accept(command);
+            executed.increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+        }
+    }
+
+    /**
+     * Stops accepting commands, waits for the queued commands to finish and
+     * stops the shard threads.
+     *
+     * @throws IllegalStateException if interrupted while waiting
+     */
+    @Override
+    public void close() {
+        synchronized (submitLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            broadcast(STOP);
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while closing dispatcher.", e);
+        }
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShards() {
+        return queues.length;
+    }
+
+    /**
+     * Returns the number of commands carried out without throwing.
+     *
+     * @return the executed count
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * Returns the number of commands that threw.
+     *
+     * @return the failed count
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "LocationDispatcher{shards=" + queues.length + ", executed=" + getExecuted()
+                + ", failed=" + getFailed() + "}";
+    }
+}
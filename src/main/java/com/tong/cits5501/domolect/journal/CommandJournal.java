@@ -0,0 +1,568 @@
+package com.tong.cits5501.domolect.journal;
+
+import com.tong.cits5501.domolect.codec.CommandDecoder;
+import com.tong.cits5501.domolect.codec.CommandEncoder;
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.device.DeviceCatalog;
+import com.tong.cits5501.domolect.sensor.TemperatureSensor;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * A durable, append-only journal of the {@link AugmentedCommand}s accepted
+ * for later execution, so that pending and active schedules survive a restart.
+ * <p>
+ * Every accepted command is appended as a record, and a record retiring it is
+ * appended once it is no longer pending or active, for example after it has
+ * been carried out and reversed. Opening a journal loads its latest snapshot
+ * and replays the records written after it, leaving the commands accepted but
+ * not retired in {@link #getPending()}, in the order they were accepted,
+ * ready to be submitted again. A
+ * {@link com.tong.cits5501.domolect.schedule.CommandMonitor} given the journal
+ * does all of this itself: it appends the commands submitted to it, retires
+ * them once they are done, and submits the pending commands again when it
+ * is constructed.
+ * <p>
+ * The journal is a directory of segment files of a fixed size, each
+ * memory-mapped, so appending a record is a copy into memory. Each record is
+ * laid out as its total length (int), a CRC-32C checksum of the rest of the
+ * record (int), its type (byte), the id of the command (long) and, for an
+ * accepted command, the payload described in {@link CommandRecords}. A
+ * record never spans two segments; a length of -1 marks the unused end of a
+ * segment and a length of 0 the end of the journal. A record whose length or
+ * checksum does not match, as left by a crash in the middle of an append,
+ * ends the replay, and it and anything after it are discarded.
+ * <p>
+ * Appending does not wait for the disk. {@link #sync()} forces everything
+ * appended so far to disk, and uses group commit: a thread that calls it while
+ * another thread is forcing waits for that force to finish and then forces
+ * everything appended in the meantime in one go, so that many threads syncing
+ * at once share a few forces rather than queuing one each.
+ * <p>
+ * {@link #snapshot()} writes the pending commands and the states of the
+ * catalog's devices to a snapshot file and then deletes the segments and
+ * snapshots it supersedes, so that startup reads one snapshot and a short
+ * tail of records however long the journal has been running. Appends are
+ * held up only while the pending commands are copied, not while the snapshot
+ * is written. Device states are not journaled, so they are restored as they
+ * were when the snapshot was written. Commands may be appended, retired and
+ * synced, and snapshots taken, from any thread.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * try (CommandJournal journal = CommandJournal.open(Path.of("journal"), catalog, clock, sensor)) {
+ *     CommandMonitor monitor = new CommandMonitor(clock, sensor, Command::execute, journal);
+ *     timer.scheduleAtFixedRate(journal::trySnapshot, 1, 1, TimeUnit.HOURS);
+ *     monitor.submit(command);
+ *     journal.sync();
+ * }
+ * </pre>
+ */
+public final class CommandJournal implements AutoCloseable {
+
+    /**
+     * The default size of a segment, in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+
+    static final byte ACCEPTED = 1;
+    static final byte RETIRED = 2;
+
+    /**
+     * Length, checksum, type and id.
+     */
+    static final int HEADER = 4 + 4 + 1 + 8;
+    private static final int CHECKED_FROM = 8;
+    private static final int END_OF_SEGMENT = -1;
+    private static final int MIN_SEGMENT_SIZE = 256;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final DeviceCatalog catalog;
+    private final Clock clock;
+    private final TemperatureSensor sensor;
+
+    /**
+     * The mapped segments by index, with null for segments compacted away or
+     * not yet mapped, replaced by a copy whenever it changes.
+     */
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    private final LinkedHashMap<Long, AugmentedCommand> pending = new LinkedHashMap<>();
+    private final CRC32C checksum = new CRC32C();
+    private final CommandEncoder encoder = new CommandEncoder();
+    private final CommandDecoder decoder;
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private long nextId = 1;
+    private long position;
+    private boolean closed;
+
+    /**
+     * The end of the last record appended, published after the record is written.
+     */
+    private volatile long written;
+
+    private final Object syncLock = new Object();
+    private long durable;
+    private volatile long syncs;
+
+    private final Object snapshotLock = new Object();
+    private volatile long snapshotCut;
+    private volatile long snapshots;
+
+    private CommandJournal(Path directory, int segmentSize, DeviceCatalog catalog, Clock clock,
+                           TemperatureSensor sensor) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.catalog = catalog;
+        this.clock = clock;
+        this.sensor = sensor;
+        this.decoder = new CommandDecoder(catalog, clock, sensor);
+    }
+
+    /**
+     * Opens a journal with the default segment size, creating the directory
+     * if it does not exist and recovering from it if it does.
+     *
+     * @param directory the journal directory
+     * @param catalog   resolves the devices named in recovered commands, and receives their saved states
+     * @param clock     the clock for recovered time conditions
+     * @param sensor    the sensor for recovered temperature conditions; may be null
+     * @return the open journal
+     * @throws IOException if the journal cannot be read or mapped
+     * @throws IllegalStateException if the journal cannot be recovered, for example because it names an unknown device
+     */
+    public static CommandJournal open(Path directory, DeviceCatalog catalog, Clock clock, TemperatureSensor sensor)
+            throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE, catalog, clock, sensor);
+    }
+
+    /**
+     * Opens a journal, creating the directory if it does not exist and
+     * recovering from it if it does. An existing journal must be reopened with
+     * the segment size it was written with.
+     *
+     * @param directory   the journal directory
+     * @param segmentSize the size of each segment, which bounds the size of a record
+     * @param catalog     resolves the devices named in recovered commands, and receives their saved states
+     * @param clock       the clock for recovered time conditions
+     * @param sensor      the sensor for recovered temperature conditions; may be null
+     * @return the open journal
+     * @throws IOException if the journal cannot be read or mapped
+     * @throws IllegalArgumentException if the segment size is too small
+     * @throws IllegalStateException if the journal cannot be recovered, for example because it names an unknown device
+     */
+    public static CommandJournal open(Path directory, int segmentSize, DeviceCatalog catalog, Clock clock,
+                                      TemperatureSensor sensor) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + MIN_SEGMENT_SIZE + ": " + segmentSize);
+        }
+        Objects.requireNonNull(catalog, "catalog must not be null");
+        Objects.requireNonNull(clock, "clock must not be null");
+        Files.createDirectories(directory);
+        CommandJournal journal = new CommandJournal(directory, segmentSize, catalog, clock, sensor);
+        journal.recover();
+        return journal;
+    }
+
+    private void recover() throws IOException {
+        NavigableMap<Long, Path> snapshotFiles = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        NavigableMap<Long, Path> segmentFiles = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+
+        for (Map.Entry<Long, Path> file : snapshotFiles.descendingMap().entrySet()) {
+            Snapshots.Snapshot snapshot;
+            try {
+                snapshot = Snapshots.read(file.getValue(), catalog, clock, sensor);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Cannot recover snapshot " + file.getValue(), e);
+            }
+            if (snapshot != null) {
+                pending.putAll(snapshot.pending());
+                nextId = snapshot.nextId();
+                position = snapshot.cut();
+                break;
+            }
+        }
+        snapshotCut = position;
+
+        long first = segmentFiles.isEmpty() ? 0 : segmentFiles.firstKey() * segmentSize;
+        if (first > position) {
+            throw new IllegalStateException("Journal segments before " + first + " are missing from " + directory);
+        }
+        long end = segmentFiles.isEmpty() ? 0 : (segmentFiles.lastKey() + 1) * segmentSize;
+        replay(end);
+        durable = position;
+        written = position;
+    }
+
+    private NavigableMap<Long, Path> list(String prefix, String suffix) throws IOException {
+        NavigableMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), file);
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return files;
+    }
+
+    private void replay(long end) throws IOException {
+        while (position < end) {
+            int offset = (int) (position % segmentSize);
+            if (segmentSize - offset < Integer.BYTES) {
+                // Too short even for an end-of-segment marker
+                position += segmentSize - offset;
+                continue;
+            }
+            MappedByteBuffer segment = segment((int) (position / segmentSize));
+            int length = segment.getInt(offset);
+            if (length == END_OF_SEGMENT) {
+                position += segmentSize - offset;
+                continue;
+            }
+            if (length < HEADER || length > segmentSize - offset || !intact(segment, offset, length)) {
+                break;
+            }
+            byte type = segment.get(offset + 8);
+            long id = segment.getLong(offset + 9);
+            if (type == ACCEPTED) {
+                ByteBuffer payload = segment.slice(offset + HEADER, length - HEADER);
+                try {
+                    pending.put(id, CommandRecords.decode(decoder, payload));
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException("Cannot replay journal record " + id + " at " + position, e);
+                }
+            } else if (type == RETIRED) {
+                pending.remove(id);
+            } else {
+                break;
+            }
+            nextId = Math.max(nextId, id + 1);
+            position += length;
+        }
+        discardTail(end);
+    }
+
+    private boolean intact(ByteBuffer segment, int offset, int length) {
+        checksum.reset();
+        checksum.update(segment.slice(offset + CHECKED_FROM, length - CHECKED_FROM));
+        return segment.getInt(offset + 4) == (int) checksum.getValue();
+    }
+
+    /**
+     * Zeroes whatever follows the last intact record in its segment and
+     * deletes any later segments, so that a torn record is never read again.
+     */
+    private void discardTail(long end) throws IOException {
+        if (position >= end) {
+            return;
+        }
+        int index = (int) (position / segmentSize);
+        int offset = (int) (position % segmentSize);
+        if (offset > 0) {
+            MappedByteBuffer segment = segment(index);
+            segment.put(offset, new byte[segmentSize - offset]);
+            segment.force();
+            index++;
+        }
+        for (long i = index; i * segmentSize < end; i++) {
+            drop((int) i);
+        }
+    }
+
+    private MappedByteBuffer segment(int index) throws IOException {
+        MappedByteBuffer[] current = segments;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(segmentFile(index), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(current, Math.max(current.length, index + 1));
+        grown[index] = mapped;
+        segments = grown;
+        return mapped;
+    }
+
+    /**
+     * Forgets a segment and deletes its file. The mapping stays valid until
+     * it is garbage collected, so a concurrent force of it is harmless.
+     */
+    private void drop(int index) throws IOException {
+        MappedByteBuffer[] current = segments;
+        if (index < current.length && current[index] != null) {
+            MappedByteBuffer[] copy = current.clone();
+            copy[index] = null;
+            segments = copy;
+        }
+        Files.deleteIfExists(segmentFile(index));
+    }
+
+    private Path segmentFile(int index) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotFile(long cut) {
+        return directory.resolve(String.format("%s%019d%s", SNAPSHOT_PREFIX, cut, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * Appends an accepted command. The record is durable once {@link #sync()}
+     * has been called.
+     *
+     * @param command the command to journal
+     * @return the id of the command, for {@link #retire(long)}
+     * @throws IOException if a new segment cannot be mapped
+     * @throws IllegalArgumentException if the command cannot be journaled
+     * @throws IllegalStateException if the journal is closed
+     */
+    public synchronized long append(AugmentedCommand command) throws IOException {
+        ensureOpen();
+        while (true) {
+            scratch.clear();
+            try {
+                CommandRecords.encode(encoder, command, scratch);
+                break;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+        scratch.flip();
+        long id = nextId++;
+        write(ACCEPTED, id, scratch);
+        pending.put(id, command);
+        return id;
+    }
+
+    /**
+     * Appends a record that a command is no longer pending or active.
+     *
+     * @param id the id returned when the command was appended
+     * @return true if the command was pending, false if it was unknown or already retired
+     * @throws IOException if a new segment cannot be mapped
+     * @throws IllegalStateException if the journal is closed
+     */
+    public synchronized boolean retire(long id) throws IOException {
+        ensureOpen();
+        if (pending.remove(id) == null) {
+            return false;
+        }
+        write(RETIRED, id, ByteBuffer.allocate(0));
+        return true;
+    }
+
+    private void write(byte type, long id, ByteBuffer payload) throws IOException {
+        int length = HEADER + payload.remaining();
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit a segment of " + segmentSize);
+        }
+        int offset = (int) (position % segmentSize);
+        if (length > segmentSize - offset) {
+            if (segmentSize - offset >= Integer.BYTES) {
+                segment((int) (position / segmentSize)).putInt(offset, END_OF_SEGMENT);
+            }
+            position += segmentSize - offset;
+            offset = 0;
+        }
+        MappedByteBuffer segment = segment((int) (position / segmentSize));
+        segment.put(offset + 8, type);
+        segment.putLong(offset + 9, id);
+        segment.put(offset + HEADER, payload, payload.position(), payload.remaining());
+        checksum.reset();
+        checksum.update(segment.slice(offset + CHECKED_FROM, length - CHECKED_FROM));
+        segment.putInt(offset + 4, (int) checksum.getValue());
+        segment.putInt(offset, length);
+        position += length;
+        written = position;
+    }
+
+    /**
+     * Forces every record appended before this call to disk, sharing the
+     * force with other threads syncing at the same time.
+     */
+    public void sync() {
+        long target = written;
+        synchronized (syncLock) {
+            if (durable >= target) {
+                return;
+            }
+            long end = written;
+            MappedByteBuffer[] mapped = segments;
+            long from = durable;
+            while (from < end) {
+                int index = (int) (from / segmentSize);
+                int offset = (int) (from % segmentSize);
+                int length = (int) Math.min(end - from, segmentSize - offset);
+                mapped[index].force(offset, length);
+                from += length;
+            }
+            durable = end;
+            syncs++;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the pending commands and device states, then
+     * deletes the segments and older snapshots it makes redundant. Appends
+     * carry on while the snapshot is written. Only one snapshot is written at
+     * a time; a second caller waits for the first to finish.
+     *
+     * @throws IOException if the snapshot cannot be written or old files cannot be deleted
+     * @throws IllegalStateException if the journal is closed
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            Map<Long, AugmentedCommand> copy;
+            long cut;
+            long next;
+            synchronized (this) {
+                ensureOpen();
+                copy = new LinkedHashMap<>(pending);
+                cut = position;
+                next = nextId;
+            }
+            if (cut == snapshotCut) {
+                return;
+            }
+            sync();
+            // Writing forces the directory, so the snapshot is on disk before what it replaces is deleted
+            Snapshots.write(snapshotFile(cut), cut, next, copy, catalog);
+            compact(cut);
+            snapshotCut = cut;
+            snapshots++;
+        }
+    }
+
+    /**
+     * Calls {@link #snapshot()}, for use from a scheduled task, reporting
+     * rather than throwing a failure to write the snapshot.
+     *
+     * @return true if the journal is snapshotted up to the current position, false if writing failed
+     */
+    public boolean trySnapshot() {
+        try {
+            snapshot();
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private void compact(long cut) throws IOException {
+        int firstKept = (int) (cut / segmentSize);
+        synchronized (this) {
+            for (Map.Entry<Long, Path> file : list(SEGMENT_PREFIX, SEGMENT_SUFFIX).entrySet()) {
+                if (file.getKey() < firstKept) {
+                    drop(file.getKey().intValue());
+                }
+            }
+        }
+        for (Map.Entry<Long, Path> file : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).entrySet()) {
+            if (file.getKey() < cut) {
+                Files.deleteIfExists(file.getValue());
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed.");
+        }
+    }
+
+    /**
+     * Returns the commands accepted but not yet retired, by id, in the order
+     * they were accepted.
+     *
+     * @return an unmodifiable copy of the pending commands
+     */
+    public synchronized Map<Long, AugmentedCommand> getPending() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(pending));
+    }
+
+    /**
+     * Returns the number of commands accepted but not yet retired.
+     *
+     * @return the number of pending commands
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Returns how many bytes of records have been written since the latest
+     * snapshot, which is roughly how much a restart would replay.
+     *
+     * @return the length of the journal tail
+     */
+    public long getTailLength() {
+        return written - snapshotCut;
+    }
+
+    /**
+     * Returns the number of forces {@link #sync()} has made, which with group
+     * commit can be far fewer than the number of calls.
+     *
+     * @return the number of forces
+     */
+    public long getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * Returns the number of snapshots written since the journal was opened.
+     *
+     * @return the number of snapshots
+     */
+    public long getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Syncs the journal and stops accepting records.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        sync();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CommandJournal{pending=" + pending.size() + ", position=" + position + ", syncs=" + syncs
+                + ", snapshots=" + snapshots + "}";
+    }
+}
@@ -0,0 +1,56 @@
+package com.tong.cits5501.domolect.journal;
+
+import com.tong.cits5501.domolect.codec.CommandDecoder;
+import com.tong.cits5501.domolect.codec.CommandEncoder;
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes {@link AugmentedCommand}s as the payload of a journal record or a
+ * snapshot entry, and decodes them back.
+ * <p>
+ * A payload is one message written by a {@link CommandEncoder}, so it starts
+ * with the format version and is laid out exactly as commands are on the
+ * wire. The journal and the wire therefore share one encoding. Each payload
+ * is written and read with an empty name dictionary, so that every name in
+ * it is spelled out and it can be read on its own, whichever records before
+ * it have been compacted away.
+ */
+final class CommandRecords {
+
+    private CommandRecords() {
+    }
+
+    /**
+     * Writes a command's payload.
+     *
+     * @param encoder the encoder to write with, whose dictionary is reset first
+     * @param command the command to encode
+     * @param out     the buffer to write to
+     * @throws IllegalArgumentException if the command or one of its conditions cannot be encoded
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    static void encode(CommandEncoder encoder, AugmentedCommand command, ByteBuffer out) {
+        encoder.reset();
+        encoder.encode(command, out);
+    }
+
+    /**
+     * Reads a command's payload, which must fill the buffer.
+     *
+     * @param decoder the decoder to read with, whose dictionary is reset first
+     * @param in      the buffer holding the payload
+     * @return the decoded command
+     * @throws IllegalArgumentException if the payload is of another version, malformed or names an unknown device
+     * @throws java.nio.BufferUnderflowException if the payload is truncated
+     */
+    static AugmentedCommand decode(CommandDecoder decoder, ByteBuffer in) {
+        decoder.reset();
+        AugmentedCommand command = decoder.decodeAugmented(in);
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException(in.remaining() + " bytes left over after the command");
+        }
+        return command;
+    }
+}
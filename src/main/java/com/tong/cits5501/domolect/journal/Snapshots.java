@@ -0,0 +1,201 @@
+package com.tong.cits5501.domolect.journal;
+
+import com.tong.cits5501.domolect.codec.CommandDecoder;
+import com.tong.cits5501.domolect.codec.CommandEncoder;
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.constant.DeviceKind;
+import com.tong.cits5501.domolect.constant.State;
+import com.tong.cits5501.domolect.device.DeviceCatalog;
+import com.tong.cits5501.domolect.device.DeviceStateStore;
+import com.tong.cits5501.domolect.sensor.TemperatureSensor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes and reads the snapshot files of a {@link CommandJournal}.
+ * <p>
+ * A snapshot holds a magic number (int); the journal position it covers up
+ * to (long); the next command id (long); the number of pending commands (int)
+ * and, for each, its id (long), payload length (int) and payload as described
+ * in {@link CommandRecords}; the number of devices (int) and, for each, its
+ * kind (byte), whether it has a location (boolean), its location and device
+ * names (modified UTF-8) and its encoded state (byte); and finally a CRC-32C
+ * checksum of everything before it (int). A snapshot is written to a
+ * temporary file, forced to disk and then renamed into place, so a crash
+ * never leaves a partial snapshot under its final name. The directory is
+ * then forced as well, so that the rename is on disk before the journal
+ * deletes the segments the snapshot replaces.
+ */
+final class Snapshots {
+
+    private static final int MAGIC = 0x44534E50;
+
+    /**
+     * The contents of a snapshot, other than device states, which are
+     * restored straight into the catalog.
+     */
+    record Snapshot(long cut, long nextId, LinkedHashMap<Long, AugmentedCommand> pending) {
+    }
+
+    /**
+     * A device and its state, captured before writing.
+     */
+    private record Device(DeviceKind kind, String location, String name, State state) {
+    }
+
+    private Snapshots() {
+    }
+
+    /**
+     * Writes a snapshot.
+     *
+     * @param file    the final name of the snapshot file
+     * @param cut     the journal position the snapshot covers up to
+     * @param nextId  the id the next command will be given
+     * @param pending the commands pending at the cut
+     * @param catalog the catalog whose device states are saved
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path file, long cut, long nextId, Map<Long, AugmentedCommand> pending, DeviceCatalog catalog)
+            throws IOException {
+        List<Device> devices = new ArrayList<>();
+        catalog.forEachState((kind, location, name, state) ->
+                devices.add(new Device(kind, location == null ? null : location.getName(), name, state)));
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C checksum = new CRC32C();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     new CheckedOutputStream(Channels.newOutputStream(channel), checksum), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeLong(cut);
+            out.writeLong(nextId);
+            out.writeInt(pending.size());
+            CommandEncoder encoder = new CommandEncoder();
+            ByteBuffer scratch = ByteBuffer.allocate(256);
+            for (Map.Entry<Long, AugmentedCommand> entry : pending.entrySet()) {
+                while (true) {
+                    scratch.clear();
+                    try {
+                        CommandRecords.encode(encoder, entry.getValue(), scratch);
+                        break;
+                    } catch (BufferOverflowException e) {
+                        scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+                    }
+                }
+                out.writeLong(entry.getKey());
+                out.writeInt(scratch.position());
+                out.write(scratch.array(), 0, scratch.position());
+            }
+            out.writeInt(devices.size());
+            for (Device device : devices) {
+                out.writeByte(device.kind().ordinal());
+                out.writeBoolean(device.location() != null);
+                if (device.location() != null) {
+                    out.writeUTF(device.location());
+                }
+                out.writeUTF(device.name());
+                out.writeByte(DeviceStateStore.encode(device.state()));
+            }
+            out.flush();
+            out.writeInt((int) checksum.getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(file.getParent());
+    }
+
+    /**
+     * Forces a directory's entries to disk, so that files created, renamed
+     * or deleted in it survive a crash. Platforms that cannot open a
+     * directory, such as Windows, make renames durable by other means and
+     * are skipped.
+     *
+     * @param directory the directory to force
+     * @throws IOException if the directory cannot be forced
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            if (System.getProperty("os.name", "").startsWith("Windows")) {
+                return;
+            }
+            throw e;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads a snapshot, restoring its device states into the catalog.
+     *
+     * @param file    the snapshot file
+     * @param catalog resolves the devices named in the snapshot, and receives their states
+     * @param clock   the clock for time conditions
+     * @param sensor  the sensor for temperature conditions; may be null
+     * @return the snapshot, or null if the file is truncated or corrupt
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if an intact snapshot names an unknown device
+     */
+    static Snapshot read(Path file, DeviceCatalog catalog, Clock clock, TemperatureSensor sensor) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 2 * Integer.BYTES) {
+            return null;
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes, 0, bytes.length - Integer.BYTES);
+        if (ByteBuffer.wrap(bytes).getInt(bytes.length - Integer.BYTES) != (int) checksum.getValue()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            return null;
+        }
+        long cut = in.readLong();
+        long nextId = in.readLong();
+        CommandDecoder decoder = new CommandDecoder(catalog, clock, sensor);
+        LinkedHashMap<Long, AugmentedCommand> pending = new LinkedHashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            long id = in.readLong();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            pending.put(id, CommandRecords.decode(decoder, ByteBuffer.wrap(payload)));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            DeviceKind kind = DeviceKind.values()[in.readByte()];
+            String location = in.readBoolean() ? in.readUTF() : null;
+            String name = in.readUTF();
+            State state = DeviceStateStore.decode(in.readByte());
+            DeviceCatalog.Entry entry = catalog.find(name);
+            if (entry == null) {
+                throw new IllegalArgumentException("Unknown device in snapshot: " + name);
+            }
+            catalog.restoreState(kind, location == null ? null : catalog.location(location), entry, state);
+        }
+        return new Snapshot(cut, nextId, pending);
+    }
+}
@@ -0,0 +1,256 @@
+package com.tong.cits5501.domolect.metrics;
+
+import com.tong.cits5501.domolect.command.Location;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency histograms for the stages a command goes through: parsing,
+ * scheduling, execution per {@code Command} subclass, and actuation per
+ * device.
+ * <p>
+ * The parser, the monitor and the commands record into these histograms
+ * themselves. A stage is timed by calling {@link #start()} before it and one
+ * of the {@code record} methods after it, passing on the value {@code start}
+ * returned. Reading the clock costs tens of nanoseconds on some machines,
+ * which is a large share of a parse, so only a sample of operations is
+ * timed: {@code start} decides at random, from a thread-local generator,
+ * whether to time an operation, and returns 0 for the operations it skips,
+ * which the {@code record} methods then ignore. By default one operation in
+ * {@value #DEFAULT_SAMPLING} is timed, which keeps the cost to a few
+ * nanoseconds per operation; {@link #setSampling(int)} trades accuracy
+ * against cost, and a rate of 0 turns recording off. The counts in a
+ * snapshot are therefore counts of samples.
+ * <p>
+ * Histograms are created the first time a command type or device records,
+ * and found again without locking, through a {@link ClassValue} per stage
+ * for command types and by name for devices. Devices are told apart by
+ * location and name, so no device is kept reachable by its histogram. Since
+ * locations are open-ended, at most {@value #MAX_DEVICES} devices get a
+ * histogram of their own; the actuations of any others are recorded
+ * together under {@code actuate other devices}.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * Latencies.setSampling(1); // time every operation
+ * repl.parseCommand("kitchen turn lamp on");
+ * Latencies.snapshot().forEach((name, latencies) -&gt; System.out.println(name + ": " + latencies));
+ * </pre>
+ */
+public final class Latencies {
+
+    /**
+     * The stages a command goes through.
+     */
+    public enum Stage {
+        /** Parsing a command line, by the type of command parsed, or {@code ParseError} for invalid lines. */
+        PARSE,
+        /** Filing a command under its "when" condition. */
+        SCHEDULE,
+        /** Running {@code Command.execute()}, whether or not it succeeds. */
+        EXECUTE,
+        /** Driving one device to its new state, timed around the call to the device alone; only successful actuations are recorded. */
+        ACTUATE;
+
+        private final String label = name().toLowerCase();
+    }
+
+    /**
+     * The default sampling rate: one operation in this many is timed.
+     */
+    public static final int DEFAULT_SAMPLING = 32;
+
+    /**
+     * The most devices whose actuations are recorded apart.
+     */
+    public static final int MAX_DEVICES = 256;
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private static volatile int sampleMask = DEFAULT_SAMPLING - 1;
+    private static volatile boolean enabled = true;
+
+    /**
+     * Every histogram, by its name in snapshots.
+     */
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private static final LatencyHistogram OTHER_DEVICES = HISTOGRAMS.computeIfAbsent(
+            Stage.ACTUATE.label + " other devices", label -> new LatencyHistogram());
+
+    private static final AtomicInteger DEVICES = new AtomicInteger();
+
+    private static final ClassValue<LatencyHistogram>[] BY_TYPE = byType();
+
+    private Latencies() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ClassValue<LatencyHistogram>[] byType() {
+        ClassValue<LatencyHistogram>[] byType = (ClassValue<LatencyHistogram>[]) new ClassValue<?>[STAGES.length];
+        for (Stage stage : STAGES) {
+            byType[stage.ordinal()] = new ClassValue<>() {
+                @Override
+                protected LatencyHistogram computeValue(Class<?> type) {
+                    return HISTOGRAMS.computeIfAbsent(stage.label + " " + type.getSimpleName(),
+                            name -> new LatencyHistogram());
+                }
+            };
+        }
+        return byType;
+    }
+
+    /**
+     * Sets how many operations go by for each one timed.
+     *
+     * @param oneIn 1 to time every operation, a larger power of two to time
+     *              one operation in that many, or 0 to stop recording
+     * @throws IllegalArgumentException if the rate is negative or not a power of two
+     */
+    public static void setSampling(int oneIn) {
+        if (oneIn < 0 || oneIn > 0 && Integer.bitCount(oneIn) != 1) {
+            throw new IllegalArgumentException("Sampling rate must be 0 or a power of two: " + oneIn);
+        }
+        if (oneIn > 0) {
+            sampleMask = oneIn - 1;
+        }
+        enabled = oneIn > 0;
+    }
+
+    /**
+     * Returns how many operations go by for each one timed.
+     *
+     * @return the sampling rate, or 0 if recording is off
+     */
+    public static int getSampling() {
+        return enabled ? sampleMask + 1 : 0;
+    }
+
+    /**
+     * Marks the start of an operation.
+     *
+     * @return the current {@link System#nanoTime()} if this operation is to be timed, 0 otherwise
+     */
+    public static long start() {
+        if (!enabled) {
+            return 0;
+        }
+        int mask = sampleMask;
+        if (mask != 0 && (ThreadLocalRandom.current().nextInt() & mask) != 0) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the end of a stage for a type of command, if it was timed.
+     *
+     * @param stage the stage
+     * @param type  the type of command, or of error
+     * @param start the value {@link #start()} returned at the start of the stage
+     */
+    public static void record(Stage stage, Class<?> type, long start) {
+        if (start != 0) {
+            BY_TYPE[stage.ordinal()].get(type).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the end of a device's actuation, if it was timed.
+     *
+     * @param location the location of the device, or null if it has none
+     * @param name     the name of the device
+     * @param start    the value {@link #start()} returned at the start of the actuation
+     */
+    public static void recordActuation(Location location, String name, long start) {
+        if (start != 0) {
+            long nanos = System.nanoTime() - start;
+            String label = Stage.ACTUATE.label + " " + (location == null ? "" : location.getName() + " ") + name;
+            LatencyHistogram histogram = HISTOGRAMS.get(label);
+            if (histogram == null) {
+                histogram = HISTOGRAMS.computeIfAbsent(label, Latencies::deviceHistogram);
+            }
+            (histogram != null ? histogram : OTHER_DEVICES).record(nanos);
+        }
+    }
+
+    /**
+     * Creates the histogram for a device, unless {@value #MAX_DEVICES} devices have one already.
+     *
+     * @param label the name of the histogram
+     * @return the new histogram, or null if there are too many
+     */
+    private static LatencyHistogram deviceHistogram(String label) {
+        if (DEVICES.incrementAndGet() > MAX_DEVICES) {
+            DEVICES.decrementAndGet();
+            return null;
+        }
+        return new LatencyHistogram();
+    }
+
+    /**
+     * Returns the latencies recorded so far in every histogram that has
+     * recorded at all, by name: the stage followed by the command type, such
+     * as {@code parse LightingCommand}, or for actuation by the location and
+     * device, such as {@code actuate kitchen lamp}, or
+     * {@code actuate other devices} once {@value #MAX_DEVICES} devices have
+     * histograms of their own.
+     *
+     * @return the snapshots, sorted by name
+     */
+    public static Map<String, LatencySnapshot> snapshot() {
+        Map<String, LatencySnapshot> snapshots = new TreeMap<>();
+        HISTOGRAMS.forEach((name, histogram) -> {
+            LatencySnapshot snapshot = histogram.snapshot();
+            if (snapshot.getCount() > 0) {
+                snapshots.put(name, snapshot);
+            }
+        });
+        return snapshots;
+    }
+
+    /**
+     * Returns the latencies of one stage, merged over every command type,
+     * or over every device for {@link Stage#ACTUATE}.
+     *
+     * @param stage the stage
+     * @return the merged snapshot
+     */
+    public static LatencySnapshot snapshot(Stage stage) {
+        String prefix = stage.label + " ";
+        LatencySnapshot merged = LatencySnapshot.empty();
+        for (Map.Entry<String, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                merged = merged.merge(entry.getValue().snapshot());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Forgets every latency recorded so far.
+     */
+    public static void reset() {
+        HISTOGRAMS.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Returns the snapshot as text, one histogram per line.
+     *
+     * @return the report, or a note that nothing has been recorded
+     */
+    public static String report() {
+        Map<String, LatencySnapshot> snapshots = snapshot();
+        String sampling = enabled ? "sampling 1 in " + getSampling() : "recording off";
+        if (snapshots.isEmpty()) {
+            return "No latencies recorded (" + sampling + ").";
+        }
+        StringBuilder report = new StringBuilder("Latencies (" + sampling + "):");
+        snapshots.forEach((name, snapshot) -> report.append('\n').append(name).append(": ").append(snapshot));
+        return report.toString();
+    }
+}
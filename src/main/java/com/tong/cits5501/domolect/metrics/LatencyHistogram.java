@@ -0,0 +1,169 @@
+package com.tong.cits5501.domolect.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A histogram of latencies in nanoseconds, with fixed logarithmic buckets in
+ * the manner of HdrHistogram, that many threads can record into at once.
+ * <p>
+ * Values below {@value #SUB_BUCKETS} fall in buckets of their own. Above
+ * that, each power of two is split into {@value #SUB_BUCKETS}/2 buckets of
+ * equal width, so any recorded value is known to within about 6% whatever
+ * its magnitude. Values from 1 ns to about half an hour fit in
+ * {@value #BUCKETS} buckets; larger values are counted in the last one.
+ * <p>
+ * Recording takes no lock. To keep threads from contending on the same
+ * counters, the counts are split over stripes, each a flat array of bucket
+ * counters, and a thread always records into the stripe its id hashes to.
+ * Two threads may still hash to the same stripe, however few there are;
+ * they then contend on its counters, which stay correct as they are
+ * updated atomically. A stripe is allocated the first time a thread uses
+ * it. {@link #snapshot()} adds the
+ * stripes up while recording goes on, so a snapshot may miss values
+ * recorded during it, but never counts one twice. Resetting races with
+ * recording in the same way.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * LatencyHistogram histogram = new LatencyHistogram();
+ * long start = System.nanoTime();
+ * command.execute();
+ * histogram.record(System.nanoTime() - start);
+ * long p99 = histogram.snapshot().getValueAtPercentile(99);
+ * </pre>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of values below which every value has a bucket of its own.
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int MAX_SHIFT = 36;
+
+    /**
+     * The number of buckets.
+     */
+    static final int BUCKETS = MAX_SHIFT * HALF + SUB_BUCKETS;
+
+    /**
+     * The slot after the buckets that holds the sum of the recorded values.
+     */
+    private static final int SUM = BUCKETS;
+
+    private static final int MAX_STRIPES = 64;
+    private static final int STRIPE_MASK = stripeCount() - 1;
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPE_MASK + 1);
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+    }
+
+    private static int stripeCount() {
+        int wanted = Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors() * 2);
+        return Integer.highestOneBit(Math.max(wanted, 1) * 2 - 1);
+    }
+
+    /**
+     * Records a latency. Negative values, which a clock stepping backwards
+     * can produce, are recorded as zero.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        AtomicLongArray stripe = stripe();
+        stripe.getAndIncrement(bucketOf(value));
+        stripe.getAndAdd(SUM, value);
+    }
+
+    private AtomicLongArray stripe() {
+        long id = Thread.currentThread().threadId();
+        int index = (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & STRIPE_MASK;
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(BUCKETS + 1));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    /**
+     * Returns the bucket a value falls in.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        if (shift > MAX_SHIFT) {
+            return BUCKETS - 1;
+        }
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the smallest value that falls in a bucket.
+     */
+    static long lowestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / HALF - 1;
+        return (long) (bucket - shift * HALF) << shift;
+    }
+
+    /**
+     * Returns the largest value that falls in a bucket, or
+     * {@link Long#MAX_VALUE} for the last bucket.
+     */
+    static long highestValue(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowestValue(bucket + 1) - 1;
+    }
+
+    /**
+     * Returns the values recorded so far.
+     *
+     * @return a snapshot, unaffected by later recording
+     */
+    public LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        for (int i = 0; i < stripes.length(); i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe != null) {
+                for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                    counts[bucket] += stripe.get(bucket);
+                }
+                sum += stripe.get(SUM);
+            }
+        }
+        return new LatencySnapshot(counts, sum);
+    }
+
+    /**
+     * Forgets every value recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < stripes.length(); i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe != null) {
+                for (int slot = 0; slot <= SUM; slot++) {
+                    stripe.set(slot, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" + snapshot() + "}";
+    }
+}
@@ -0,0 +1,150 @@
+package com.tong.cits5501.domolect.metrics;
+
+/**
+ * The latencies recorded in a {@link LatencyHistogram} up to some moment.
+ * Values are reported as the largest value of the bucket they fell in, so a
+ * reported percentile is never below the true one and at most about 6%
+ * above it. Snapshots are immutable and may be merged, for example to
+ * combine the histograms of several command types.
+ */
+public final class LatencySnapshot {
+
+    private static final LatencySnapshot EMPTY = new LatencySnapshot(new long[LatencyHistogram.BUCKETS], 0);
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+
+    LatencySnapshot(long[] counts, long sum) {
+        this.counts = counts;
+        this.sum = sum;
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        this.count = total;
+    }
+
+    /**
+     * Returns a snapshot with no values.
+     *
+     * @return the empty snapshot
+     */
+    public static LatencySnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return the mean in nanoseconds, or 0 if there are none
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the smallest recorded value, to within its bucket.
+     *
+     * @return the lowest value of the first non-empty bucket in nanoseconds, or 0 if there are none
+     */
+    public long getMin() {
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            if (counts[bucket] != 0) {
+                return LatencyHistogram.lowestValue(bucket);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the largest recorded value, to within its bucket.
+     *
+     * @return the highest value of the last non-empty bucket in nanoseconds, or 0 if there are none
+     */
+    public long getMax() {
+        for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+            if (counts[bucket] != 0) {
+                return LatencyHistogram.highestValue(bucket);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the value below or at which the given percentage of the
+     * recorded values fall.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @return the value in nanoseconds, or 0 if there are none
+     * @throws IllegalArgumentException if the percentage is out of range
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValue(bucket);
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns a snapshot holding the values of this snapshot and another.
+     *
+     * @param other the other snapshot
+     * @return the combined snapshot
+     */
+    public LatencySnapshot merge(LatencySnapshot other) {
+        long[] merged = counts.clone();
+        for (int bucket = 0; bucket < merged.length; bucket++) {
+            merged[bucket] += other.counts[bucket];
+        }
+        return new LatencySnapshot(merged, sum + other.sum);
+    }
+
+    /**
+     * Formats a latency with a unit that keeps it to a few digits.
+     *
+     * @param nanos the latency in nanoseconds
+     * @return the formatted latency, such as {@code 850ns}, {@code 12.4us} or {@code 3.1ms}
+     */
+    public static String format(double nanos) {
+        if (nanos < 1_000) {
+            return String.format("%.0fns", nanos);
+        } else if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1_000);
+        } else if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1_000_000);
+        }
+        return String.format("%.2fs", nanos / 1_000_000_000);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count
+                + ", mean=" + format(getMean())
+                + ", p50=" + format(getValueAtPercentile(50))
+                + ", p90=" + format(getValueAtPercentile(90))
+                + ", p99=" + format(getValueAtPercentile(99))
+                + ", p99.9=" + format(getValueAtPercentile(99.9))
+                + ", max=" + format(getMax());
+    }
+}
@@ -0,0 +1,404 @@
+package com.tong.cits5501.domolect.schedule;
+
+import com.tong.cits5501.domolect.command.*;
+import com.tong.cits5501.domolect.events.ConditionFiredEvent;
+import com.tong.cits5501.domolect.events.ConditionRegisteredEvent;
+import com.tong.cits5501.domolect.journal.CommandJournal;
+import com.tong.cits5501.domolect.metrics.Latencies;
+import com.tong.cits5501.domolect.sensor.TemperatureSensor;
+import com.tong.cits5501.domolect.sensor.VirtualClock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Stores {@link AugmentedCommand}s and monitors a clock and a temperature
+ * sensor, carrying each command out when its "when" condition is met and
+ * reversing it when its "until" condition is met.
+ * <p>
+ * The monitor works in whole minutes. Each call to {@link #poll()} steps
+ * through every minute the clock has moved on since the previous call; for
+ * each minute it fires the commands due at that time, takes one sensor
+ * reading, fires the commands waiting on that temperature and passes the
+ * time and reading to a {@link ReversalEngine}. Commands waiting on a time
+ * sit in a {@link CommandScheduler} and commands waiting on a temperature in a
+ * {@link TemperatureIndex}, so a step only touches the commands it fires.
+ * Elapsed minutes are counted on the clock's timeline, so daylight saving
+ * transitions shift the local times at which commands fire.
+ * <p>
+ * With a {@link VirtualClock}, {@link #runFor(Duration)} fast-forwards
+ * simulated time, so a whole day of commands runs as quickly as they can be
+ * processed and always produces the same result.
+ * <p>
+ * A monitor given a {@link CommandJournal} keeps it up to date: each
+ * submitted command is appended, and retired once it has been carried out
+ * and, if it has an "until" condition, reversed. When a command with an
+ * "until" condition is carried out, what is left of it, the command with its
+ * "until" condition alone, is appended in its place, so that after a
+ * restart it is carried out again at once and reversed on time rather than
+ * waiting for its "when" condition to come round again. The commands the
+ * journal holds when the monitor is constructed are submitted again, in the
+ * order they were accepted, which rebuilds the schedule a restart
+ * interrupted. Commands are carried out at least once: one interrupted
+ * between being carried out and being retired is carried out again after a
+ * restart. The monitor does not sync the journal; records reach the disk
+ * when the caller calls {@link CommandJournal#sync()} or closes the journal.
+ * <p>
+ * A command the executor throws on, such as turning on a lamp that is
+ * already on, is counted as failed and otherwise skipped, so that one
+ * failure cannot hold up the commands due with it: it is not reversed, and
+ * it is retired from the journal like a command carried out. A reversal the
+ * executor throws on is likewise counted and retired, and does not stop the
+ * reversals due with it.
+ * This class is not thread-safe.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * VirtualClock clock = VirtualClock.at(LocalDateTime.of(2024, 1, 1, 0, 0), ZoneOffset.UTC);
+ * TemperatureSensor sensor = () -&gt; 290;
+ * CommandParser parser = new CommandParser(catalog, clock, sensor);
+ * CommandMonitor monitor = new CommandMonitor(clock, sensor, Command::execute);
+ * monitor.submit(parser.parse("turn coffee-maker on when 07:00 am until 07:30 am"));
+ * monitor.runFor(Duration.ofDays(1));
+ *
+ * try (CommandJournal journal = CommandJournal.open(Path.of("journal"), catalog, clock, sensor)) {
+ *     CommandMonitor durable = new CommandMonitor(clock, sensor, Command::execute, journal);
+ *     durable.submit(parser.parse("open gate when 06:00 am until 10:00 pm"));
+ *     journal.sync();
+ * }
+ * </pre>
+ */
+public final class CommandMonitor {
+
+    private static final long MILLIS_PER_MINUTE = 60_000;
+
+    /**
+     * A command waiting on a temperature. Commands are wrapped so that the
+     * index tells them apart by identity, keeping equal commands distinct.
+     */
+    private static final class Waiting {
+        final AugmentedCommand command;
+
+        Waiting(AugmentedCommand command) {
+            this.command = command;
+        }
+    }
+
+    private final Clock clock;
+    private final TemperatureSensor sensor;
+    private final Consumer<? super Command> executor;
+    private final CommandScheduler scheduler;
+    private final TemperatureIndex<Waiting> waiting = new TemperatureIndex<>();
+    private final ReversalEngine reversals;
+    private final List<Waiting> met = new ArrayList<>();
+    private final CommandJournal journal;
+
+    /**
+     * The journal ids of the commands waiting for their "when" condition, by identity.
+     */
+    private final Map<AugmentedCommand, Long> journaled = new IdentityHashMap<>();
+
+    /**
+     * The journal ids of the commands waiting for their "until" condition, by
+     * the identity of the command that reverses them.
+     */
+    private final Map<Command, Long> reversing = new IdentityHashMap<>();
+
+    /**
+     * The clock's epoch minute at which the scheduler's minute count is zero.
+     */
+    private final long origin;
+    private long minute;
+    private long executed;
+    private long failed;
+
+    /**
+     * Constructs a monitor over a clock and a sensor, starting at the clock's
+     * current minute.
+     *
+     * @param clock    the clock that decides when time conditions are met
+     * @param sensor   the sensor that decides when temperature conditions are met
+     * @param executor carries out each command and each reversal
+     */
+    public CommandMonitor(Clock clock, TemperatureSensor sensor, Consumer<? super Command> executor) {
+        this(clock, sensor, executor, null);
+    }
+
+    /**
+     * Constructs a monitor over a clock and a sensor, starting at the clock's
+     * current minute, that records its commands in a journal. The commands
+     * pending in the journal are submitted again straight away, so those no
+     * longer waiting for a "when" condition are carried out before this
+     * constructor returns.
+     *
+     * @param clock    the clock that decides when time conditions are met
+     * @param sensor   the sensor that decides when temperature conditions are met
+     * @param executor carries out each command and each reversal
+     * @param journal  the journal to record commands in and recover them from; may be null
+     * @throws UncheckedIOException if the journal cannot be written
+     */
+    public CommandMonitor(Clock clock, TemperatureSensor sensor, Consumer<? super Command> executor,
+                          CommandJournal journal) {
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+        this.sensor = Objects.requireNonNull(sensor, "sensor must not be null");
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        LocalTime start = LocalTime.now(clock);
+        this.minute = start.getHour() * 60L + start.getMinute();
+        this.origin = epochMinute() - minute;
+        this.scheduler = new CommandScheduler(start, this::fire);
+        this.reversals = new ReversalEngine(start, this::reverseAll);
+        this.journal = journal;
+        if (journal != null) {
+            journal.getPending().forEach((id, command) -> {
+                journaled.put(command, id);
+                schedule(command);
+            });
+        }
+    }
+
+    private long epochMinute() {
+        return Math.floorDiv(clock.millis(), MILLIS_PER_MINUTE);
+    }
+
+    /**
+     * Submits a command. A command without a "when" condition is carried out
+     * at once; otherwise it waits for its condition. A temperature "when"
+     * condition that already holds at the latest reading is met at once.
+     * With a journal, the command is appended to it first.
+     *
+     * @param command the command to carry out
+     * @throws IllegalArgumentException if the command has an "until" condition but cannot be reversed,
+     *                                  or cannot be journaled
+     * @throws UncheckedIOException if the journal cannot be written
+     */
+    public void submit(AugmentedCommand command) {
+        if (command.getUntilCondition() != null) {
+            // Reject irreversible commands up front rather than after carrying them out
+            ReversalEngine.inverse(command.getCommand());
+        }
+        Condition when = command.getWhenCondition();
+        if (when != null && !(when instanceof TimeCondition) && !(when instanceof TemperatureCondition)) {
+            throw new IllegalArgumentException("Unsupported when condition: " + when);
+        }
+        if (journal != null) {
+            journaled.put(command, append(command));
+        }
+        schedule(command);
+    }
+
+    private void schedule(AugmentedCommand command) {
+        Condition when = command.getWhenCondition();
+        if (when == null) {
+            fire(command);
+        } else if (when instanceof TimeCondition) {
+            long start = Latencies.start();
+            scheduler.schedule(command);
+            Latencies.record(Latencies.Stage.SCHEDULE, command.getCommand().getClass(), start);
+            ConditionRegisteredEvent.emit("when", when, command.getCommand());
+        } else if (when instanceof TemperatureCondition condition) {
+            int reading = waiting.getReading();
+            if (reading > 0 && condition.isSatisfiedAt(reading)) {
+                fire(command);
+            } else {
+                long start = Latencies.start();
+                waiting.add(condition, new Waiting(command));
+                Latencies.record(Latencies.Stage.SCHEDULE, command.getCommand().getClass(), start);
+                ConditionRegisteredEvent.emit("when", condition, command.getCommand());
+            }
+        }
+    }
+
+    /**
+     * Steps through every minute the clock has moved on since the previous
+     * poll, firing and reversing commands as their conditions are met.
+     */
+    public void poll() {
+        long target = epochMinute() - origin;
+        while (minute < target) {
+            step(++minute);
+        }
+    }
+
+    /**
+     * Moves a virtual clock forward one minute at a time, polling after each
+     * minute so that every minute gets its own sensor reading.
+     *
+     * @param duration how far to move the clock
+     * @throws IllegalStateException if the monitor does not run on a {@link VirtualClock}
+     */
+    public void runFor(Duration duration) {
+        if (!(clock instanceof VirtualClock virtual)) {
+            throw new IllegalStateException("Only a virtual clock can be fast-forwarded.");
+        }
+        Duration oneMinute = Duration.ofMinutes(1);
+        for (long i = duration.toMinutes(); i > 0; i--) {
+            virtual.advance(oneMinute);
+            poll();
+        }
+        virtual.advance(duration.minusMinutes(duration.toMinutes()));
+        poll();
+    }
+
+    private void step(long now) {
+        scheduler.advanceTo(now);
+
+        int kelvin = sensor.readKelvin();
+        waiting.update(kelvin, (entry, satisfied) -> {
+            if (satisfied) {
+                met.add(entry);
+            }
+        });
+        try {
+            for (Waiting entry : met) {
+                waiting.remove((TemperatureCondition) entry.command.getWhenCondition(), entry);
+                fire(entry.command);
+            }
+        } finally {
+            // Entries not fired yet are still waiting, and are met again next minute
+            met.clear();
+        }
+
+        reversals.onTemperature(kelvin);
+        reversals.advanceTo(now);
+    }
+
+    private void fire(AugmentedCommand command) {
+        if (command.getWhenCondition() != null) {
+            ConditionFiredEvent.emit("when", command.getWhenCondition(), command.getCommand());
+        }
+        Long id = journal == null ? null : journaled.remove(command);
+        boolean done = tryExecute(command.getCommand());
+        Condition until = command.getUntilCondition();
+        if (until == null || !done) {
+            retire(id);
+            return;
+        }
+        ReversalEngine.Activation activation = reversals.activate(command);
+        if (id == null) {
+            return;
+        }
+        if (!activation.isActive()) {
+            retire(id);
+        } else if (command.getWhenCondition() == null) {
+            reversing.put(activation.getInverse(), id);
+        } else {
+            reversing.put(activation.getInverse(), append(new AugmentedCommand(null, until, command.getCommand())));
+            retire(id);
+        }
+    }
+
+    /**
+     * Carries out a batch of reversals the engine has released. The engine
+     * no longer holds them, so each is carried out and retired even if one
+     * before it fails; a journal error is thrown once the batch is done.
+     */
+    private void reverseAll(List<Command> batch) {
+        UncheckedIOException failure = null;
+        for (Command inverse : batch) {
+            try {
+                reverse(inverse);
+            } catch (UncheckedIOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void reverse(Command inverse) {
+        Long id = journal == null ? null : reversing.remove(inverse);
+        tryExecute(inverse);
+        retire(id);
+    }
+
+    /**
+     * Carries out a command, counting it as failed if the executor throws.
+     *
+     * @return whether the command was carried out
+     */
+    private boolean tryExecute(Command command) {
+        try {
+            executor.accept(command);
+        } catch (RuntimeException e) {
+            failed++;
+            return false;
+        }
+        executed++;
+        return true;
+    }
+
+    private long append(AugmentedCommand command) {
+        try {
+            return journal.append(command);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void retire(Long id) {
+        if (id == null) {
+            return;
+        }
+        try {
+            journal.retire(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the number of commands waiting for their "when" condition.
+     *
+     * @return the number of pending commands
+     */
+    public int getPending() {
+        return scheduler.size() + waiting.size();
+    }
+
+    /**
+     * Returns the number of commands waiting for their "until" condition.
+     *
+     * @return the number of active commands
+     */
+    public int getActive() {
+        return reversals.size();
+    }
+
+    /**
+     * Returns the number of commands and reversals carried out so far.
+     *
+     * @return the number of executed commands
+     */
+    public long getExecuted() {
+        return executed;
+    }
+
+    /**
+     * Returns the number of commands and reversals the executor threw on.
+     *
+     * @return the number of failed commands
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandMonitor{time=" + scheduler.getTime() + ", pending=" + getPending()
+                + ", active=" + getActive() + ", executed=" + executed + ", failed=" + failed + "}";
+    }
+}
@@ -0,0 +1,159 @@
+package com.tong.cits5501.domolect.schedule;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.command.TimeCondition;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Holds {@link AugmentedCommand}s whose "when" condition is a
+ * {@link TimeCondition} and executes each one when its minute of the day
+ * next arrives.
+ * <p>
+ * The scheduler keeps its own minute-resolution clock, which only moves when
+ * {@link #advance(Duration)} or {@link #advanceTo(long)} is called; whatever
+ * drives it (a wall-clock timer thread, a simulation) decides how fast time
+ * passes. Pending commands are kept in a {@link TimingWheel} keyed by the
+ * minute they fall due, so scheduling and cancelling a command take constant
+ * time and advancing the clock only touches the commands that fire.
+ * This class is not thread-safe.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * CommandScheduler scheduler = new CommandScheduler(LocalTime.of(7, 0));
+ * scheduler.schedule(parser.parse("open gate when 07:30 am"));
+ * scheduler.advance(Duration.ofHours(1)); // opens the gate at 07:30
+ * </pre>
+ */
+public final class CommandScheduler {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final TimingWheel<AugmentedCommand> wheel;
+    private final Consumer<? super AugmentedCommand> action;
+
+    /**
+     * Constructs a scheduler whose clock starts at the given time of day and
+     * which executes each command as it falls due.
+     *
+     * @param start the time of day the scheduler's clock starts at
+     */
+    public CommandScheduler(LocalTime start) {
+        this(start, AugmentedCommand::execute);
+    }
+
+    /**
+     * Constructs a scheduler whose clock starts at the given time of day and
+     * which hands each command to {@code action} as it falls due.
+     *
+     * @param start  the time of day the scheduler's clock starts at
+     * @param action receives each command when it falls due
+     */
+    public CommandScheduler(LocalTime start, Consumer<? super AugmentedCommand> action) {
+        this.wheel = new TimingWheel<>(minuteOfDay(start));
+        this.action = Objects.requireNonNull(action, "action must not be null");
+    }
+
+    /**
+     * Schedules a command to fire at the next occurrence of its "when" time
+     * strictly after the current minute. A command scheduled for the current
+     * minute therefore fires one day later.
+     *
+     * @param command a command whose "when" condition is a {@link TimeCondition}
+     * @return a handle for cancelling the command
+     * @throws IllegalArgumentException if the command has no time "when" condition
+     */
+    public TimingWheel.Timer<AugmentedCommand> schedule(AugmentedCommand command) {
+        if (!(command.getWhenCondition() instanceof TimeCondition condition)) {
+            throw new IllegalArgumentException("Command does not have a time condition: " + command);
+        }
+        return schedule(command, condition.getTime());
+    }
+
+    /**
+     * Schedules a command to fire at the next occurrence of {@code time}
+     * strictly after the current minute, regardless of its conditions.
+     *
+     * @param command the command to fire
+     * @param time    the time of day at which to fire it; seconds are ignored
+     * @return a handle for cancelling the command
+     */
+    public TimingWheel.Timer<AugmentedCommand> schedule(AugmentedCommand command, LocalTime time) {
+        Objects.requireNonNull(command, "command must not be null");
+        long now = getCurrentMinute();
+        long delay = Math.floorMod(minuteOfDay(time) - now, MINUTES_PER_DAY);
+        return wheel.schedule(command, now + (delay == 0 ? MINUTES_PER_DAY : delay));
+    }
+
+    /**
+     * Cancels a pending command.
+     *
+     * @param handle the handle returned when the command was scheduled
+     * @return true if the command was pending, false if it had already fired or been cancelled
+     */
+    public boolean cancel(TimingWheel.Timer<AugmentedCommand> handle) {
+        return wheel.cancel(handle);
+    }
+
+    /**
+     * Moves the clock forward, firing every command that falls due on the way.
+     *
+     * @param duration how far to move the clock; rounded down to whole minutes
+     * @throws IllegalArgumentException if the duration is negative
+     */
+    public void advance(Duration duration) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Cannot move the clock backwards: " + duration);
+        }
+        advanceTo(getCurrentMinute() + duration.toMinutes());
+    }
+
+    /**
+     * Moves the clock forward to the given minute, firing every command that
+     * falls due up to and including it. Minutes already passed are ignored.
+     *
+     * @param minute the minute to move to, counted from midnight of the day the clock started
+     */
+    public void advanceTo(long minute) {
+        wheel.advanceTo(minute, action);
+    }
+
+    /**
+     * Returns the scheduler's current minute.
+     *
+     * @return the current minute, counted from midnight of the day the clock started
+     */
+    public long getCurrentMinute() {
+        return wheel.getCurrentTick();
+    }
+
+    /**
+     * Returns the scheduler's current time of day.
+     *
+     * @return the current time, to the minute
+     */
+    public LocalTime getTime() {
+        return LocalTime.ofSecondOfDay(Math.floorMod(getCurrentMinute(), MINUTES_PER_DAY) * 60L);
+    }
+
+    /**
+     * Returns the number of commands waiting to fire.
+     *
+     * @return the number of pending commands
+     */
+    public int size() {
+        return wheel.size();
+    }
+
+    private static long minuteOfDay(LocalTime time) {
+        return time.getHour() * 60L + time.getMinute();
+    }
+
+    @Override
+    public String toString() {
+        return "CommandScheduler{time=" + getTime() + ", pending=" + size() + "}";
+    }
+}
@@ -0,0 +1,268 @@
+package com.tong.cits5501.domolect.schedule;
+
+import com.tong.cits5501.domolect.command.*;
+import com.tong.cits5501.domolect.constant.BarrierAction;
+import com.tong.cits5501.domolect.constant.State;
+import com.tong.cits5501.domolect.events.ConditionFiredEvent;
+import com.tong.cits5501.domolect.events.ConditionRegisteredEvent;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Reverses activated commands when their "until" condition is met, as
+ * described in {@link AugmentedCommand}: a command that turned a
+ * coffee-maker on is answered by one turning it off.
+ * <p>
+ * Each activated command is filed under its "until" condition: commands that
+ * last until a time of day sit in a {@link CommandScheduler}, and commands
+ * that last until a temperature is reached sit in a {@link TemperatureIndex}.
+ * Advancing the clock or recording a temperature reading therefore touches
+ * only the commands whose condition was met, however many are active. The
+ * inverse commands released by one call are handed to the sink together, in
+ * the order their conditions were met, so they can be issued in bulk.
+ * <p>
+ * Lighting and appliance commands are reversed by switching the device to
+ * the opposite state; barrier commands by the opposite action (open and
+ * close, lock and unlock). Thermal device commands cannot be reversed,
+ * because the temperature they replaced is not known. This class is not
+ * thread-safe.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * ReversalEngine engine = new ReversalEngine(LocalTime.of(7, 0), batch -&gt; batch.forEach(Command::execute));
+ * AugmentedCommand brew = parser.parse("turn coffee-maker on until 07:30 am");
+ * brew.execute();
+ * engine.activate(brew);
+ * engine.advanceTo(8 * 60); // turns the coffee-maker off at 07:30
+ * </pre>
+ */
+public final class ReversalEngine {
+
+    /**
+     * An activated command waiting for its "until" condition.
+     */
+    public static final class Activation {
+        private final AugmentedCommand command;
+        private final Command inverse;
+        private TimingWheel.Timer<AugmentedCommand> timer;
+        private boolean active = true;
+
+        private Activation(AugmentedCommand command, Command inverse) {
+            this.command = command;
+            this.inverse = inverse;
+        }
+
+        /**
+         * Returns the activated command.
+         *
+         * @return the command
+         */
+        public AugmentedCommand getCommand() {
+            return command;
+        }
+
+        /**
+         * Returns the command that reverses the activated command.
+         *
+         * @return the inverse command
+         */
+        public Command getInverse() {
+            return inverse;
+        }
+
+        /**
+         * Checks whether the command is still waiting to be reversed.
+         *
+         * @return true if the command has been neither reversed nor deactivated, false otherwise
+         */
+        public boolean isActive() {
+            return timer != null ? timer.isPending() : active;
+        }
+
+        @Override
+        public String toString() {
+            return "Activation{command=" + command + ", active=" + isActive() + "}";
+        }
+    }
+
+    private final CommandScheduler scheduler;
+    private final TemperatureIndex<Activation> temperatureIndex = new TemperatureIndex<>();
+    private final Consumer<? super List<Command>> sink;
+    private final List<Activation> met = new ArrayList<>();
+    private List<Command> batch = new ArrayList<>();
+
+    /**
+     * Constructs an engine whose clock starts at the given time of day and
+     * which hands each batch of inverse commands to {@code sink}.
+     *
+     * @param start the time of day the engine's clock starts at
+     * @param sink  receives the inverse commands released by each call, in order
+     */
+    public ReversalEngine(LocalTime start, Consumer<? super List<Command>> sink) {
+        this.sink = Objects.requireNonNull(sink, "sink must not be null");
+        this.scheduler = new CommandScheduler(start, reversal -> {
+            ConditionFiredEvent.emit("until", reversal.getUntilCondition(), reversal.getCommand());
+            batch.add(reversal.getCommand());
+        });
+    }
+
+    /**
+     * Returns the command that undoes a command.
+     *
+     * @param command the command to reverse
+     * @return the inverse command
+     * @throws IllegalArgumentException if the command cannot be reversed
+     */
+    public static Command inverse(Command command) {
+        if (command instanceof LightingCommand cmd) {
+            return new LightingCommand(cmd.getLocation(), cmd.getLightSource(), opposite(cmd.getState()));
+        } else if (command instanceof ApplianceCommand cmd) {
+            return new ApplianceCommand(cmd.getLocation(), cmd.getAppliance(), opposite(cmd.getState()));
+        } else if (command instanceof BarrierCommand cmd) {
+            return new BarrierCommand(cmd.getLocation(), opposite(cmd.getAction()), cmd.getBarrier());
+        }
+        throw new IllegalArgumentException("Command cannot be reversed: " + command);
+    }
+
+    private static State opposite(State state) {
+        return state == State.ON ? State.OFF : State.ON;
+    }
+
+    private static BarrierAction opposite(BarrierAction action) {
+        switch (action) {
+            case OPEN:
+                return BarrierAction.CLOSE;
+            case CLOSE:
+                return BarrierAction.OPEN;
+            case LOCK:
+                return BarrierAction.UNLOCK;
+            case UNLOCK:
+                return BarrierAction.LOCK;
+            default:
+                throw new IllegalStateException("Unknown barrier action: " + action);
+        }
+    }
+
+    /**
+     * Records that a command has been carried out, so that it is reversed
+     * when its "until" condition is met. A time condition is met at the next
+     * occurrence of its time strictly after the current minute. A temperature
+     * condition is met by the first reading at which it holds; if it already
+     * holds at the most recent reading, the command is reversed at once.
+     *
+     * @param command an executed command with an "until" condition
+     * @return the activation, which may be passed to {@link #deactivate(Activation)}
+     * @throws IllegalArgumentException if the command has no "until" condition or cannot be reversed
+     */
+    public Activation activate(AugmentedCommand command) {
+        Condition until = command.getUntilCondition();
+        if (until == null) {
+            throw new IllegalArgumentException("Command does not have an until condition: " + command);
+        }
+        Activation activation = new Activation(command, inverse(command.getCommand()));
+        if (until instanceof TimeCondition condition) {
+            // The inverse carries the condition along so that firing can report it
+            activation.timer = scheduler.schedule(new AugmentedCommand(null, condition, activation.inverse), condition.getTime());
+            ConditionRegisteredEvent.emit("until", until, command.getCommand());
+        } else if (until instanceof TemperatureCondition condition) {
+            int reading = temperatureIndex.getReading();
+            if (reading > 0 && condition.isSatisfiedAt(reading)) {
+                activation.active = false;
+                ConditionFiredEvent.emit("until", until, activation.inverse);
+                sink.accept(List.of(activation.inverse));
+            } else {
+                temperatureIndex.add(condition, activation);
+                ConditionRegisteredEvent.emit("until", until, command.getCommand());
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported until condition: " + until);
+        }
+        return activation;
+    }
+
+    /**
+     * Forgets an activated command without reversing it, for example because
+     * a later command has overridden it.
+     *
+     * @param activation the activation returned by {@link #activate(AugmentedCommand)}
+     * @return true if the command was waiting to be reversed, false otherwise
+     */
+    public boolean deactivate(Activation activation) {
+        if (activation.timer != null) {
+            return scheduler.cancel(activation.timer);
+        }
+        if (!activation.active) {
+            return false;
+        }
+        activation.active = false;
+        return temperatureIndex.remove((TemperatureCondition) activation.command.getUntilCondition(), activation);
+    }
+
+    /**
+     * Moves the clock forward to the given minute, reversing every command
+     * whose "until" time falls due on the way.
+     *
+     * @param minute the minute to move to, counted from midnight of the day the clock started
+     */
+    public void advanceTo(long minute) {
+        scheduler.advanceTo(minute);
+        flush();
+    }
+
+    /**
+     * Records a temperature reading, reversing every command whose "until"
+     * condition now holds.
+     *
+     * @param kelvin the reading, in Kelvin
+     */
+    public void onTemperature(int kelvin) {
+        temperatureIndex.update(kelvin, (activation, satisfied) -> {
+            if (satisfied) {
+                met.add(activation);
+            }
+        });
+        for (Activation activation : met) {
+            temperatureIndex.remove((TemperatureCondition) activation.command.getUntilCondition(), activation);
+            activation.active = false;
+            ConditionFiredEvent.emit("until", activation.command.getUntilCondition(), activation.inverse);
+            batch.add(activation.inverse);
+        }
+        met.clear();
+        flush();
+    }
+
+    private void flush() {
+        if (!batch.isEmpty()) {
+            List<Command> released = batch;
+            batch = new ArrayList<>();
+            sink.accept(released);
+        }
+    }
+
+    /**
+     * Returns the engine's current minute.
+     *
+     * @return the current minute, counted from midnight of the day the clock started
+     */
+    public long getCurrentMinute() {
+        return scheduler.getCurrentMinute();
+    }
+
+    /**
+     * Returns the number of commands waiting to be reversed.
+     *
+     * @return the number of active commands
+     */
+    public int size() {
+        return scheduler.size() + temperatureIndex.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ReversalEngine{time=" + scheduler.getTime() + ", active=" + size() + "}";
+    }
+}
@@ -0,0 +1,187 @@
+package com.tong.cits5501.domolect.schedule;
+
+import com.tong.cits5501.domolect.command.TemperatureCondition;
+import com.tong.cits5501.domolect.constant.Comparison;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * An index of values guarded by {@link TemperatureCondition}s which, given a
+ * new temperature reading, finds exactly the conditions whose truth value
+ * changed since the previous reading.
+ * <p>
+ * Conditions are kept in one sorted map per {@link Comparison}, keyed by
+ * target temperature. A condition {@code greater-than N} changes truth value
+ * between readings {@code a} and {@code b} only if {@code N} lies in
+ * {@code [min(a, b), max(a, b))}; for {@code less-than} the range is
+ * {@code (min, max]}; and an {@code equal-to} condition changes only if
+ * {@code N} is one of the two readings. Each reading is therefore answered
+ * with a range query, in {@code O(log n + k)} time for {@code n} indexed
+ * conditions of which {@code k} changed, rather than by evaluating every
+ * condition.
+ * <p>
+ * Before the first reading every condition is considered unsatisfied, so the
+ * first reading reports the conditions that hold at that temperature.
+ * Conditions added after a reading are not reported until their truth value
+ * next changes; callers can test them with
+ * {@link TemperatureCondition#isSatisfiedAt(int)}. This class is not
+ * thread-safe.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * TemperatureIndex&lt;AugmentedCommand&gt; index = new TemperatureIndex&lt;&gt;();
+ * index.add((TemperatureCondition) command.getWhenCondition(), command);
+ * index.update(sensorKelvin, (cmd, satisfied) -&gt; { if (satisfied) cmd.execute(); });
+ * </pre>
+ *
+ * @param <T> the type of value associated with each condition
+ */
+public final class TemperatureIndex<T> {
+
+    /**
+     * Receives the values whose condition changed truth value.
+     *
+     * @param <T> the type of value associated with each condition
+     */
+    @FunctionalInterface
+    public interface Listener<T> {
+
+        /**
+         * Called once for each value whose condition changed truth value.
+         *
+         * @param value     the value associated with the condition
+         * @param satisfied whether the condition now holds
+         */
+        void onChange(T value, boolean satisfied);
+    }
+
+    private final Map<Comparison, NavigableMap<Integer, Collection<T>>> byComparison = new EnumMap<>(Comparison.class);
+    private boolean hasReading;
+    private int reading;
+    private int size;
+
+    /**
+     * Constructs an empty index.
+     */
+    public TemperatureIndex() {
+        for (Comparison comparison : Comparison.values()) {
+            byComparison.put(comparison, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Adds a value guarded by a condition. Values are compared with
+     * {@link Object#equals(Object)}, so adding an equal value under the same
+     * condition twice stores it once.
+     *
+     * @param condition the condition guarding the value
+     * @param value     the value to report when the condition changes
+     * @return true if the value was added, false if it was already present
+     */
+    public boolean add(TemperatureCondition condition, T value) {
+        Objects.requireNonNull(value, "value must not be null");
+        if (!thresholds(condition).computeIfAbsent(condition.getKelvin(), k -> new LinkedHashSet<>()).add(value)) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a value previously added with the same condition.
+     *
+     * @param condition the condition the value was added with
+     * @param value     the value to remove
+     * @return true if the value was present, false otherwise
+     */
+    public boolean remove(TemperatureCondition condition, T value) {
+        NavigableMap<Integer, Collection<T>> thresholds = thresholds(condition);
+        Collection<T> values = thresholds.get(condition.getKelvin());
+        if (values == null || !values.remove(value)) {
+            return false;
+        }
+        if (values.isEmpty()) {
+            thresholds.remove(condition.getKelvin());
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Records a new temperature reading and reports every value whose
+     * condition changed truth value since the previous reading.
+     *
+     * @param kelvin   the new reading, in Kelvin
+     * @param listener receives each value whose condition changed; must not modify this index
+     */
+    public void update(int kelvin, Listener<? super T> listener) {
+        NavigableMap<Integer, Collection<T>> greater = byComparison.get(Comparison.GREATER_THAN);
+        NavigableMap<Integer, Collection<T>> less = byComparison.get(Comparison.LESS_THAN);
+        NavigableMap<Integer, Collection<T>> equal = byComparison.get(Comparison.EQUAL_TO);
+
+        if (!hasReading) {
+            report(greater.headMap(kelvin, false), true, listener);
+            report(less.tailMap(kelvin, false), true, listener);
+            report(equal.get(kelvin), true, listener);
+        } else if (kelvin != reading) {
+            boolean rising = kelvin > reading;
+            int low = Math.min(reading, kelvin);
+            int high = Math.max(reading, kelvin);
+            // Rising readings make greater-than conditions true and less-than conditions false
+            report(greater.subMap(low, true, high, false), rising, listener);
+            report(less.subMap(low, false, high, true), !rising, listener);
+            report(equal.get(reading), false, listener);
+            report(equal.get(kelvin), true, listener);
+        }
+        hasReading = true;
+        reading = kelvin;
+    }
+
+    private static <T> void report(NavigableMap<Integer, Collection<T>> range, boolean satisfied,
+                                   Listener<? super T> listener) {
+        for (Collection<T> values : range.values()) {
+            report(values, satisfied, listener);
+        }
+    }
+
+    private static <T> void report(Collection<T> values, boolean satisfied, Listener<? super T> listener) {
+        if (values != null) {
+            for (T value : values) {
+                listener.onChange(value, satisfied);
+            }
+        }
+    }
+
+    private NavigableMap<Integer, Collection<T>> thresholds(TemperatureCondition condition) {
+        return byComparison.get(Objects.requireNonNull(condition.getComparison(), "comparison must not be null"));
+    }
+
+    /**
+     * Returns the most recent reading.
+     *
+     * @return the last reading in Kelvin, or -1 if there has been no reading
+     */
+    public int getReading() {
+        return hasReading ? reading : -1;
+    }
+
+    /**
+     * Returns the number of values in the index.
+     *
+     * @return the number of indexed values
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "TemperatureIndex{size=" + size + ", reading=" + getReading() + "}";
+    }
+}
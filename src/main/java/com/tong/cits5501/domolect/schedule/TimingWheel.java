@@ -0,0 +1,276 @@
+package com.tong.cits5501.domolect.schedule;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: a set of timers, each due at an integer tick,
+ * that can be inserted and cancelled in constant time and that fires the due
+ * timers as the wheel is advanced without ever scanning timers that are not
+ * yet due.
+ * <p>
+ * The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots. Level
+ * {@code n} holds timers due within {@code 64^(n+1)} ticks, in slots that
+ * each cover {@code 64^n} ticks. Whenever the lowest level wraps around, the
+ * next slot of the level above is emptied and its timers are redistributed
+ * into the levels below ("cascaded"), so every timer is moved at most
+ * {@value #LEVELS} times in its life. Timers due further ahead than the top
+ * level can express are parked in its furthest slot and re-placed each time
+ * that slot cascades.
+ * <p>
+ * Each slot is a circular doubly-linked list threaded through the timers
+ * themselves, so a timer can be unlinked from wherever it currently sits.
+ * This class is not thread-safe.
+ *
+ * @param <T> the type of value carried by each timer
+ */
+public final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /**
+     * A pending timer. Timers are created by {@link TimingWheel#schedule} and
+     * serve as the handle for cancelling them.
+     *
+     * @param <T> the type of value carried by the timer
+     */
+    public static final class Timer<T> {
+        private final T value;
+        private final long deadline;
+        private Timer<T> prev;
+        private Timer<T> next;
+
+        private Timer(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Returns the value carried by this timer.
+         *
+         * @return the value
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the tick at which this timer is due.
+         *
+         * @return the deadline tick
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Checks whether this timer is still waiting to fire.
+         *
+         * @return true if the timer has neither fired nor been cancelled, false otherwise
+         */
+        public boolean isPending() {
+            return next != null;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+
+        @Override
+        public String toString() {
+            return "Timer{deadline=" + deadline + ", value=" + value + "}";
+        }
+    }
+
+    /**
+     * The sentinel heads of every slot list, indexed by level then slot.
+     */
+    private final Timer<T>[][] slots;
+
+    /**
+     * The sentinel head of the timers currently being fired.
+     */
+    private final Timer<T> firing = sentinel();
+
+    /**
+     * The last tick processed.
+     */
+    private long current;
+    private int size;
+
+    /**
+     * Constructs an empty wheel whose clock stands at {@code start}. The
+     * first tick processed is {@code start + 1}.
+     *
+     * @param start the tick the wheel starts at
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long start) {
+        this.current = start;
+        this.slots = (Timer<T>[][]) new Timer<?>[LEVELS][SLOTS];
+        for (Timer<T>[] level : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = sentinel();
+            }
+        }
+    }
+
+    private static <T> Timer<T> sentinel() {
+        Timer<T> head = new Timer<>(null, 0);
+        head.prev = head;
+        head.next = head;
+        return head;
+    }
+
+    /**
+     * Returns the last tick processed. Every timer due at or before this tick
+     * has fired, or is firing if called from within {@link #advanceTo}.
+     *
+     * @return the current tick
+     */
+    public long getCurrentTick() {
+        return current;
+    }
+
+    /**
+     * Returns the number of pending timers.
+     *
+     * @return the number of timers that have neither fired nor been cancelled
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a timer. A deadline at or before the current tick is treated as
+     * due at the next tick.
+     *
+     * @param value    the value to deliver when the timer fires
+     * @param deadline the tick at which the timer is due
+     * @return the timer, which may be passed to {@link #cancel(Timer)}
+     */
+    public Timer<T> schedule(T value, long deadline) {
+        Timer<T> timer = new Timer<>(value, deadline);
+        place(timer);
+        size++;
+        return timer;
+    }
+
+    /**
+     * Cancels a pending timer.
+     *
+     * @param timer a timer returned by {@link #schedule} on this wheel
+     * @return true if the timer was pending, false if it had already fired or been cancelled
+     */
+    public boolean cancel(Timer<T> timer) {
+        if (!timer.isPending()) {
+            return false;
+        }
+        timer.unlink();
+        size--;
+        return true;
+    }
+
+    /**
+     * Processes every tick up to and including {@code tick}, passing the
+     * value of each timer to {@code action} as it falls due. Timers fire in
+     * deadline order; timers sharing a deadline fire in no particular order.
+     * The action may schedule or cancel timers on this wheel.
+     * <p>
+     * If the action throws, the exception propagates and the timers still due
+     * at that tick fire at the start of the next call.
+     *
+     * @param tick   the last tick to process
+     * @param action receives the value of each timer that fires
+     */
+    public void advanceTo(long tick, Consumer<? super T> action) {
+        fire(action);
+        while (current < tick) {
+            long next = current + 1;
+            int index = (int) (next & SLOT_MASK);
+            if (index == 0) {
+                cascade(1, next);
+            }
+            // Detach the due timers before firing them, so that timers the
+            // action schedules can never land in the list being drained
+            Timer<T> head = slots[0][index];
+            if (head.next != head) {
+                firing.next = head.next;
+                firing.prev = head.prev;
+                firing.next.prev = firing;
+                firing.prev.next = firing;
+                head.next = head;
+                head.prev = head;
+            }
+            current = next;
+            fire(action);
+        }
+    }
+
+    private void fire(Consumer<? super T> action) {
+        while (firing.next != firing) {
+            Timer<T> timer = firing.next;
+            timer.unlink();
+            size--;
+            action.accept(timer.value);
+        }
+    }
+
+    /**
+     * Empties the slot of {@code level} that {@code tick} falls in into the
+     * levels below, cascading the level above first if this level has also
+     * wrapped around.
+     */
+    private void cascade(int level, long tick) {
+        if (level >= LEVELS) {
+            return;
+        }
+        int index = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        if (index == 0) {
+            cascade(level + 1, tick);
+        }
+        Timer<T> head = slots[level][index];
+        while (head.next != head) {
+            Timer<T> timer = head.next;
+            timer.unlink();
+            place(timer);
+        }
+    }
+
+    /**
+     * Links a timer into the slot that will next be processed at or after its
+     * deadline, measured from the next tick to be processed.
+     */
+    private void place(Timer<T> timer) {
+        long next = current + 1;
+        long delay = timer.deadline - next;
+        long due = timer.deadline;
+        if (delay < 0) {
+            delay = 0;
+            due = next;
+        } else if (delay > MAX_DELAY) {
+            delay = MAX_DELAY;
+            due = next + MAX_DELAY;
+        }
+        int level = 0;
+        while (delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        Timer<T> head = slots[level][(int) ((due >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        timer.prev = head.prev;
+        timer.next = head;
+        head.prev.next = timer;
+        head.prev = timer;
+    }
+
+    @Override
+    public String toString() {
+        return "TimingWheel{currentTick=" + current + ", size=" + size + "}";
+    }
+}
@@ -0,0 +1,19 @@
+package com.tong.cits5501.domolect.sensor;
+
+/**
+ * A source of temperature readings, such as a thermometer in the premises or
+ * a simulated sensor that follows a temperature profile.
+ * <p>
+ * Conditions and monitors read temperatures only through this interface, so
+ * a real sensor can be replaced by a simulated one for testing.
+ */
+@FunctionalInterface
+public interface TemperatureSensor {
+
+    /**
+     * Reads the current temperature.
+     *
+     * @return the current temperature in Kelvin
+     */
+    int readKelvin();
+}
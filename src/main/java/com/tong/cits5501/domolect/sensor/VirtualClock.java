@@ -0,0 +1,90 @@
+package com.tong.cits5501.domolect.sensor;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * A {@link Clock} that stands still until it is explicitly moved forward.
+ * <p>
+ * Components that take a {@link Clock} can be run on virtual time with this
+ * class, so a day of scheduled commands can be replayed in as long as it takes
+ * to process them, and the same run always produces the same result.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * VirtualClock clock = VirtualClock.at(LocalDateTime.of(2024, 1, 1, 0, 0), ZoneId.of("Australia/Perth"));
+ * clock.advance(Duration.ofHours(7));
+ * LocalTime.now(clock); // 07:00
+ * </pre>
+ */
+public final class VirtualClock extends Clock {
+
+    private final ZoneId zone;
+    private volatile Instant instant;
+
+    /**
+     * Constructs a virtual clock showing the given instant.
+     *
+     * @param instant the instant the clock starts at
+     * @param zone    the time zone used to convert the instant to dates and times
+     */
+    public VirtualClock(Instant instant, ZoneId zone) {
+        this.instant = Objects.requireNonNull(instant, "instant must not be null");
+        this.zone = Objects.requireNonNull(zone, "zone must not be null");
+    }
+
+    /**
+     * Creates a virtual clock showing the given local date and time.
+     *
+     * @param dateTime the local date and time the clock starts at
+     * @param zone     the time zone of the clock
+     * @return the virtual clock
+     */
+    public static VirtualClock at(LocalDateTime dateTime, ZoneId zone) {
+        return new VirtualClock(dateTime.atZone(zone).toInstant(), zone);
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param duration how far to move the clock
+     * @throws IllegalArgumentException if the duration is negative
+     */
+    public synchronized void advance(Duration duration) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Cannot move the clock backwards: " + duration);
+        }
+        instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Returns a virtual clock in another time zone, starting at this clock's
+     * instant. The two clocks move independently.
+     *
+     * @param zone the time zone of the new clock
+     * @return a new virtual clock
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new VirtualClock(instant, zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return instant;
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualClock[" + instant + "," + zone + "]";
+    }
+}
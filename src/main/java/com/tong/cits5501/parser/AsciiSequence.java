@@ -0,0 +1,58 @@
+package com.tong.cits5501.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link CharSequence} view over a region of ASCII bytes in a
+ * {@link ByteBuffer}. Reading a character reads a single byte, so parsing
+ * through this view compares bytes directly and never copies the line.
+ * <p>
+ * The view is mutable so that one instance can be repositioned over line
+ * after line. Only {@link #subSequence(int, int)} and {@link #toString()}
+ * copy bytes, decoding them as UTF-8.
+ */
+final class AsciiSequence implements CharSequence {
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    /**
+     * Points this view at the bytes {@code [start, end)} of a buffer,
+     * using absolute indices.
+     *
+     * @param buffer the buffer holding the bytes
+     * @param start  the index of the first byte
+     * @param end    the index just past the last byte
+     * @return this view
+     */
+    AsciiSequence reset(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.offset = start;
+        this.length = end - start;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(offset + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
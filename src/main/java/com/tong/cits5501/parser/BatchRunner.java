@@ -0,0 +1,226 @@
+package com.tong.cits5501.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Replays a file of Domolect commands through a {@link REPL} in parallel.
+ * <p>
+ * Lines are read in chunks. Each chunk is parsed across a fork-join pool
+ * while the next chunk is being read, and the results of a chunk are written
+ * out in input order before the following chunk's results, so the output is
+ * identical to feeding the lines to the REPL one at a time. As in the
+ * interactive REPL, a line reading {@code exit} ends the run.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * try (BatchRunner runner = new BatchRunner(new REPL(), 8)) {
+ *     BatchRunner.Summary summary = runner.run(Path.of("commands.txt"), out);
+ *     System.err.println(summary);
+ * }
+ * </pre>
+ */
+public final class BatchRunner implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 16_384;
+    private static final int SEQUENTIAL_THRESHOLD = 256;
+
+    private final REPL repl;
+    private final ForkJoinPool pool;
+
+    /**
+     * The outcome of a batch run.
+     */
+    public static final class Summary {
+        private final long lines;
+        private final long errors;
+        private final long elapsedNanos;
+
+        private Summary(long lines, long errors, long elapsedNanos) {
+            this.lines = lines;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns the number of lines processed.
+         *
+         * @return the line count
+         */
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * Returns the number of lines that produced an error.
+         *
+         * @return the error count
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns the wall-clock duration of the run.
+         *
+         * @return the elapsed time in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the throughput of the run.
+         *
+         * @return lines processed per second
+         */
+        public double getLinesPerSecond() {
+            return elapsedNanos == 0 ? 0 : lines * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Processed %d lines in %.3f s (%.0f lines/sec), %d errors",
+                    lines, elapsedNanos / 1e9, getLinesPerSecond(), errors);
+        }
+    }
+
+    /**
+     * Parses a range of a chunk, splitting it across the pool until the
+     * pieces are small enough to parse sequentially.
+     */
+    @SuppressWarnings("serial")
+    private final class ParseTask extends RecursiveAction {
+        private final String[] lines;
+        private final String[] results;
+        private final boolean[] failed;
+        private final int from;
+        private final int to;
+
+        ParseTask(String[] lines, String[] results, boolean[] failed, int from, int to) {
+            this.lines = lines;
+            this.results = results;
+            this.failed = failed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    ParseResult result = repl.parse(lines[i]);
+                    results[i] = result.render();
+                    failed[i] = !result.isSuccess();
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseTask(lines, results, failed, from, middle),
+                        new ParseTask(lines, results, failed, middle, to));
+            }
+        }
+    }
+
+    /**
+     * Reads lines in chunks, stopping at end of input or at an {@code exit} line.
+     */
+    private static final class ChunkReader {
+        private final BufferedReader reader;
+        private boolean done;
+
+        ChunkReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        String[] next() throws IOException {
+            String[] chunk = new String[CHUNK_SIZE];
+            int count = 0;
+            while (!done && count < CHUNK_SIZE) {
+                String line = reader.readLine();
+                if (line == null || "exit".equalsIgnoreCase(line)) {
+                    done = true;
+                } else {
+                    chunk[count++] = line;
+                }
+            }
+            return count == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, count);
+        }
+    }
+
+    /**
+     * Constructs a batch runner over a REPL.
+     *
+     * @param repl        the REPL that parses each line; must be safe for concurrent use
+     * @param parallelism the number of worker threads to parse with
+     */
+    public BatchRunner(REPL repl, int parallelism) {
+        this.repl = repl;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Runs every line of a file through the REPL.
+     *
+     * @param file the command file, encoded in UTF-8
+     * @param out  where the result for each line is written, in input order
+     * @return a summary of the run
+     * @throws IOException if the file cannot be read or the output cannot be written
+     */
+    public Summary run(Path file, Writer out) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            return run(reader, out);
+        }
+    }
+
+    /**
+     * Runs every line from a reader through the REPL.
+     *
+     * @param in  the source of command lines
+     * @param out where the result for each line is written, in input order
+     * @return a summary of the run
+     * @throws IOException if the input cannot be read or the output cannot be written
+     */
+    public Summary run(BufferedReader in, Writer out) throws IOException {
+        long start = System.nanoTime();
+        long lines = 0;
+        long errors = 0;
+        ChunkReader reader = new ChunkReader(in);
+
+        String[] chunk = reader.next();
+        while (chunk.length > 0) {
+            String[] results = new String[chunk.length];
+            boolean[] failed = new boolean[chunk.length];
+            ForkJoinTask<Void> task = pool.submit(new ParseTask(chunk, results, failed, 0, chunk.length));
+            // Read ahead while the current chunk is being parsed
+            String[] next = reader.next();
+            task.join();
+
+            for (int i = 0; i < results.length; i++) {
+                if (failed[i]) {
+                    errors++;
+                }
+                out.write(results[i]);
+                out.write(System.lineSeparator());
+            }
+            lines += chunk.length;
+            chunk = next;
+        }
+        out.flush();
+        return new Summary(lines, errors, System.nanoTime() - start);
+    }
+
+    /**
+     * Shuts down the worker pool.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
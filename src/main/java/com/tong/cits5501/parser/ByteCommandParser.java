@@ -0,0 +1,212 @@
+package com.tong.cits5501.parser;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Parses Domolect commands directly from bytes, such as a memory-mapped
+ * command dump, without building a String for each line.
+ * <p>
+ * The bytes of a line are presented to {@link CommandParser} through an
+ * ASCII view, so keywords, device names and numbers are recognised by
+ * comparing bytes in place and the results are exactly those of parsing the
+ * same line as text. A line containing non-ASCII bytes is decoded as UTF-8
+ * first, which keeps location names correct at the cost of one copy. Error
+ * positions are byte offsets either way, so they can differ from those
+ * reported for the same line as text once it has a non-ASCII character.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * ByteCommandParser bytes = new ByteCommandParser(repl.getParser());
+ * bytes.parseFile(Path.of("commands.txt"), (line, result) -&gt; {
+ *     if (!result.isSuccess()) System.err.println(line + ": " + result.render());
+ * });
+ * </pre>
+ */
+public final class ByteCommandParser {
+
+    /**
+     * Bytes mapped at a time when parsing a file. Files larger than this are
+     * processed in successive windows that end on a line boundary.
+     */
+    private static final int WINDOW_SIZE = 1 << 28;
+
+    private final CommandParser parser;
+    private final ThreadLocal<AsciiSequence> views = ThreadLocal.withInitial(AsciiSequence::new);
+
+    /**
+     * Receives the outcome of parsing each line.
+     */
+    @FunctionalInterface
+    public interface LineConsumer {
+
+        /**
+         * Accepts the outcome of parsing one line.
+         *
+         * @param lineNumber the 1-based number of the line
+         * @param result     the parsed command, or the error found in the line
+         */
+        void accept(long lineNumber, ParseResult result);
+    }
+
+    /**
+     * Constructs a byte-level parser that delegates to a command parser.
+     *
+     * @param parser the parser that recognises each line
+     */
+    public ByteCommandParser(CommandParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Parses the command held in the bytes {@code [start, end)} of a buffer,
+     * using absolute indices. The buffer's position and limit are not changed.
+     *
+     * @param buffer the buffer holding the command
+     * @param start  the index of the first byte
+     * @param end    the index just past the last byte
+     * @return the parsed command
+     * @throws ParseException if the command is empty, incomplete or invalid
+     */
+    public AugmentedCommand parse(ByteBuffer buffer, int start, int end) {
+        return tryParse(buffer, start, end).orElseThrow();
+    }
+
+    /**
+     * Parses the command held between a buffer's position and limit.
+     *
+     * @param buffer the buffer holding the command
+     * @return the parsed command
+     * @throws ParseException if the command is empty, incomplete or invalid
+     */
+    public AugmentedCommand parse(ByteBuffer buffer) {
+        return parse(buffer, buffer.position(), buffer.limit());
+    }
+
+    /**
+     * Parses the command held in the bytes {@code [start, end)} of a buffer,
+     * reporting failure as a result rather than an exception. Error positions
+     * are byte offsets from {@code start}; in a line that is not valid UTF-8,
+     * those past a malformed sequence count it as the three bytes of the
+     * replacement character it was decoded to.
+     *
+     * @param buffer the buffer holding the command
+     * @param start  the index of the first byte
+     * @param end    the index just past the last byte
+     * @return the parsed command, or the error and the offset at which it was detected
+     */
+    public ParseResult tryParse(ByteBuffer buffer, int start, int end) {
+        boolean ascii = true;
+        for (int i = start; i < end && ascii; i++) {
+            ascii = buffer.get(i) >= 0;
+        }
+        return tryParse(buffer, start, end, ascii);
+    }
+
+    private ParseResult tryParse(ByteBuffer buffer, int start, int end, boolean ascii) {
+        if (!ascii) {
+            String line = decode(buffer, start, end);
+            ParseResult result = parser.tryParse(line);
+            return result.isSuccess() ? result : ParseResult.failure(result.getError(), utf8Length(line, result.getPosition()));
+        }
+        return parser.tryParse(views.get().reset(buffer, start, end));
+    }
+
+    /**
+     * Parses every line between a buffer's position and limit. Lines end with
+     * {@code \n}; a preceding {@code \r} is ignored.
+     *
+     * @param buffer   the buffer holding the commands
+     * @param consumer receives the outcome of each line
+     * @return the number of lines parsed
+     */
+    public long forEachLine(ByteBuffer buffer, LineConsumer consumer) {
+        return forEachLine(buffer, buffer.position(), buffer.limit(), 0, consumer);
+    }
+
+    /**
+     * Memory-maps a file and parses every line in it.
+     *
+     * @param file     the command file
+     * @param consumer receives the outcome of each line
+     * @return the number of lines parsed
+     * @throws IOException if the file cannot be mapped
+     */
+    public long parseFile(Path file, LineConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            long lines = 0;
+            while (position < size) {
+                long length = Math.min(WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int) length;
+                if (position + length < size) {
+                    // Stop at the last complete line; the remainder starts the next window
+                    while (end > 0 && window.get(end - 1) != '\n') {
+                        end--;
+                    }
+                    if (end == 0) {
+                        throw new IOException("Line longer than " + WINDOW_SIZE + " bytes at offset " + position);
+                    }
+                }
+                lines = forEachLine(window, 0, end, lines, consumer);
+                position += end;
+            }
+            return lines;
+        }
+    }
+
+    private long forEachLine(ByteBuffer buffer, int from, int to, long lines, LineConsumer consumer) {
+        int start = from;
+        while (start < to) {
+            int end = start;
+            boolean ascii = true;
+            byte b;
+            while (end < to && (b = buffer.get(end)) != '\n') {
+                ascii &= b >= 0;
+                end++;
+            }
+            int next = end + 1;
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            lines++;
+
+            consumer.accept(lines, tryParse(buffer, start, end, ascii));
+            start = next;
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the number of bytes the first {@code end} characters of a
+     * string take up in UTF-8.
+     *
+     * @param text the string
+     * @param end  the number of characters
+     * @return the length of their encoding
+     */
+    private static int utf8Length(String text, int end) {
+        int length = 0;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            // A surrogate pair encodes as four bytes, two for each half
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isSurrogate(c) ? 2 : 3;
+        }
+        return length;
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
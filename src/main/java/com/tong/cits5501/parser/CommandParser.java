@@ -0,0 +1,559 @@
+package com.tong.cits5501.parser;
+
+import com.tong.cits5501.domolect.command.*;
+import com.tong.cits5501.domolect.constant.Comparison;
+import com.tong.cits5501.domolect.constant.DeviceKind;
+import com.tong.cits5501.domolect.constant.State;
+import com.tong.cits5501.domolect.device.DeviceCatalog;
+import com.tong.cits5501.domolect.events.ParseEvent;
+import com.tong.cits5501.domolect.metrics.Latencies;
+import com.tong.cits5501.domolect.sensor.TemperatureSensor;
+
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.function.Function;
+
+/**
+ * A recursive-descent parser for the Domolect 2.0 command language.
+ * <p>
+ * The parser works over the token offsets produced by {@link Tokenizer}, so a
+ * command line is scanned exactly once and keywords, device names, numbers and
+ * times are all recognised in place. Device names and locations are resolved
+ * through a {@link DeviceCatalog}, so each command addresses the canonical
+ * device object for its location. Nothing is added to the catalog until the
+ * whole line has parsed: a new location, and the device objects for it, are
+ * only created for a valid command, so invalid input leaves the catalog as
+ * it was. A new location is refused once the catalog holds as many as
+ * {@link DeviceCatalog#limitLocations} allows. The grammar accepted is:
+ *
+ * <pre>
+ *   command     ::= [location] action { clause }
+ *   action      ::= "turn" device state
+ *                 | ("open" | "close" | "lock" | "unlock") barrier
+ *                 | "set" thermal-device "to" temperature
+ *   clause      ::= ("when" | "until") (temperature-condition | time-condition)
+ * </pre>
+ *
+ * Invalid input is reported as a {@link ParseError} with the offset at which
+ * it was detected, either in a {@link ParseResult} from {@link #tryParse} or
+ * as a {@link ParseException} from {@link #parse}. Internally no exception is
+ * thrown: each step returns null on failure and the first error is recorded
+ * on the {@link Tokenizer}, so noisy or fuzzed input costs no more than valid
+ * input. Error messages match those historically produced by {@link REPL}.
+ */
+public final class CommandParser {
+
+    private static final long NOT_A_NUMBER = Long.MIN_VALUE;
+    private static final int NO_TIME = -1;
+    private static final int INVALID_TIME = -2;
+
+    private final DeviceCatalog catalog;
+    private final Clock clock;
+    private final TemperatureSensor sensor;
+
+    /**
+     * Constructs a parser over the devices registered in a catalog. Parsed
+     * time conditions read the system clock, and parsed temperature
+     * conditions have no sensor attached.
+     *
+     * @param catalog The catalog used to resolve device names and locations.
+     */
+    public CommandParser(DeviceCatalog catalog) {
+        this(catalog, Clock.systemDefaultZone(), null);
+    }
+
+    /**
+     * Constructs a parser over the devices registered in a catalog whose
+     * parsed conditions are evaluated against the given clock and sensor.
+     *
+     * @param catalog The catalog used to resolve device names and locations.
+     * @param clock   The clock that parsed time conditions read.
+     * @param sensor  The sensor that parsed temperature conditions read; may be null.
+     */
+    public CommandParser(DeviceCatalog catalog, Clock clock, TemperatureSensor sensor) {
+        this.catalog = catalog;
+        this.clock = clock;
+        this.sensor = sensor;
+    }
+
+    /**
+     * Parses a single command line, reporting failure as a result rather than
+     * an exception.
+     *
+     * @param line The command line to parse.
+     * @return The parsed command, or the error and the offset at which it was detected.
+     */
+    public ParseResult tryParse(CharSequence line) {
+        if (line == null) {
+            return ParseResult.failure(ParseError.EMPTY_COMMAND, 0);
+        }
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        long start = Latencies.start();
+        Tokenizer tokens = new Tokenizer(line);
+        AugmentedCommand command = parseCommand(tokens);
+        if (command == null) {
+            Latencies.record(Latencies.Stage.PARSE, ParseError.class, start);
+            event.end(line, null, tokens.error().name());
+            return ParseResult.failure(tokens.error(), tokens.errorPosition());
+        }
+        Latencies.record(Latencies.Stage.PARSE, command.getCommand().getClass(), start);
+        event.end(line, command, null);
+        return ParseResult.success(command);
+    }
+
+    /**
+     * Parses a single command line into an {@link AugmentedCommand}.
+     *
+     * @param line The command line to parse.
+     * @return The parsed command.
+     * @throws ParseException If the command is empty, incomplete or invalid.
+     */
+    public AugmentedCommand parse(CharSequence line) {
+        return tryParse(line).orElseThrow();
+    }
+
+    /**
+     * Parses a whole command line.
+     *
+     * @param tokens The tokenized command.
+     * @return The parsed command, or null if the command is invalid.
+     */
+    private AugmentedCommand parseCommand(Tokenizer tokens) {
+        int count = tokens.count();
+        if (count == 0) {
+            return tokens.fail(ParseError.EMPTY_COMMAND, 0);
+        }
+        if (count < 2) {
+            return tokens.fail(ParseError.INCOMPLETE_COMMAND, tokens.input().length());
+        }
+
+        int index = 0;
+        // A command starts with a location unless the first word is a command keyword
+        if (!isCommandKeyword(tokens, 0)) {
+            index = 1;
+            if (count < 3) {
+                return tokens.fail(ParseError.INCOMPLETE_AFTER_LOCATION, tokens.input().length());
+            }
+        }
+
+        Function<Location, Command> mainCommand = parseMainCommand(tokens, index);
+        if (mainCommand == null) {
+            return null;
+        }
+        return parseClauses(tokens, mainCommand, index + 1, index == 1);
+    }
+
+    /**
+     * Parses the main command starting at the action keyword. The command is
+     * returned unbuilt, as a function of its location, so that neither the
+     * location nor the device is resolved before the rest of the line has
+     * been checked.
+     *
+     * @param tokens The tokenized command.
+     * @param index  The index of the action keyword.
+     * @return A function building the parsed main command at a location, or null if it is invalid.
+     */
+    private Function<Location, Command> parseMainCommand(Tokenizer tokens, int index) {
+        Keyword keyword = tokens.keyword(index);
+        if (keyword == Keyword.TURN) {
+            return parseTurnCommand(tokens, index);
+        }
+        if (keyword == Keyword.SET) {
+            return parseSetCommand(tokens, index);
+        }
+        if (keyword != null && keyword.action() != null) {
+            return parseBarrierCommand(tokens, index, keyword);
+        }
+        return tokens.fail(ParseError.INVALID_COMMAND_TYPE, tokens.start(index));
+    }
+
+    /**
+     * Parses a turn command for light sources or appliances.
+     *
+     * @param tokens The tokenized command.
+     * @param index  The index of the "turn" keyword.
+     * @return A function building the parsed turn command, or null if it is invalid.
+     */
+    private Function<Location, Command> parseTurnCommand(Tokenizer tokens, int index) {
+        if (tokens.count() < index + 3) {
+            return tokens.fail(ParseError.INCOMPLETE_TURN_COMMAND, tokens.input().length());
+        }
+
+        DeviceCatalog.Entry device = device(tokens, index + 1);
+        if (device == null || !(device.is(DeviceKind.LIGHT_SOURCE) || device.is(DeviceKind.APPLIANCE))) {
+            return tokens.fail(ParseError.INVALID_TURN_DEVICE, tokens.start(index + 1));
+        }
+
+        Keyword stateKeyword = tokens.keyword(index + 2);
+        State state = stateKeyword == null ? null : stateKeyword.state();
+        if (state == null) {
+            return tokens.fail(ParseError.INVALID_STATE, tokens.start(index + 2));
+        }
+
+        if (device.is(DeviceKind.LIGHT_SOURCE)) {
+            return location -> new LightingCommand(location, catalog.lightSource(location, device), state);
+        } else {
+            return location -> new ApplianceCommand(location, catalog.appliance(location, device), state);
+        }
+    }
+
+    /**
+     * Parses a barrier command (open, close, lock, unlock).
+     *
+     * @param tokens The tokenized command.
+     * @param index  The index of the barrier action keyword.
+     * @param action The barrier action keyword already recognised at {@code index}.
+     * @return A function building the parsed barrier command, or null if it is invalid.
+     */
+    private Function<Location, Command> parseBarrierCommand(Tokenizer tokens, int index, Keyword action) {
+        if (tokens.count() < index + 2) {
+            return tokens.fail(ParseError.INCOMPLETE_BARRIER_COMMAND, tokens.input().length());
+        }
+
+        DeviceCatalog.Entry barrier = device(tokens, index + 1);
+        if (barrier == null || !barrier.is(DeviceKind.BARRIER)) {
+            return tokens.fail(ParseError.INVALID_BARRIER, tokens.start(index + 1));
+        }
+
+        return location -> new BarrierCommand(location, action.action(), catalog.barrier(location, barrier));
+    }
+
+    /**
+     * Parses a set command for thermal devices. The temperature may be written
+     * with or without a space before the 'K'.
+     *
+     * @param tokens The tokenized command.
+     * @param index  The index of the "set" keyword.
+     * @return A function building the parsed set command, or null if it is invalid.
+     */
+    private Function<Location, Command> parseSetCommand(Tokenizer tokens, int index) {
+        if (tokens.count() < index + 4) {
+            return tokens.fail(ParseError.INCOMPLETE_SET_COMMAND, tokens.input().length());
+        }
+
+        DeviceCatalog.Entry device = device(tokens, index + 1);
+        if (device == null || !device.is(DeviceKind.THERMAL_DEVICE)) {
+            return tokens.fail(ParseError.INVALID_THERMAL_DEVICE, tokens.start(index + 1));
+        }
+
+        int valueToken = index + 3;
+        CharSequence input = tokens.input();
+        int start = tokens.start(valueToken);
+        int end = tokens.end(valueToken);
+        boolean separateUnit = tokens.count() > valueToken + 1 && tokens.isIgnoreCase(valueToken + 1, "K");
+        if (!separateUnit) {
+            char last = input.charAt(end - 1);
+            if (last != 'K' && last != 'k') {
+                return tokens.fail(ParseError.MISSING_TEMPERATURE_UNIT, start);
+            }
+            end--;
+        }
+
+        long temperature = parseInteger(input, start, end, true);
+        if (temperature == NOT_A_NUMBER) {
+            return tokens.fail(ParseError.INVALID_TEMPERATURE_FORMAT, start);
+        }
+        if (temperature <= 0) {
+            return tokens.fail(ParseError.NON_POSITIVE_TEMPERATURE, start);
+        }
+
+        int kelvin = (int) temperature;
+        return location -> new ThermalDeviceCommand(location, device.getName(), kelvin);
+    }
+
+    /**
+     * Scans the tokens following the main command for "when" and "until"
+     * clauses, then parses the first clause of each kind. Words that are not
+     * part of a clause are ignored. Only once both conditions are valid is
+     * the location looked up, and added to the catalog if it is new, and the
+     * main command built.
+     *
+     * @param tokens      The tokenized command.
+     * @param mainCommand Builds the already-parsed main command at a location.
+     * @param from        The index of the first token that may start a clause.
+     * @param located     Whether the first token names the location.
+     * @return The augmented command, or null if a condition is invalid.
+     */
+    private AugmentedCommand parseClauses(Tokenizer tokens, Function<Location, Command> mainCommand, int from,
+                                          boolean located) {
+        int whenStart = -1;
+        int whenEnd = -1;
+        int untilStart = -1;
+        int untilEnd = -1;
+        int open = 0; // 1 while inside a when clause, 2 while inside an until clause
+
+        for (int i = from; i < tokens.count(); i++) {
+            boolean isWhen = tokens.is(i, Keyword.WHEN);
+            boolean isUntil = !isWhen && tokens.is(i, Keyword.UNTIL);
+            // A keyword ending the line introduces no clause
+            if ((!isWhen && !isUntil) || isDangling(tokens, i)) {
+                continue;
+            }
+            if (open == 1) {
+                whenEnd = i;
+            } else if (open == 2) {
+                untilEnd = i;
+            }
+            open = 0;
+            if (isWhen && whenStart < 0) {
+                whenStart = i + 1;
+                open = 1;
+            } else if (isUntil && untilStart < 0) {
+                untilStart = i + 1;
+                open = 2;
+            }
+        }
+        if (open == 1) {
+            whenEnd = tokens.count();
+        } else if (open == 2) {
+            untilEnd = tokens.count();
+        }
+
+        Condition whenCondition = null;
+        if (whenStart >= 0 && (whenCondition = parseCondition(tokens, whenStart, whenEnd)) == null) {
+            return null;
+        }
+        Condition untilCondition = null;
+        if (untilStart >= 0 && (untilCondition = parseCondition(tokens, untilStart, untilEnd)) == null) {
+            return null;
+        }
+        Location location = null;
+        if (located && (location = catalog.admitLocation(tokens.input(), tokens.start(0), tokens.end(0))) == null) {
+            return tokens.fail(ParseError.TOO_MANY_LOCATIONS, tokens.start(0));
+        }
+        return new AugmentedCommand(whenCondition, untilCondition, mainCommand.apply(location));
+    }
+
+    /**
+     * Checks whether a token is the last thing on the line, with no trailing whitespace.
+     *
+     * @param tokens The tokenized command.
+     * @param index  The index of the token.
+     * @return true if nothing follows the token, false otherwise.
+     */
+    private static boolean isDangling(Tokenizer tokens, int index) {
+        return tokens.end(index) == tokens.input().length();
+    }
+
+    /**
+     * Parses a condition from the tokens {@code [from, to)}.
+     *
+     * @param tokens The tokenized command.
+     * @param from   The index of the first token of the condition.
+     * @param to     The index just past the last token of the condition.
+     * @return A Condition object representing the parsed condition, or null if it is invalid.
+     */
+    private Condition parseCondition(Tokenizer tokens, int from, int to) {
+        if (from < to && tokens.startsWith(from, Keyword.CURRENT_TEMPERATURE.text())) {
+            return parseTemperatureCondition(tokens, from, to);
+        }
+        return parseTimeCondition(tokens, from, to);
+    }
+
+    /**
+     * Parses a temperature condition of the form
+     * {@code current-temperature <comparison> <n>K}, where the 'K' may be
+     * separated from the number by whitespace.
+     *
+     * @param tokens The tokenized command.
+     * @param from   The index of the first token of the condition.
+     * @param to     The index just past the last token of the condition.
+     * @return A TemperatureCondition object representing the parsed condition, or null if it is invalid.
+     */
+    private TemperatureCondition parseTemperatureCondition(Tokenizer tokens, int from, int to) {
+        int size = to - from;
+        if ((size != 3 && size != 4) || !tokens.is(from, Keyword.CURRENT_TEMPERATURE)) {
+            return tokens.fail(ParseError.INVALID_TEMPERATURE_CONDITION, tokens.start(from));
+        }
+
+        Comparison comparison = comparison(tokens, from + 1);
+        if (comparison == null) {
+            return tokens.fail(ParseError.INVALID_TEMPERATURE_CONDITION, tokens.start(from + 1));
+        }
+
+        int valueToken = from + 2;
+        int start = tokens.start(valueToken);
+        int end = tokens.end(valueToken);
+        if (size == 4) {
+            if (!tokens.is(valueToken + 1, "K")) {
+                return tokens.fail(ParseError.INVALID_TEMPERATURE_CONDITION, tokens.start(valueToken + 1));
+            }
+        } else {
+            if (tokens.input().charAt(end - 1) != 'K') {
+                return tokens.fail(ParseError.INVALID_TEMPERATURE_CONDITION, start);
+            }
+            end--;
+        }
+
+        long temperature = parseInteger(tokens.input(), start, end, false);
+        if (temperature == NOT_A_NUMBER) {
+            return tokens.fail(ParseError.INVALID_TEMPERATURE_CONDITION, start);
+        }
+        if (temperature <= 0) {
+            return tokens.fail(ParseError.NON_POSITIVE_CONDITION_TEMPERATURE, start);
+        }
+        return new TemperatureCondition((int) temperature, comparison, sensor);
+    }
+
+    /**
+     * Parses a time condition. The first occurrence of {@code h:mm am} or
+     * {@code h:mm pm} (hours of one or two digits, am/pm in any case and
+     * optionally separated by whitespace) within the condition is used.
+     *
+     * @param tokens The tokenized command.
+     * @param from   The index of the first token of the condition.
+     * @param to     The index just past the last token of the condition.
+     * @return A TimeCondition object representing the parsed condition, or null if it is invalid.
+     */
+    private TimeCondition parseTimeCondition(Tokenizer tokens, int from, int to) {
+        if (from >= to) {
+            return tokens.fail(ParseError.INVALID_TIME_CONDITION, tokens.end(from - 1));
+        }
+        int limit = tokens.end(to - 1);
+
+        for (int i = tokens.start(from); i < limit; i++) {
+            // Try a two-digit hour first, then a one-digit hour
+            for (int hourDigits = 2; hourDigits >= 1; hourDigits--) {
+                int minutes = timeAt(tokens, i, hourDigits, limit);
+                if (minutes == INVALID_TIME) {
+                    return null;
+                }
+                if (minutes != NO_TIME) {
+                    return new TimeCondition(LocalTime.of(minutes / 60, minutes % 60), clock);
+                }
+            }
+        }
+        return tokens.fail(ParseError.INVALID_TIME_CONDITION, tokens.start(from));
+    }
+
+    /**
+     * Attempts to match a time at the given offset.
+     *
+     * @param tokens     The tokenized command.
+     * @param offset     The offset at which the hour digits start.
+     * @param hourDigits The number of hour digits to match.
+     * @param limit      The offset at which matching must stop.
+     * @return The matched time as minutes past midnight, {@link #NO_TIME} if
+     *         there is no match here, or {@link #INVALID_TIME} if a time is
+     *         present but out of range.
+     */
+    private static int timeAt(Tokenizer tokens, int offset, int hourDigits, int limit) {
+        CharSequence input = tokens.input();
+        int p = offset;
+        int hours = 0;
+        for (int d = 0; d < hourDigits; d++, p++) {
+            if (p >= limit || !isDigit(input.charAt(p))) {
+                return NO_TIME;
+            }
+            hours = hours * 10 + (input.charAt(p) - '0');
+        }
+        if (p + 3 > limit || input.charAt(p) != ':' || !isDigit(input.charAt(p + 1)) || !isDigit(input.charAt(p + 2))) {
+            return NO_TIME;
+        }
+        int minutes = (input.charAt(p + 1) - '0') * 10 + (input.charAt(p + 2) - '0');
+        p += 3;
+        while (p < limit && Tokenizer.isWhitespace(input.charAt(p))) {
+            p++;
+        }
+        if (p + 2 > limit || Character.toLowerCase(input.charAt(p + 1)) != 'm') {
+            return NO_TIME;
+        }
+        char meridiem = Character.toLowerCase(input.charAt(p));
+        if (meridiem != 'a' && meridiem != 'p') {
+            return NO_TIME;
+        }
+
+        if (hours < 1 || hours > 12 || minutes > 59) {
+            tokens.fail(ParseError.INVALID_TIME, offset);
+            return INVALID_TIME;
+        }
+
+        // Convert to 24-hour format
+        if (meridiem == 'p' && hours != 12) {
+            hours += 12;
+        } else if (meridiem == 'a' && hours == 12) {
+            hours = 0;
+        }
+        return hours * 60 + minutes;
+    }
+
+    /**
+     * Recognises a comparison keyword, which must be written in lower case.
+     *
+     * @param tokens The tokenized command.
+     * @param index  The index of the comparison token.
+     * @return The Comparison, or null if the token is not a comparison keyword.
+     */
+    private static Comparison comparison(Tokenizer tokens, int index) {
+        Keyword keyword = tokens.keyword(index);
+        if (keyword == null || keyword.comparison() == null || !tokens.is(index, keyword)) {
+            return null;
+        }
+        return keyword.comparison();
+    }
+
+    /**
+     * Checks if a token is a command keyword: "turn" or "set" in lower case,
+     * or a barrier action in any case.
+     *
+     * @param tokens The tokenized command.
+     * @param index  The index of the token.
+     * @return true if the token is a command keyword, false otherwise.
+     */
+    private static boolean isCommandKeyword(Tokenizer tokens, int index) {
+        Keyword keyword = tokens.keyword(index);
+        if (keyword == Keyword.TURN || keyword == Keyword.SET) {
+            return tokens.is(index, keyword);
+        }
+        return keyword != null && keyword.action() != null;
+    }
+
+    /**
+     * Looks a token up in the device catalog.
+     *
+     * @param tokens The tokenized command.
+     * @param index  The index of the device token.
+     * @return The catalog entry, or null if the token is not a known device name.
+     */
+    private DeviceCatalog.Entry device(Tokenizer tokens, int index) {
+        return catalog.find(tokens.input(), tokens.start(index), tokens.end(index));
+    }
+
+    /**
+     * Parses a decimal integer in place.
+     *
+     * @param input      The characters to read.
+     * @param start      The offset of the first character.
+     * @param end        The offset just past the last character.
+     * @param allowSign  Whether a leading '+' or '-' is accepted.
+     * @return The value, or {@link #NOT_A_NUMBER} if the text is not a valid int.
+     */
+    private static long parseInteger(CharSequence input, int start, int end, boolean allowSign) {
+        boolean negative = false;
+        if (allowSign && start < end && (input.charAt(start) == '-' || input.charAt(start) == '+')) {
+            negative = input.charAt(start) == '-';
+            start++;
+        }
+        if (start >= end) {
+            return NOT_A_NUMBER;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            if (!isDigit(c)) {
+                return NOT_A_NUMBER;
+            }
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return NOT_A_NUMBER;
+            }
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NOT_A_NUMBER : value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
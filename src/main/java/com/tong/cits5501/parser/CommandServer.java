@@ -0,0 +1,484 @@
+package com.tong.cits5501.parser;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.device.DeviceCatalog;
+import com.tong.cits5501.domolect.execution.LocationDispatcher;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Serves the Domolect command language to many clients at once over TCP or
+ * Unix-domain sockets, as a network counterpart to the interactive {@link REPL}.
+ * <p>
+ * Clients send command lines terminated by {@code \n}. Each line is parsed
+ * through the REPL, a successfully parsed command is handed to the executor,
+ * and the REPL's description of the result is sent back followed by an empty
+ * line, which never occurs within a description. Clients may pipeline: they
+ * can send any number of lines without waiting, and the responses come back
+ * in the order the lines were sent. A line reading {@code exit} closes the
+ * connection once the responses before it have been sent, and lines
+ * starting with a colon are REPL meta-commands. Clients may only read
+ * through them: {@code :latency} is answered, but the meta-commands that
+ * reset latencies or change their sampling are refused, as they affect the
+ * whole process.
+ * Lines longer than {@value #MAX_LINE} bytes, not counting their terminator,
+ * are answered with an error and skipped.
+ * <p>
+ * Every location a client names is kept by the REPL's catalog, with device
+ * objects and states for it, for as long as the server runs. So that clients
+ * cannot grow the server without limit, the server caps the catalog at
+ * {@value #MAX_LOCATIONS} locations, counting those already known, unless
+ * it was given a lower cap; a line naming a new location beyond that is
+ * answered with an error.
+ * <p>
+ * Connections are spread over a fixed number of event loops, each a thread
+ * with its own {@link Selector} that reads, parses and writes for the
+ * connections it owns, so the number of threads does not grow with the
+ * number of clients. A connection whose client stops reading its responses
+ * is not read from until its pending output has drained. The executor is
+ * called on the event loop thread that parsed the line, which serves no
+ * other connection until it returns, so it should only hand the command off,
+ * for example to a {@link LocationDispatcher}, rather than carry it out. It
+ * must be thread-safe if there is more than one loop; if it throws, the
+ * connection whose line it was handling is closed.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * try (LocationDispatcher dispatcher = new LocationDispatcher(Command::execute);
+ *      CommandServer server = new CommandServer(new REPL(1024), command -&gt; dispatcher.accept(command.getCommand()), 4)) {
+ *     server.bind(new InetSocketAddress(5501));
+ *     server.bind(UnixDomainSocketAddress.of("/run/domolect.sock"));
+ *     Thread.currentThread().join();
+ * }
+ * </pre>
+ */
+public final class CommandServer implements AutoCloseable {
+
+    /**
+     * The longest command line accepted, in bytes, not counting its
+     * {@code \n} or {@code \r\n}.
+     */
+    public static final int MAX_LINE = 4096;
+
+    /**
+     * The most locations the REPL's catalog may hold once it serves clients.
+     */
+    public static final int MAX_LOCATIONS = 1024;
+
+    private static final int INITIAL_BUFFER = 512;
+
+    /**
+     * The most input buffered for one connection: a line of
+     * {@value #MAX_LINE} bytes and its {@code \r\n}.
+     */
+    private static final int MAX_INPUT = MAX_LINE + 2;
+    private static final int HIGH_WATER = 64 * 1024;
+    private static final byte[] TERMINATOR = "\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final String LINE_TOO_LONG = "Error: Line too long";
+
+    private final REPL repl;
+    private final Consumer<? super AugmentedCommand> executor;
+    private final EventLoop[] loops;
+    private final List<ServerSocketChannel> listeners = new ArrayList<>();
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder lines = new LongAdder();
+    private final AtomicInteger open = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Constructs a server and starts its event loops. The server accepts
+     * connections once it has been bound to an address.
+     *
+     * @param repl     parses the command lines and describes the results; its
+     *                 catalog is capped at {@value #MAX_LOCATIONS} locations
+     * @param executor receives every command parsed successfully, on an event loop thread
+     * @param threads  the number of event loops
+     * @throws IOException if a selector cannot be opened
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public CommandServer(REPL repl, Consumer<? super AugmentedCommand> executor, int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.repl = Objects.requireNonNull(repl, "repl must not be null");
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        DeviceCatalog catalog = repl.getCatalog();
+        catalog.limitLocations(Math.min(catalog.getLocationLimit(), MAX_LOCATIONS));
+        this.loops = new EventLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new EventLoop(Selector.open());
+        }
+        for (int i = 0; i < threads; i++) {
+            loops[i].thread = Thread.ofPlatform().name("domolect-server-" + i).daemon(true).start(loops[i]);
+        }
+    }
+
+    /**
+     * Starts listening on an address.
+     *
+     * @param address an {@link InetSocketAddress}, whose port may be 0 for any free port, or a
+     *                {@link UnixDomainSocketAddress}, whose file must not exist yet
+     * @return the address actually bound
+     * @throws IOException if the address cannot be bound
+     * @throws IllegalStateException if the server is closed
+     */
+    public SocketAddress bind(SocketAddress address) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Server is closed.");
+        }
+        ServerSocketChannel listener = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        try {
+            listener.bind(address, 1024);
+            listener.configureBlocking(false);
+        } catch (IOException e) {
+            listener.close();
+            throw e;
+        }
+        synchronized (listeners) {
+            listeners.add(listener);
+        }
+        loops[0].submit(selector -> listener.register(selector, SelectionKey.OP_ACCEPT, listener));
+        return listener.getLocalAddress();
+    }
+
+    private void accept(ServerSocketChannel listener) throws IOException {
+        SocketChannel channel;
+        while ((channel = listener.accept()) != null) {
+            channel.configureBlocking(false);
+            if (!(listener.getLocalAddress() instanceof UnixDomainSocketAddress)) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            accepted.increment();
+            open.incrementAndGet();
+            Connection connection = new Connection(channel);
+            loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)]
+                    .submit(selector -> connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection));
+        }
+    }
+
+    /**
+     * A task run on an event loop thread against its selector.
+     */
+    @FunctionalInterface
+    private interface LoopTask {
+        void run(Selector selector) throws IOException;
+    }
+
+    /**
+     * A thread multiplexing a set of channels over one selector.
+     */
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Queue<LoopTask> tasks = new ConcurrentLinkedQueue<>();
+        Thread thread;
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void submit(LoopTask task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select();
+                    LoopTask task;
+                    while ((task = tasks.poll()) != null) {
+                        try {
+                            task.run(selector);
+                        } catch (IOException e) {
+                            // The channel was closed before it could be registered
+                        }
+                    }
+                    Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                    while (selected.hasNext()) {
+                        SelectionKey key = selected.next();
+                        selected.remove();
+                        dispatch(key);
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                // Closing down
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection connection) {
+                        connection.close();
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // Nothing more to release
+                }
+            }
+        }
+
+        private void dispatch(SelectionKey key) {
+            Object attachment = key.attachment();
+            try {
+                if (attachment instanceof ServerSocketChannel listener) {
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept(listener);
+                    }
+                } else if (attachment instanceof Connection connection) {
+                    if (key.isValid() && key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.write();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // A failing client or executor costs only its own connection
+                if (attachment instanceof Connection connection) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of one client connection, touched only by its event loop.
+     */
+    private final class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER);
+        ByteBuffer out = ByteBuffer.allocate(INITIAL_BUFFER);
+        boolean discarding;
+        boolean closing;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            int count = channel.read(in);
+            if (count < 0) {
+                closing = true;
+            } else {
+                handleLines();
+            }
+            flush();
+        }
+
+        /**
+         * Handles every complete line in the input buffer, leaving a partial
+         * line at its start.
+         */
+        private void handleLines() {
+            in.flip();
+            byte[] bytes = in.array();
+            int start = in.position();
+            for (int i = start; i < in.limit() && !closing; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                if (discarding) {
+                    discarding = false;
+                } else {
+                    int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+                    if (end - start > MAX_LINE) {
+                        respond(LINE_TOO_LONG);
+                    } else {
+                        handle(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+                    }
+                }
+                start = i + 1;
+            }
+            in.position(closing ? in.limit() : start);
+            in.compact();
+            if (!in.hasRemaining()) {
+                if (in.capacity() < MAX_INPUT) {
+                    in = grow(in, Math.min(in.capacity() * 2, MAX_INPUT));
+                } else {
+                    in.clear();
+                    if (!discarding) {
+                        respond(LINE_TOO_LONG);
+                        discarding = true;
+                    }
+                }
+            }
+        }
+
+        private void handle(String line) {
+            if ("exit".equalsIgnoreCase(line.trim())) {
+                closing = true;
+                return;
+            }
+            lines.increment();
+            if (line.startsWith(":")) {
+                respond(repl.runMetaCommand(line, true));
+                return;
+            }
+            ParseResult result = repl.parse(line);
+            if (result.isSuccess()) {
+                executor.accept(result.getCommand());
+            }
+            respond(result.render());
+        }
+
+        private void respond(String response) {
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            int needed = bytes.length + TERMINATOR.length;
+            if (out.remaining() < needed) {
+                out = grow(out, Math.max(out.capacity() * 2, out.position() + needed));
+            }
+            out.put(bytes).put(TERMINATOR);
+        }
+
+        void write() throws IOException {
+            flush();
+        }
+
+        /**
+         * Writes as much pending output as the socket takes, then sets the
+         * interest ops: reading pauses while too much output is pending, and
+         * writing is only of interest while some is.
+         */
+        private void flush() throws IOException {
+            if (out.position() > 0) {
+                out.flip();
+                channel.write(out);
+                out.compact();
+            }
+            boolean pending = out.position() > 0;
+            if (closing && !pending) {
+                close();
+                return;
+            }
+            int ops = 0;
+            if (!closing && out.position() < HIGH_WATER) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (pending) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+            if (!pending && out.capacity() > INITIAL_BUFFER * 8) {
+                out = ByteBuffer.allocate(INITIAL_BUFFER);
+            }
+        }
+
+        void close() {
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+            if (key != null && key.attachment() == this) {
+                key.attach(null);
+                open.decrementAndGet();
+            }
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    /**
+     * Returns the number of connections accepted so far.
+     *
+     * @return the accepted count
+     */
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    /**
+     * Returns the number of connections currently open.
+     *
+     * @return the open count
+     */
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    /**
+     * Returns the number of command lines handled so far.
+     *
+     * @return the line count
+     */
+    public long getLines() {
+        return lines.sum();
+    }
+
+    /**
+     * Stops listening, closes every connection and stops the event loops.
+     * Unix-domain socket files created by {@link #bind} are deleted.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (listeners) {
+            for (ServerSocketChannel listener : listeners) {
+                try {
+                    SocketAddress address = listener.getLocalAddress();
+                    listener.close();
+                    if (address instanceof UnixDomainSocketAddress unix) {
+                        Files.deleteIfExists(unix.getPath());
+                    }
+                } catch (IOException e) {
+                    // Keep closing the others
+                }
+            }
+        }
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : loops) {
+            try {
+                loop.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CommandServer{loops=" + loops.length + ", open=" + getOpenConnections() + ", accepted="
+                + getAccepted() + ", lines=" + getLines() + "}";
+    }
+}
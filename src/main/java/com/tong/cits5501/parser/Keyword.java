@@ -0,0 +1,164 @@
+package com.tong.cits5501.parser;
+
+import com.tong.cits5501.domolect.constant.BarrierAction;
+import com.tong.cits5501.domolect.constant.Comparison;
+import com.tong.cits5501.domolect.constant.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The reserved words of the Domolect 2.0 command language.
+ * <p>
+ * Keywords are recognised through a table precomputed by word length, so
+ * classifying a token costs at most a few character comparisons and never
+ * throws, unlike {@code Enum.valueOf}. Each keyword carries the enum constant
+ * it denotes, if any.
+ */
+enum Keyword {
+
+    TURN("turn"),
+    SET("set"),
+    OPEN("open", BarrierAction.OPEN),
+    CLOSE("close", BarrierAction.CLOSE),
+    LOCK("lock", BarrierAction.LOCK),
+    UNLOCK("unlock", BarrierAction.UNLOCK),
+    ON("on", State.ON),
+    OFF("off", State.OFF),
+    WHEN("when"),
+    UNTIL("until"),
+    CURRENT_TEMPERATURE("current-temperature"),
+    LESS_THAN("less-than", Comparison.LESS_THAN),
+    EQUAL_TO("equal-to", Comparison.EQUAL_TO),
+    GREATER_THAN("greater-than", Comparison.GREATER_THAN);
+
+    /**
+     * Keywords indexed by the length of their text.
+     */
+    private static final Keyword[][] BY_LENGTH;
+
+    static {
+        int longest = 0;
+        for (Keyword keyword : values()) {
+            longest = Math.max(longest, keyword.text.length());
+        }
+        List<List<Keyword>> buckets = new ArrayList<>();
+        for (int i = 0; i <= longest; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (Keyword keyword : values()) {
+            buckets.get(keyword.text.length()).add(keyword);
+        }
+        BY_LENGTH = new Keyword[longest + 1][];
+        for (int i = 0; i <= longest; i++) {
+            BY_LENGTH[i] = buckets.get(i).toArray(new Keyword[0]);
+        }
+    }
+
+    private final String text;
+    private final BarrierAction action;
+    private final State state;
+    private final Comparison comparison;
+
+    Keyword(String text) {
+        this(text, null, null, null);
+    }
+
+    Keyword(String text, BarrierAction action) {
+        this(text, action, null, null);
+    }
+
+    Keyword(String text, State state) {
+        this(text, null, state, null);
+    }
+
+    Keyword(String text, Comparison comparison) {
+        this(text, null, null, comparison);
+    }
+
+    Keyword(String text, BarrierAction action, State state, Comparison comparison) {
+        this.text = text;
+        this.action = action;
+        this.state = state;
+        this.comparison = comparison;
+    }
+
+    /**
+     * Returns the keyword as written in lower case.
+     *
+     * @return the keyword text
+     */
+    String text() {
+        return text;
+    }
+
+    /**
+     * Returns the barrier action this keyword denotes.
+     *
+     * @return the barrier action, or null if this is not a barrier action keyword
+     */
+    BarrierAction action() {
+        return action;
+    }
+
+    /**
+     * Returns the device state this keyword denotes.
+     *
+     * @return the state, or null if this is not a state keyword
+     */
+    State state() {
+        return state;
+    }
+
+    /**
+     * Returns the comparison this keyword denotes.
+     *
+     * @return the comparison, or null if this is not a comparison keyword
+     */
+    Comparison comparison() {
+        return comparison;
+    }
+
+    /**
+     * Classifies the word occupying {@code [start, end)} of {@code input},
+     * ignoring ASCII case.
+     *
+     * @param input the characters containing the word
+     * @param start the offset of the first character
+     * @param end   the offset just past the last character
+     * @return the keyword, or null if the word is not a keyword
+     */
+    static Keyword lookup(CharSequence input, int start, int end) {
+        int length = end - start;
+        if (length >= BY_LENGTH.length) {
+            return null;
+        }
+        for (Keyword keyword : BY_LENGTH[length]) {
+            if (keyword.matches(input, start, true)) {
+                return keyword;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the characters at {@code start} spell this keyword.
+     *
+     * @param input      the characters to compare
+     * @param start      the offset of the first character
+     * @param ignoreCase whether ASCII case differences are ignored
+     * @return true if the characters match, false otherwise
+     */
+    boolean matches(CharSequence input, int start, boolean ignoreCase) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = input.charAt(start + i);
+            if (ignoreCase && c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,229 @@
+package com.tong.cits5501.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache of parsed commands, keyed on normalised
+ * command text and evicting the least recently used entry when full.
+ * <p>
+ * Normalisation trims leading whitespace and collapses every run of internal
+ * whitespace into a single space, so {@code "turn  lamp\ton"} and
+ * {@code "turn lamp on"} share an entry. Trailing whitespace is reduced to a
+ * single space rather than removed, because the parser treats a clause
+ * keyword at the very end of a line differently from one followed by
+ * whitespace.
+ * <p>
+ * To keep contention low, the cache is split into independently locked
+ * segments chosen by key hash; recency is tracked per segment. Only
+ * successfully parsed commands are cached; failures are returned to the
+ * caller but parsed afresh each time. Hit, miss and eviction counts are
+ * kept so the cache can be sized from real traffic.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * ParseCache cache = new ParseCache(1024);
+ * ParseResult result = cache.get("kitchen turn lamp on", parser::tryParse);
+ * System.out.println(cache.getHits() + " hits, " + cache.getMisses() + " misses");
+ * </pre>
+ */
+public final class ParseCache {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_ENTRIES_PER_SEGMENT = 64;
+
+    private final Segment[] segments;
+    private final int maximumSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * A single LRU segment, guarded by its own monitor.
+     */
+    @SuppressWarnings("serial")
+    private final class Segment extends LinkedHashMap<String, ParseResult> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ParseResult> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Constructs a cache holding at most {@code maximumSize} commands.
+     *
+     * @param maximumSize the maximum number of cached commands; must be positive
+     */
+    public ParseCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be a positive value.");
+        }
+        this.maximumSize = maximumSize;
+        int count = 1;
+        while (count < MAX_SEGMENTS && maximumSize / (count * 2) >= MIN_ENTRIES_PER_SEGMENT) {
+            count *= 2;
+        }
+        segments = new Segment[count];
+        int base = maximumSize / count;
+        int remainder = maximumSize % count;
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(base + (i < remainder ? 1 : 0));
+        }
+    }
+
+    /**
+     * Returns the cached result for a line, parsing it on a miss and caching
+     * the result if parsing succeeded.
+     *
+     * @param line   the command line; null is passed straight to the parser
+     * @param parser the function that parses a line on a miss
+     * @return the parse result
+     */
+    public ParseResult get(String line, Function<String, ParseResult> parser) {
+        if (line == null) {
+            return parser.apply(null);
+        }
+        String key = normalize(line);
+        Segment segment = segmentFor(key);
+        ParseResult result;
+        synchronized (segment) {
+            result = segment.get(key);
+        }
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        misses.increment();
+        result = parser.apply(line);
+        if (result.isSuccess()) {
+            synchronized (segment) {
+                segment.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Normalises a command line into a cache key. Returns the line itself when
+     * it is already in normal form, so the common case does not allocate.
+     *
+     * @param line the command line
+     * @return the normalised key
+     */
+    static String normalize(String line) {
+        int length = line.length();
+        boolean normal = length == 0 || !Tokenizer.isWhitespace(line.charAt(0));
+        for (int i = 1; normal && i < length; i++) {
+            char c = line.charAt(i);
+            normal = !Tokenizer.isWhitespace(c) || (c == ' ' && line.charAt(i - 1) != ' ');
+        }
+        if (normal) {
+            return line;
+        }
+
+        StringBuilder key = new StringBuilder(length);
+        boolean pendingSpace = false;
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (Tokenizer.isWhitespace(c)) {
+                pendingSpace = key.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    key.append(' ');
+                    pendingSpace = false;
+                }
+                key.append(c);
+            }
+        }
+        if (pendingSpace) {
+            key.append(' ');
+        }
+        return key.toString();
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * Returns the number of commands currently cached.
+     *
+     * @return the number of cached commands
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of commands this cache holds.
+     *
+     * @return the size limit
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to parse the line.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the size limit.
+     *
+     * @return the eviction count
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Removes every cached command. The counters are left untouched.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ParseCache{size=" + size() + ", maximumSize=" + maximumSize + ", hits=" + getHits()
+                + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "}";
+    }
+}
@@ -0,0 +1,120 @@
+package com.tong.cits5501.parser;
+
+/**
+ * Represents the reasons a Domolect command can fail to parse.
+ * Each error carries the human-readable message reported by the {@link REPL}.
+ */
+public enum ParseError {
+
+    /**
+     * The command is null or contains only whitespace.
+     */
+    EMPTY_COMMAND("Empty command"),
+
+    /**
+     * The command has fewer than two words.
+     */
+    INCOMPLETE_COMMAND("Incomplete command"),
+
+    /**
+     * The command starts with a location but has too few words after it.
+     */
+    INCOMPLETE_AFTER_LOCATION("Incomplete command after location"),
+
+    /**
+     * The action word is not one of turn, set, open, close, lock or unlock.
+     */
+    INVALID_COMMAND_TYPE("Invalid command type"),
+
+    /**
+     * A turn command is missing its device or state.
+     */
+    INCOMPLETE_TURN_COMMAND("Incomplete turn command"),
+
+    /**
+     * A turn command names something other than a light source or appliance.
+     */
+    INVALID_TURN_DEVICE("Invalid device type for 'turn' command"),
+
+    /**
+     * A turn command's state is neither on nor off.
+     */
+    INVALID_STATE("Invalid state. Use ON or OFF"),
+
+    /**
+     * A barrier command is missing its barrier.
+     */
+    INCOMPLETE_BARRIER_COMMAND("Incomplete barrier command"),
+
+    /**
+     * A barrier command names something other than a barrier.
+     */
+    INVALID_BARRIER("Invalid barrier type"),
+
+    /**
+     * A set command is missing its device or temperature.
+     */
+    INCOMPLETE_SET_COMMAND("Incomplete set command"),
+
+    /**
+     * A set command names something other than a thermal device.
+     */
+    INVALID_THERMAL_DEVICE("Invalid thermal device type"),
+
+    /**
+     * A set command's temperature has no 'K' unit.
+     */
+    MISSING_TEMPERATURE_UNIT("Temperature must end with K"),
+
+    /**
+     * A set command's temperature is not a number.
+     */
+    INVALID_TEMPERATURE_FORMAT("Invalid temperature format"),
+
+    /**
+     * A set command's temperature is zero or negative.
+     */
+    NON_POSITIVE_TEMPERATURE("Temperature must be a positive value"),
+
+    /**
+     * A temperature condition does not match
+     * {@code current-temperature <comparison> <n>K}.
+     */
+    INVALID_TEMPERATURE_CONDITION("Invalid temperature condition format"),
+
+    /**
+     * A temperature condition's threshold is zero.
+     */
+    NON_POSITIVE_CONDITION_TEMPERATURE("Temperature must be a positive value."),
+
+    /**
+     * A time condition contains no {@code h:mm am/pm} time.
+     */
+    INVALID_TIME_CONDITION("Invalid time condition format"),
+
+    /**
+     * A time condition's hours or minutes are out of range.
+     */
+    INVALID_TIME("Invalid time"),
+
+    /**
+     * The command names a new location, and the catalog already holds as
+     * many locations as it is allowed.
+     */
+    TOO_MANY_LOCATIONS("Unknown location, and no more can be added");
+
+    private final String message;
+
+    ParseError(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Returns the human-readable description of this error.
+     *
+     * @return the error message
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,44 @@
+package com.tong.cits5501.parser;
+
+/**
+ * Thrown by {@link CommandParser#parse(CharSequence)} when a command cannot
+ * be parsed. Carries the {@link ParseError} and the character offset in the
+ * command line at which it was detected.
+ */
+public final class ParseException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ParseError error;
+    private final int position;
+
+    /**
+     * Constructs a new ParseException.
+     *
+     * @param error    the reason the command could not be parsed
+     * @param position the offset in the command line at which the error was detected
+     */
+    public ParseException(ParseError error, int position) {
+        super(error.getMessage());
+        this.error = error;
+        this.position = position;
+    }
+
+    /**
+     * Returns the reason the command could not be parsed.
+     *
+     * @return the parse error
+     */
+    public ParseError getError() {
+        return error;
+    }
+
+    /**
+     * Returns the offset in the command line at which the error was detected.
+     *
+     * @return the error position
+     */
+    public int getPosition() {
+        return position;
+    }
+}
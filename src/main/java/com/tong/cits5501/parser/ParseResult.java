@@ -0,0 +1,164 @@
+package com.tong.cits5501.parser;
+
+import com.tong.cits5501.domolect.command.*;
+
+/**
+ * The outcome of parsing a Domolect command: either the parsed
+ * {@link AugmentedCommand}, or a {@link ParseError} together with the
+ * character offset in the command line at which it was detected.
+ * <p>
+ * The human-readable description printed by the {@link REPL} is not built
+ * when the result is created; it is rendered only when {@link #render()} is
+ * called, so programmatic callers that only need the command never pay for
+ * formatting.
+ */
+public final class ParseResult {
+
+    private static final String ERROR_PREFIX = "Error: ";
+
+    private final AugmentedCommand command;
+    private final ParseError error;
+    private final int position;
+
+    private ParseResult(AugmentedCommand command, ParseError error, int position) {
+        this.command = command;
+        this.error = error;
+        this.position = position;
+    }
+
+    /**
+     * Creates a successful result.
+     *
+     * @param command the parsed command
+     * @return a result holding the command
+     */
+    public static ParseResult success(AugmentedCommand command) {
+        return new ParseResult(command, null, -1);
+    }
+
+    /**
+     * Creates a failed result.
+     *
+     * @param error    the reason the command could not be parsed
+     * @param position the offset in the command line at which the error was detected
+     * @return a result holding the error
+     */
+    public static ParseResult failure(ParseError error, int position) {
+        return new ParseResult(null, error, position);
+    }
+
+    /**
+     * Checks whether the command was parsed successfully.
+     *
+     * @return true if the result holds a command, false if it holds an error
+     */
+    public boolean isSuccess() {
+        return command != null;
+    }
+
+    /**
+     * Returns the parsed command.
+     *
+     * @return the command, or null if parsing failed
+     */
+    public AugmentedCommand getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the reason parsing failed.
+     *
+     * @return the error, or null if parsing succeeded
+     */
+    public ParseError getError() {
+        return error;
+    }
+
+    /**
+     * Returns the offset in the command line at which parsing failed.
+     *
+     * @return the error position, or -1 if parsing succeeded
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the parsed command, or throws if parsing failed.
+     *
+     * @return the parsed command
+     * @throws ParseException if parsing failed
+     */
+    public AugmentedCommand orElseThrow() {
+        if (command == null) {
+            throw new ParseException(error, position);
+        }
+        return command;
+    }
+
+    /**
+     * Renders the description printed by the REPL: the recognised command
+     * type, any conditions and the simulated execution, or the error message.
+     *
+     * @return a string describing the parsed command and its simulated execution
+     */
+    public String render() {
+        if (command == null) {
+            return ERROR_PREFIX + error.getMessage();
+        }
+        StringBuilder result = new StringBuilder(128);
+        result.append("Command recognized: ").append(command.getCommand().getClass().getSimpleName()).append("\n");
+
+        // Add when condition if present
+        Condition whenCondition = command.getWhenCondition();
+        if (whenCondition != null) {
+            result.append("When condition: ").append(whenCondition).append("\n");
+        }
+
+        // Add until condition if present
+        Condition untilCondition = command.getUntilCondition();
+        if (untilCondition != null) {
+            result.append("Until condition: ").append(untilCondition).append("\n");
+        }
+
+        result.append("Simulated execution: ");
+        renderExecution(command.getCommand(), result);
+        return result.toString();
+    }
+
+    /**
+     * Appends a description of the simulated execution of a Command.
+     *
+     * @param command The Command to simulate.
+     * @param result  The builder to append to.
+     */
+    private static void renderExecution(Command command, StringBuilder result) {
+        // Use pattern matching to determine the command type and generate appropriate description
+        if (command instanceof LightingCommand cmd) {
+            result.append("Turning ").append(lowerCase(cmd.getState())).append(" the ").append(cmd.getLightSource().getName());
+        } else if (command instanceof ApplianceCommand cmd) {
+            result.append("Turning ").append(lowerCase(cmd.getState())).append(" the ").append(cmd.getAppliance().getName());
+        } else if (command instanceof BarrierCommand cmd) {
+            result.append(lowerCase(cmd.getAction())).append(" the ").append(cmd.getBarrier().getName());
+        } else if (command instanceof ThermalDeviceCommand cmd) {
+            result.append("Setting ").append(cmd.getThermalDevice()).append(" to ").append(cmd.getTemperature()).append(" K");
+        } else {
+            result.append("Unknown command type");
+            return;
+        }
+        if (command.getLocation() != null) {
+            result.append(" at ").append(command.getLocation().getName());
+        }
+    }
+
+    private static String lowerCase(Enum<?> constant) {
+        return constant.name().toLowerCase();
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess()
+                ? "ParseResult{command=" + command + "}"
+                : "ParseResult{error=" + error + ", position=" + position + "}";
+    }
+}
@@ -0,0 +1,239 @@
+package com.tong.cits5501.parser;
+
+import java.util.Arrays;
+
+/**
+ * A hand-written tokenizer for Domolect 2.0 command lines.
+ * <p>
+ * The tokenizer makes a single left-to-right pass over the input and records
+ * each whitespace-delimited token as a pair of {@code [start, end)} offsets into
+ * the original character sequence. No substrings are created; callers compare
+ * tokens in place using the helper methods provided.
+ * <p>
+ * A tokenizer also records the first {@link ParseError} found while parsing
+ * its tokens, which lets the parser report invalid input without throwing.
+ */
+final class Tokenizer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final CharSequence input;
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int count;
+    private ParseError error;
+    private int errorPosition;
+
+    /**
+     * Tokenizes the given input.
+     *
+     * @param input The command line to tokenize.
+     */
+    Tokenizer(CharSequence input) {
+        this.input = input;
+        scan();
+    }
+
+    /**
+     * Scans the input once, recording the bounds of every token.
+     */
+    private void scan() {
+        int length = input.length();
+        int position = 0;
+        while (position < length) {
+            while (position < length && isWhitespace(input.charAt(position))) {
+                position++;
+            }
+            if (position == length) {
+                break;
+            }
+            int start = position;
+            while (position < length && !isWhitespace(input.charAt(position))) {
+                position++;
+            }
+            add(start, position);
+        }
+    }
+
+    private void add(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /**
+     * Checks whether a character separates tokens. Matches the characters removed
+     * by {@link String#trim()}.
+     *
+     * @param c The character to check.
+     * @return true if the character is whitespace, false otherwise.
+     */
+    static boolean isWhitespace(char c) {
+        return c <= ' ';
+    }
+
+    /**
+     * Returns the underlying input.
+     *
+     * @return The character sequence that was tokenized.
+     */
+    CharSequence input() {
+        return input;
+    }
+
+    /**
+     * Returns the number of tokens found.
+     *
+     * @return The token count.
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Returns the start offset (inclusive) of a token.
+     *
+     * @param index The token index.
+     * @return The offset of the first character of the token.
+     */
+    int start(int index) {
+        return starts[index];
+    }
+
+    /**
+     * Returns the end offset (exclusive) of a token.
+     *
+     * @param index The token index.
+     * @return The offset just past the last character of the token.
+     */
+    int end(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Returns the length of a token.
+     *
+     * @param index The token index.
+     * @return The number of characters in the token.
+     */
+    int length(int index) {
+        return ends[index] - starts[index];
+    }
+
+    /**
+     * Checks whether a token is exactly equal to the given word.
+     *
+     * @param index The token index.
+     * @param word  The word to compare with.
+     * @return true if the token matches the word exactly, false otherwise.
+     */
+    boolean is(int index, String word) {
+        return regionEquals(index, word, false);
+    }
+
+    /**
+     * Checks whether a token is equal to the given word, ignoring case.
+     *
+     * @param index The token index.
+     * @param word  The word to compare with.
+     * @return true if the token matches the word ignoring case, false otherwise.
+     */
+    boolean isIgnoreCase(int index, String word) {
+        return regionEquals(index, word, true);
+    }
+
+    /**
+     * Classifies a token as a keyword, ignoring ASCII case.
+     *
+     * @param index The token index.
+     * @return The keyword, or null if the token is not a keyword.
+     */
+    Keyword keyword(int index) {
+        return Keyword.lookup(input, starts[index], ends[index]);
+    }
+
+    /**
+     * Checks whether a token is exactly the given keyword, in lower case.
+     *
+     * @param index   The token index.
+     * @param keyword The keyword to compare with.
+     * @return true if the token spells the keyword exactly, false otherwise.
+     */
+    boolean is(int index, Keyword keyword) {
+        return length(index) == keyword.text().length() && keyword.matches(input, starts[index], false);
+    }
+
+    /**
+     * Checks whether a token starts with the given prefix.
+     *
+     * @param index  The token index.
+     * @param prefix The prefix to look for.
+     * @return true if the token starts with the prefix, false otherwise.
+     */
+    boolean startsWith(int index, String prefix) {
+        int start = starts[index];
+        if (length(index) < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (input.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records a parse error, keeping only the first one reported.
+     *
+     * @param error    The reason the command could not be parsed.
+     * @param position The offset at which the error was detected.
+     * @param <T>      The type the caller was trying to produce.
+     * @return null, so callers can write {@code return tokens.fail(...)}.
+     */
+    <T> T fail(ParseError error, int position) {
+        if (this.error == null) {
+            this.error = error;
+            this.errorPosition = position;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the first parse error recorded.
+     *
+     * @return The error, or null if none has been recorded.
+     */
+    ParseError error() {
+        return error;
+    }
+
+    /**
+     * Returns the offset of the first parse error recorded.
+     *
+     * @return The error position.
+     */
+    int errorPosition() {
+        return errorPosition;
+    }
+
+    private boolean regionEquals(int index, String word, boolean ignoreCase) {
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (length != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char a = input.charAt(start + i);
+            char b = word.charAt(i);
+            if (a != b && (!ignoreCase || Character.toLowerCase(a) != Character.toLowerCase(b))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
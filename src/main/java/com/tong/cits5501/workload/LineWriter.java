@@ -0,0 +1,148 @@
+package com.tong.cits5501.workload;
+
+import com.tong.cits5501.workload.WorkloadProfile.Action;
+
+import java.util.SplittableRandom;
+
+/**
+ * Writes the parts of seeded Domolect command lines: actions, times of day,
+ * temperature conditions and lines with one mistake each. Every generator of
+ * synthetic lines writes through one of these, so they agree on the
+ * vocabulary of actions, the ranges of temperatures and the kinds of mistake.
+ * <p>
+ * Subclasses decide which device an action drives, so that one generator can
+ * pick devices by popularity and another uniformly.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * LineWriter writer = new LineWriter(new SplittableRandom(5501)) {
+ *     protected StringBuilder appendDevice(StringBuilder line, Action action) {
+ *         return line.append(action == Action.BARRIER ? "gate" : action == Action.SET ? "oven" : "lamp");
+ *     }
+ * };
+ * StringBuilder line = writer.appendAction(new StringBuilder(), Action.TURN).append(" when ");
+ * writer.appendTime(line);                    // e.g. "turn lamp on when 07:30 am"
+ * </pre>
+ */
+public abstract class LineWriter {
+
+    /**
+     * The coldest threshold of a temperature condition, in Kelvin.
+     */
+    public static final int COLDEST = 280;
+
+    /**
+     * The hottest threshold of a temperature condition, in Kelvin.
+     */
+    public static final int HOTTEST = 309;
+
+    private static final String[] BARRIER_ACTIONS = {"open", "close", "lock", "unlock"};
+    private static final int LOWEST_SETTING = 270;
+    private static final int SETTINGS = 60;
+
+    /**
+     * The source of every choice the writer and its subclass make.
+     */
+    protected final SplittableRandom random;
+
+    /**
+     * Constructs a writer drawing from a random generator.
+     *
+     * @param random the generator, which the subclass may share
+     */
+    protected LineWriter(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Appends the name of a device an action can drive: a light or appliance
+     * for {@link Action#TURN}, a barrier for {@link Action#BARRIER} or a
+     * thermal device for {@link Action#SET}. The line may also be given a
+     * location by inserting it at the start.
+     *
+     * @param line   the line being written
+     * @param action the action the device is for
+     * @return the line
+     */
+    protected abstract StringBuilder appendDevice(StringBuilder line, Action action);
+
+    /**
+     * Appends a command without conditions.
+     *
+     * @param line   the line being written
+     * @param action the kind of command
+     * @return the line
+     */
+    public StringBuilder appendAction(StringBuilder line, Action action) {
+        switch (action) {
+            case TURN:
+                line.append("turn ");
+                return appendDevice(line, action).append(random.nextBoolean() ? " on" : " off");
+            case BARRIER:
+                line.append(BARRIER_ACTIONS[random.nextInt(BARRIER_ACTIONS.length)]).append(' ');
+                return appendDevice(line, action);
+            case SET:
+                line.append("set ");
+                return appendDevice(line, action).append(" to ").append(LOWEST_SETTING + random.nextInt(SETTINGS))
+                        .append(random.nextBoolean() ? "K" : " K");
+            default:
+                throw new IllegalArgumentException("Unknown action: " + action);
+        }
+    }
+
+    /**
+     * Appends a time of day, such as {@code 07:30 am}.
+     *
+     * @param line the line being written
+     * @return the line
+     */
+    public StringBuilder appendTime(StringBuilder line) {
+        int hour = 1 + random.nextInt(12);
+        int minute = random.nextInt(60);
+        return line.append(hour < 10 ? "0" : "").append(hour).append(':')
+                .append(minute < 10 ? "0" : "").append(minute)
+                .append(random.nextBoolean() ? " am" : " pm");
+    }
+
+    /**
+     * Appends a temperature condition between {@link #COLDEST} and
+     * {@link #HOTTEST}, such as {@code current-temperature greater-than 300K}.
+     *
+     * @param line the line being written
+     * @return the line
+     */
+    public StringBuilder appendTemperature(StringBuilder line) {
+        return line.append("current-temperature ")
+                .append(random.nextBoolean() ? "greater-than " : "less-than ")
+                .append(COLDEST + random.nextInt(HOTTEST - COLDEST + 1)).append('K');
+    }
+
+    /**
+     * Appends a line with one mistake, detected anywhere from the second
+     * token to the last: a state, a filler word, a temperature, a time, a
+     * comparison or a condition that is not part of the language.
+     *
+     * @param line the line being written
+     * @return the line
+     */
+    public StringBuilder appendMistake(StringBuilder line) {
+        switch (random.nextInt(6)) {
+            case 0:
+                line.append("turn ");
+                return appendDevice(line, Action.TURN).append(" dim");
+            case 1:
+                line.append(BARRIER_ACTIONS[random.nextInt(BARRIER_ACTIONS.length)]).append(" the ");
+                return appendDevice(line, Action.BARRIER);
+            case 2:
+                line.append("set ");
+                return appendDevice(line, Action.SET).append(" to warm");
+            case 3:
+                return appendAction(line, Action.TURN).append(" when ").append(13 + random.nextInt(10))
+                        .append(':').append(60 + random.nextInt(40)).append(" pm");
+            case 4:
+                return appendAction(line, Action.BARRIER).append(" when current-temperature hotter-than 300K");
+            default:
+                return appendAction(line, Action.BARRIER).append(" until sunrise");
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.tong.cits5501.workload;
+
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.journal.CommandJournal;
+import com.tong.cits5501.domolect.metrics.Latencies;
+import com.tong.cits5501.domolect.metrics.LatencyHistogram;
+import com.tong.cits5501.domolect.schedule.CommandMonitor;
+import com.tong.cits5501.domolect.sensor.TemperatureSensor;
+import com.tong.cits5501.domolect.sensor.VirtualClock;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.ParseResult;
+import com.tong.cits5501.parser.REPL;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Drives the parser and a {@link CommandMonitor} in-process with lines from a
+ * {@link WorkloadGenerator}, at the profile's arrival rate, and reports the
+ * throughput and latencies achieved, for load and soak testing.
+ * <p>
+ * Lines are handled one at a time on the calling thread: each is parsed,
+ * submitted to the monitor and, if it is due, executed before the next is
+ * started. Arrivals follow a fixed schedule drawn from the generator, so a
+ * driver that falls behind does not slow the arrivals down; the delay shows
+ * in the response times instead, and every line due before the end of a run
+ * is handled, even if that takes the run past its end. The monitor runs on a
+ * {@link VirtualClock} that the driver moves forward in step with real time,
+ * sped up by the profile's time scale, so time conditions fall due during
+ * the run. The simulated outdoor temperature swings once a day across every
+ * threshold the generator uses, so every temperature condition is eventually
+ * met and the number of waiting commands stays bounded however long the run.
+ * <p>
+ * A driver given a journal directory records the commands in a
+ * {@link CommandJournal} through the monitor, so that the cost of journaling
+ * shows in the latencies. The journal is synced and snapshotted at each
+ * progress report and at the end of each run, and closed with the driver.
+ * <p>
+ * Executions that throw are counted and otherwise ignored. This class is not
+ * thread-safe.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * LoadDriver driver = new LoadDriver(new REPL(), WorkloadProfile.defaults().withRate(10_000), Command::execute);
+ * LoadReport report = driver.run(Duration.ofSeconds(30), Duration.ofSeconds(5), System.out::println);
+ * </pre>
+ */
+public final class LoadDriver implements AutoCloseable {
+
+    /**
+     * How long before an arrival the driver stops parking and spins, as
+     * parking can overshoot by tens of microseconds.
+     */
+    private static final long SPIN_NANOS = 50_000;
+
+    private final WorkloadProfile profile;
+    private final WorkloadGenerator generator;
+    private final VirtualClock clock;
+    private final CommandParser parser;
+    private final CommandMonitor monitor;
+    private final CommandJournal journal;
+    private final Consumer<? super Command> executor;
+    private final LatencyHistogram service = new LatencyHistogram();
+    private final LatencyHistogram response = new LatencyHistogram();
+    private final LatencyHistogram intervalService = new LatencyHistogram();
+    private final LatencyHistogram intervalResponse = new LatencyHistogram();
+
+    private long lines;
+    private long invalid;
+    private long rejected;
+    private long executed;
+    private long failed;
+    private long simulatedNanos;
+
+    /**
+     * Constructs a driver over a REPL's devices.
+     *
+     * @param repl     the REPL whose grammar and device catalog are used
+     * @param profile  the shape of the workload
+     * @param executor carries out the commands as they fall due
+     */
+    public LoadDriver(REPL repl, WorkloadProfile profile, Consumer<? super Command> executor) {
+        this(repl, profile, executor, null);
+    }
+
+    /**
+     * Constructs a driver over a REPL's devices that journals its commands.
+     * A journal left by an earlier driver is recovered, and its pending
+     * commands submitted again.
+     *
+     * @param repl     the REPL whose grammar and device catalog are used
+     * @param profile  the shape of the workload
+     * @param executor carries out the commands as they fall due
+     * @param journal  the journal directory, or null for no journal
+     * @throws UncheckedIOException if the journal cannot be opened
+     */
+    public LoadDriver(REPL repl, WorkloadProfile profile, Consumer<? super Command> executor, Path journal) {
+        this.profile = Objects.requireNonNull(profile, "profile must not be null");
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        this.generator = new WorkloadGenerator(repl.getGrammar(), profile);
+        this.clock = VirtualClock.at(LocalDateTime.of(2024, 1, 1, 0, 0), ZoneOffset.UTC);
+        TemperatureSensor sensor = () -> {
+            double day = LocalTime.now(clock).toSecondOfDay() / 86_400.0;
+            return (int) Math.round(294 - 17 * Math.cos(2 * Math.PI * (day - 0.125)));
+        };
+        this.parser = new CommandParser(repl.getCatalog(), clock, sensor);
+        try {
+            this.journal = journal == null ? null : CommandJournal.open(journal, repl.getCatalog(), clock, sensor);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.monitor = new CommandMonitor(clock, sensor, this::execute, this.journal);
+    }
+
+    private void execute(Command command) {
+        executed++;
+        try {
+            executor.accept(command);
+        } catch (RuntimeException e) {
+            failed++;
+        }
+    }
+
+    /**
+     * Runs the workload for a while. Simulated time, and the commands
+     * waiting in the monitor, carry over from one run to the next, so a
+     * short run may serve as a warm-up.
+     *
+     * @param duration how long to run
+     * @param interval how often to report progress, or null for no progress reports
+     * @param progress receives a report for each interval
+     * @return the report for the whole run
+     */
+    public LoadReport run(Duration duration, Duration interval, Consumer<? super LoadReport> progress) {
+        service.reset();
+        response.reset();
+        intervalService.reset();
+        intervalResponse.reset();
+        long[] runStart = counts();
+        long[] intervalStart = runStart;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long intervalNanos = interval == null ? Long.MAX_VALUE : interval.toNanos();
+        long nextReport = interval == null ? Long.MAX_VALUE : start + intervalNanos;
+        long reportedAt = start;
+        long simulatedStart = simulatedNanos;
+        boolean unlimited = profile.getRate() == 0;
+        double due = 0;
+
+        long now = start;
+        while (!unlimited || now < end) {
+            due += generator.nextGapNanos();
+            long arrival = start + (long) due;
+            if (arrival >= end) {
+                break;
+            }
+            String line = generator.next();
+            long begin = unlimited ? System.nanoTime() : awaitArrival(arrival);
+            handle(line);
+            now = System.nanoTime();
+            service.record(now - begin);
+            response.record(now - (unlimited ? begin : arrival));
+            intervalService.record(now - begin);
+            intervalResponse.record(now - (unlimited ? begin : arrival));
+            advanceClock(simulatedStart + (long) ((now - start) * 60.0 * profile.getTimeScale()));
+            if (now >= nextReport) {
+                checkpoint();
+                progress.accept(report(now - reportedAt, intervalStart, intervalService, intervalResponse));
+                intervalService.reset();
+                intervalResponse.reset();
+                intervalStart = counts();
+                reportedAt = now;
+                nextReport += intervalNanos;
+            }
+        }
+        checkpoint();
+        now = Math.max(now, System.nanoTime());
+        return report(now - start, runStart, service, response);
+    }
+
+    private void checkpoint() {
+        if (journal != null) {
+            journal.sync();
+            journal.trySnapshot();
+        }
+    }
+
+    /**
+     * Waits until an arrival is due.
+     *
+     * @return the time handling may begin, which is later than the arrival if the driver is behind
+     */
+    private static long awaitArrival(long arrival) {
+        long now = System.nanoTime();
+        while (arrival - now > SPIN_NANOS) {
+            LockSupport.parkNanos(arrival - now - SPIN_NANOS);
+            now = System.nanoTime();
+        }
+        while (now < arrival) {
+            Thread.onSpinWait();
+            now = System.nanoTime();
+        }
+        return now;
+    }
+
+    private void handle(String line) {
+        lines++;
+        ParseResult result = parser.tryParse(line);
+        if (!result.isSuccess()) {
+            invalid++;
+            return;
+        }
+        try {
+            monitor.submit(result.getCommand());
+        } catch (IllegalArgumentException e) {
+            rejected++;
+        }
+    }
+
+    /**
+     * Moves simulated time forward to a point, minute by minute, firing
+     * and reversing commands on the way.
+     */
+    private void advanceClock(long toNanos) {
+        long minutes = (toNanos - simulatedNanos) / 60_000_000_000L;
+        if (minutes > 0) {
+            simulatedNanos += minutes * 60_000_000_000L;
+            monitor.runFor(Duration.ofMinutes(minutes));
+        }
+    }
+
+    private long[] counts() {
+        return new long[] {lines, invalid, rejected, executed, failed};
+    }
+
+    private LoadReport report(long elapsed, long[] since, LatencyHistogram serviceTimes, LatencyHistogram responseTimes) {
+        return new LoadReport(elapsed, profile.getRate(), lines - since[0], invalid - since[1],
+                rejected - since[2], executed - since[3], failed - since[4],
+                monitor.getPending(), monitor.getActive(), serviceTimes.snapshot(), responseTimes.snapshot());
+    }
+
+    /**
+     * Returns the profile this driver follows.
+     *
+     * @return the profile
+     */
+    public WorkloadProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Closes the journal, if there is one.
+     */
+    @Override
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Runs a load test against the devices of a fresh REPL and prints the
+     * reports. The options, each followed by a value, are:
+     * <ul>
+     *   <li>{@code --duration <seconds>} (default 30) and {@code --warmup <seconds>} (default 5);</li>
+     *   <li>{@code --interval <seconds>} between progress reports (default 5, 0 for none);</li>
+     *   <li>{@code --rate <lines per second>} (default 0, unlimited) and
+     *       {@code --arrivals uniform|poisson} (default poisson);</li>
+     *   <li>{@code --seed <n>}, {@code --locations <n>}, {@code --skew <exponent>}
+     *       and {@code --errors <probability>};</li>
+     *   <li>{@code --actions <turn>,<barrier>,<set>}, {@code --when <none>,<time>,<temperature>}
+     *       and {@code --until <none>,<time>,<temperature>}, as relative weights;</li>
+     *   <li>{@code --time-scale <simulated minutes per second>} (default 60);</li>
+     *   <li>{@code --journal <directory>} to journal the commands (default: no journal).</li>
+     * </ul>
+     * The reports are printed on standard error. Devices report their
+     * actions on standard output, which should be redirected, for example to
+     * {@code /dev/null}, so that a terminal does not become the bottleneck.
+     *
+     * @param args the options
+     * @throws IllegalArgumentException if an option is unknown or has no value
+     */
+    public static void main(String[] args) {
+        WorkloadProfile profile = WorkloadProfile.defaults();
+        long seconds = 30;
+        long warmup = 5;
+        long interval = 5;
+        Path journal = null;
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("Missing value for option: " + args[args.length - 1]);
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--duration" -> seconds = Long.parseLong(value);
+                case "--warmup" -> warmup = Long.parseLong(value);
+                case "--interval" -> interval = Long.parseLong(value);
+                case "--rate" -> profile = profile.withRate(Double.parseDouble(value));
+                case "--arrivals" -> profile = profile.withArrivals(
+                        WorkloadProfile.Arrivals.valueOf(value.toUpperCase(Locale.ROOT)));
+                case "--seed" -> profile = profile.withSeed(Long.parseLong(value));
+                case "--locations" -> profile = profile.withLocations(Integer.parseInt(value));
+                case "--skew" -> profile = profile.withDeviceSkew(Double.parseDouble(value));
+                case "--errors" -> profile = profile.withErrorRate(Double.parseDouble(value));
+                case "--actions" -> {
+                    int[] w = weights(value);
+                    profile = profile.withActionMix(w[0], w[1], w[2]);
+                }
+                case "--when" -> {
+                    int[] w = weights(value);
+                    profile = profile.withWhenMix(w[0], w[1], w[2]);
+                }
+                case "--until" -> {
+                    int[] w = weights(value);
+                    profile = profile.withUntilMix(w[0], w[1], w[2]);
+                }
+                case "--time-scale" -> profile = profile.withTimeScale(Integer.parseInt(value));
+                case "--journal" -> journal = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        System.err.println(profile);
+        try (LoadDriver driver = new LoadDriver(new REPL(), profile, Command::execute, journal)) {
+            if (warmup > 0) {
+                driver.run(Duration.ofSeconds(warmup), null, report -> { });
+                Latencies.reset();
+            }
+            Duration every = interval > 0 ? Duration.ofSeconds(interval) : null;
+            LoadReport report = driver.run(Duration.ofSeconds(seconds), every, System.err::println);
+            System.err.println("Total: " + report);
+            for (Latencies.Stage stage : Latencies.Stage.values()) {
+                System.err.println(stage.name().toLowerCase(Locale.ROOT) + ": " + Latencies.snapshot(stage));
+            }
+        }
+    }
+
+    private static int[] weights(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Expected three comma-separated weights: " + value);
+        }
+        int[] weights = new int[3];
+        for (int i = 0; i < 3; i++) {
+            weights[i] = Integer.parseInt(parts[i].trim());
+        }
+        return weights;
+    }
+}
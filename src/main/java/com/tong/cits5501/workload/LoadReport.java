@@ -0,0 +1,164 @@
+package com.tong.cits5501.workload;
+
+import com.tong.cits5501.domolect.metrics.LatencySnapshot;
+
+/**
+ * What a {@link LoadDriver} achieved over a run, or over one interval of a
+ * run: how many lines it handled and with what outcome, how fast, and how
+ * long each line took.
+ * <p>
+ * Two latencies are reported for each line. The service time runs from the
+ * moment the driver starts parsing the line to the moment the line has been
+ * submitted and any commands due have been executed. The response time runs
+ * from the moment the line was due to arrive instead, so when the driver
+ * falls behind its target rate, the time lines spend waiting for it is
+ * counted rather than hidden.
+ */
+public final class LoadReport {
+
+    private final long elapsedNanos;
+    private final double offeredRate;
+    private final long lines;
+    private final long invalid;
+    private final long rejected;
+    private final long executed;
+    private final long failed;
+    private final int pending;
+    private final int active;
+    private final LatencySnapshot service;
+    private final LatencySnapshot response;
+
+    LoadReport(long elapsedNanos, double offeredRate, long lines, long invalid, long rejected,
+               long executed, long failed, int pending, int active,
+               LatencySnapshot service, LatencySnapshot response) {
+        this.elapsedNanos = elapsedNanos;
+        this.offeredRate = offeredRate;
+        this.lines = lines;
+        this.invalid = invalid;
+        this.rejected = rejected;
+        this.executed = executed;
+        this.failed = failed;
+        this.pending = pending;
+        this.active = active;
+        this.service = service;
+        this.response = response;
+    }
+
+    /**
+     * Returns the length of the run.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the rate the driver was asked to reach.
+     *
+     * @return the target number of lines per second, or 0 if unlimited
+     */
+    public double getOfferedRate() {
+        return offeredRate;
+    }
+
+    /**
+     * Returns the rate the driver reached.
+     *
+     * @return the number of lines handled per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : lines * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the number of lines handled.
+     *
+     * @return the number of lines
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns the number of lines that did not parse.
+     *
+     * @return the number of invalid lines
+     */
+    public long getInvalid() {
+        return invalid;
+    }
+
+    /**
+     * Returns the number of parsed commands the monitor refused, such as
+     * commands with an "until" condition that cannot be reversed.
+     *
+     * @return the number of rejected commands
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns the number of commands and reversals executed.
+     *
+     * @return the number of executions
+     */
+    public long getExecuted() {
+        return executed;
+    }
+
+    /**
+     * Returns the number of executions that threw, such as turning on a
+     * lamp that was already on.
+     *
+     * @return the number of failed executions
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Returns the number of commands waiting for their "when" condition at the end of the run.
+     *
+     * @return the number of pending commands
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * Returns the number of commands waiting for their "until" condition at the end of the run.
+     *
+     * @return the number of active commands
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * Returns the service times of the lines.
+     *
+     * @return the service times
+     */
+    public LatencySnapshot getServiceTime() {
+        return service;
+    }
+
+    /**
+     * Returns the response times of the lines.
+     *
+     * @return the response times
+     */
+    public LatencySnapshot getResponseTime() {
+        return response;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,.0f lines/s (offered %s) over %.1fs: %,d lines, %,d invalid, %,d rejected, "
+                        + "%,d executed, %,d failed, %,d pending, %,d active%n  service:  %s%n  response: %s",
+                getThroughput(), offeredRate == 0 ? "unlimited" : String.format("%,.0f", offeredRate),
+                elapsedNanos / 1e9, lines, invalid, rejected, executed, failed, pending, active, service, response);
+    }
+}
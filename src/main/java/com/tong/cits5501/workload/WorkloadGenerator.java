@@ -0,0 +1,224 @@
+package com.tong.cits5501.workload;
+
+import com.tong.cits5501.workload.WorkloadProfile.Action;
+import com.tong.cits5501.workload.WorkloadProfile.Arrivals;
+import com.tong.cits5501.workload.WorkloadProfile.Trigger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a seeded stream of Domolect command lines, and the gaps between
+ * their arrivals, in the shape of a {@link WorkloadProfile}.
+ * <p>
+ * Device names come from a REPL's grammar, so every line the profile does
+ * not mean to be mistaken parses. Each kind of command draws its device from
+ * the devices of that kind in every location, ranked in a seeded, scattered
+ * order and picked by a Zipf distribution over the ranks, so a few devices in
+ * a few locations receive most of the commands, as in a real home. The
+ * lines themselves, mistaken ones included, are written by a
+ * {@link LineWriter}.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * WorkloadGenerator generator = new WorkloadGenerator(repl.getGrammar(), WorkloadProfile.defaults());
+ * String line = generator.next();             // e.g. "room17 open gate when 07:30 am"
+ * double gap = generator.nextGapNanos();      // 0 while the rate is unlimited
+ * </pre>
+ */
+public final class WorkloadGenerator {
+
+    /**
+     * The devices of one kind, in every location, and how to pick one.
+     */
+    private static final class Devices {
+        final String[] names;
+        final int size;
+        final ZipfSampler popularity;
+        final int stride;
+
+        Devices(String[] names, int locations, double skew) {
+            this.names = names;
+            long size = (long) names.length * Math.max(locations, 1);
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many devices: " + size);
+            }
+            this.size = (int) size;
+            this.popularity = new ZipfSampler(this.size, skew);
+            this.stride = stride(this.size);
+        }
+
+        /**
+         * Returns a step coprime with the number of devices, about 0.618 of
+         * it, so that stepping through the ranks visits each device once
+         * while scattering neighbouring ranks across locations.
+         */
+        private static int stride(int size) {
+            int stride = Math.max(1, (int) (size * 0.6180339887));
+            while (gcd(stride, size) != 1) {
+                stride++;
+            }
+            return stride;
+        }
+
+        private static int gcd(int a, int b) {
+            return b == 0 ? a : gcd(b, a % b);
+        }
+
+        /**
+         * Picks a device, returned as an index whose quotient by the number
+         * of names is the location and whose remainder is the name.
+         */
+        int pick(SplittableRandom random) {
+            long rank = popularity.sample(random) - 1;
+            return (int) (rank * stride % size);
+        }
+    }
+
+    private final WorkloadProfile profile;
+    private final SplittableRandom random;
+    private final Devices switched;
+    private final Devices barriers;
+    private final Devices thermal;
+    private final Action[] actions = Action.values();
+    private final Trigger[] triggers = Trigger.values();
+    private final int[] actionWeights;
+    private final int[] whenWeights;
+    private final int[] untilWeights;
+    private final LineWriter writer;
+    private final StringBuilder line = new StringBuilder(96);
+
+    /**
+     * Constructs a generator over a grammar.
+     *
+     * @param grammar the device names of each kind, as returned by {@code REPL.getGrammar()}
+     * @param profile the shape of the workload
+     * @throws IllegalArgumentException if the grammar lacks a kind of device,
+     *                                  or the profile asks for more than {@link Integer#MAX_VALUE} devices of a kind
+     */
+    public WorkloadGenerator(Map<String, List<String>> grammar, WorkloadProfile profile) {
+        this.profile = profile;
+        this.random = new SplittableRandom(profile.getSeed());
+        int locations = profile.getLocations();
+        double skew = profile.getDeviceSkew();
+        String[] lights = names(grammar, "light_source");
+        String[] appliances = names(grammar, "appliance");
+        String[] both = new String[lights.length + appliances.length];
+        System.arraycopy(lights, 0, both, 0, lights.length);
+        System.arraycopy(appliances, 0, both, lights.length, appliances.length);
+        switched = new Devices(both, locations, skew);
+        barriers = new Devices(names(grammar, "barrier"), locations, skew);
+        thermal = new Devices(names(grammar, "thermal_device"), locations, skew);
+        actionWeights = new int[actions.length];
+        for (Action action : actions) {
+            actionWeights[action.ordinal()] = profile.getWeight(action);
+        }
+        whenWeights = new int[triggers.length];
+        untilWeights = new int[triggers.length];
+        for (Trigger trigger : triggers) {
+            whenWeights[trigger.ordinal()] = profile.getWhenWeight(trigger);
+            untilWeights[trigger.ordinal()] = profile.getUntilWeight(trigger);
+        }
+        writer = new LineWriter(random) {
+            @Override
+            protected StringBuilder appendDevice(StringBuilder line, Action action) {
+                return device(line, action == Action.TURN ? switched : action == Action.BARRIER ? barriers : thermal);
+            }
+        };
+    }
+
+    private static String[] names(Map<String, List<String>> grammar, String kind) {
+        List<String> names = grammar.get(kind);
+        if (names == null || names.isEmpty()) {
+            throw new IllegalArgumentException("Grammar has no " + kind + " names.");
+        }
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the profile this generator follows.
+     *
+     * @return the profile
+     */
+    public WorkloadProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Generates the next command line.
+     *
+     * @return the line, mistaken with the probability of the profile's error rate
+     */
+    public String next() {
+        line.setLength(0);
+        if (profile.getErrorRate() > 0 && random.nextDouble() < profile.getErrorRate()) {
+            writer.appendMistake(line);
+        } else {
+            Action action = actions[pick(actionWeights)];
+            writer.appendAction(line, action);
+            condition(" when ", triggers[pick(whenWeights)]);
+            if (action != Action.SET) {
+                condition(" until ", triggers[pick(untilWeights)]);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Generates the gap before the next line arrives.
+     *
+     * @return the gap in nanoseconds, with a mean of one second over the
+     *         profile's rate, or 0 if the rate is unlimited
+     */
+    public double nextGapNanos() {
+        double rate = profile.getRate();
+        if (rate == 0) {
+            return 0;
+        }
+        double mean = 1e9 / rate;
+        return profile.getArrivals() == Arrivals.UNIFORM ? mean : -Math.log(1 - random.nextDouble()) * mean;
+    }
+
+    private int pick(int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int roll = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Weights changed while picking.");
+    }
+
+    /**
+     * Picks a device and appends its name, prefixing the line with its
+     * location when the profile has locations.
+     */
+    private StringBuilder device(StringBuilder line, Devices devices) {
+        int device = devices.pick(random);
+        if (profile.getLocations() > 0) {
+            line.insert(0, ' ').insert(0, device / devices.names.length).insert(0, "room");
+        }
+        return line.append(devices.names[device % devices.names.length]);
+    }
+
+    private void condition(String clause, Trigger trigger) {
+        switch (trigger) {
+            case NONE:
+                break;
+            case TIME:
+                writer.appendTime(line.append(clause));
+                break;
+            case TEMPERATURE:
+                writer.appendTemperature(line.append(clause));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown trigger: " + trigger);
+        }
+    }
+}
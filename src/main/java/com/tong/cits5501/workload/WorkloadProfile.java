@@ -0,0 +1,376 @@
+package com.tong.cits5501.workload;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The shape of a synthetic workload: which commands are sent, with which
+ * conditions, to which devices, how many of them are mistaken and how fast
+ * they arrive. Profiles are immutable; each {@code with} method returns a
+ * copy with one setting changed, starting from {@link #defaults()}.
+ *
+ * <h2>Example usage:</h2>
+ * <pre>
+ * WorkloadProfile profile = WorkloadProfile.defaults()
+ *         .withLocations(500)
+ *         .withDeviceSkew(1.2)
+ *         .withErrorRate(0.02)
+ *         .withRate(20_000);
+ * </pre>
+ */
+public final class WorkloadProfile {
+
+    /**
+     * The kinds of command a line can carry.
+     */
+    public enum Action {
+        /** {@code turn <light or appliance> on|off}. */
+        TURN,
+        /** {@code open|close|lock|unlock <barrier>}. */
+        BARRIER,
+        /** {@code set <thermal device> to <n>K}. */
+        SET
+    }
+
+    /**
+     * The kinds of "when" or "until" condition a line can carry.
+     */
+    public enum Trigger {
+        /** No condition. */
+        NONE,
+        /** A time of day, such as {@code 07:30 am}. */
+        TIME,
+        /** A temperature, such as {@code current-temperature greater-than 300K}. */
+        TEMPERATURE
+    }
+
+    /**
+     * How the gaps between arrivals are spread.
+     */
+    public enum Arrivals {
+        /** Every gap is the same. */
+        UNIFORM,
+        /** Gaps are exponentially distributed, as for requests from many independent clients. */
+        POISSON
+    }
+
+    private long seed = 5501;
+    private int[] actionMix = {50, 40, 10};
+    private int[] whenMix = {60, 25, 15};
+    private int[] untilMix = {60, 25, 15};
+    private int locations = 100;
+    private double deviceSkew = 1.0;
+    private double errorRate = 0.05;
+    private double rate;
+    private Arrivals arrivals = Arrivals.POISSON;
+    private int timeScale = 60;
+
+    private WorkloadProfile() {
+    }
+
+    private WorkloadProfile copy() {
+        WorkloadProfile copy = new WorkloadProfile();
+        copy.seed = seed;
+        copy.actionMix = actionMix;
+        copy.whenMix = whenMix;
+        copy.untilMix = untilMix;
+        copy.locations = locations;
+        copy.deviceSkew = deviceSkew;
+        copy.errorRate = errorRate;
+        copy.rate = rate;
+        copy.arrivals = arrivals;
+        copy.timeScale = timeScale;
+        return copy;
+    }
+
+    /**
+     * Returns the default profile: half the commands turn something on or
+     * off, two in five move a barrier and one in ten sets a temperature;
+     * three in five have no "when" condition and three in five no "until"
+     * condition; commands go to 100 locations with Zipf-skewed device
+     * popularity of exponent 1; one line in twenty is mistaken; and lines
+     * arrive as fast as they can be handled, with an hour of simulated time
+     * passing each second.
+     *
+     * @return the default profile
+     */
+    public static WorkloadProfile defaults() {
+        return new WorkloadProfile();
+    }
+
+    /**
+     * Returns a copy with another seed. Two generators with equal profiles
+     * produce the same lines and gaps.
+     *
+     * @param seed the seed
+     * @return the changed profile
+     */
+    public WorkloadProfile withSeed(long seed) {
+        WorkloadProfile copy = copy();
+        copy.seed = seed;
+        return copy;
+    }
+
+    /**
+     * Returns a copy with other relative weights for the kinds of command.
+     *
+     * @param turn    the weight of {@link Action#TURN}
+     * @param barrier the weight of {@link Action#BARRIER}
+     * @param set     the weight of {@link Action#SET}
+     * @return the changed profile
+     * @throws IllegalArgumentException if a weight is negative or they are all zero
+     */
+    public WorkloadProfile withActionMix(int turn, int barrier, int set) {
+        WorkloadProfile copy = copy();
+        copy.actionMix = weights("action", turn, barrier, set);
+        return copy;
+    }
+
+    /**
+     * Returns a copy with other relative weights for the kinds of "when" condition.
+     *
+     * @param none        the weight of lines without one
+     * @param time        the weight of time conditions
+     * @param temperature the weight of temperature conditions
+     * @return the changed profile
+     * @throws IllegalArgumentException if a weight is negative or they are all zero
+     */
+    public WorkloadProfile withWhenMix(int none, int time, int temperature) {
+        WorkloadProfile copy = copy();
+        copy.whenMix = weights("when", none, time, temperature);
+        return copy;
+    }
+
+    /**
+     * Returns a copy with other relative weights for the kinds of "until"
+     * condition. {@code set} commands cannot be reversed and never get one.
+     *
+     * @param none        the weight of lines without one
+     * @param time        the weight of time conditions
+     * @param temperature the weight of temperature conditions
+     * @return the changed profile
+     * @throws IllegalArgumentException if a weight is negative or they are all zero
+     */
+    public WorkloadProfile withUntilMix(int none, int time, int temperature) {
+        WorkloadProfile copy = copy();
+        copy.untilMix = weights("until", none, time, temperature);
+        return copy;
+    }
+
+    private static int[] weights(String mix, int... weights) {
+        int total = 0;
+        for (int weight : weights) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights of the " + mix + " mix must not be negative: " + Arrays.toString(weights));
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Weights of the " + mix + " mix must not all be zero.");
+        }
+        return weights;
+    }
+
+    /**
+     * Returns a copy sending commands to another number of locations.
+     *
+     * @param locations the number of locations, named {@code room0} onwards,
+     *                  or 0 to send commands without a location
+     * @return the changed profile
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public WorkloadProfile withLocations(int locations) {
+        if (locations < 0) {
+            throw new IllegalArgumentException("Number of locations must not be negative: " + locations);
+        }
+        WorkloadProfile copy = copy();
+        copy.locations = locations;
+        return copy;
+    }
+
+    /**
+     * Returns a copy with another skew of device popularity. The devices of
+     * each kind, in every location, are ranked in a seeded order and picked
+     * with probability proportional to {@code 1 / rank^skew}.
+     *
+     * @param skew the Zipf exponent; 0 makes every device equally popular
+     * @return the changed profile
+     * @throws IllegalArgumentException if the skew is negative
+     */
+    public WorkloadProfile withDeviceSkew(double skew) {
+        if (!(skew >= 0)) {
+            throw new IllegalArgumentException("Device skew must not be negative: " + skew);
+        }
+        WorkloadProfile copy = copy();
+        copy.deviceSkew = skew;
+        return copy;
+    }
+
+    /**
+     * Returns a copy with another share of mistaken lines.
+     *
+     * @param errorRate the probability that a line has a mistake, from 0 to 1
+     * @return the changed profile
+     * @throws IllegalArgumentException if the rate is out of range
+     */
+    public WorkloadProfile withErrorRate(double errorRate) {
+        if (!(errorRate >= 0 && errorRate <= 1)) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1: " + errorRate);
+        }
+        WorkloadProfile copy = copy();
+        copy.errorRate = errorRate;
+        return copy;
+    }
+
+    /**
+     * Returns a copy with another arrival rate.
+     *
+     * @param perSecond the mean number of lines arriving each second, or 0
+     *                  for lines to arrive as fast as they can be handled
+     * @return the changed profile
+     * @throws IllegalArgumentException if the rate is negative
+     */
+    public WorkloadProfile withRate(double perSecond) {
+        if (!(perSecond >= 0)) {
+            throw new IllegalArgumentException("Arrival rate must not be negative: " + perSecond);
+        }
+        WorkloadProfile copy = copy();
+        copy.rate = perSecond;
+        return copy;
+    }
+
+    /**
+     * Returns a copy with gaps between arrivals spread another way.
+     *
+     * @param arrivals how the gaps are spread
+     * @return the changed profile
+     */
+    public WorkloadProfile withArrivals(Arrivals arrivals) {
+        WorkloadProfile copy = copy();
+        copy.arrivals = Objects.requireNonNull(arrivals, "arrivals must not be null");
+        return copy;
+    }
+
+    /**
+     * Returns a copy with simulated time passing at another speed, so that
+     * time conditions fall due during a run of a few seconds or minutes.
+     *
+     * @param minutesPerSecond the number of simulated minutes passing each real second
+     * @return the changed profile
+     * @throws IllegalArgumentException if the speed is not positive
+     */
+    public WorkloadProfile withTimeScale(int minutesPerSecond) {
+        if (minutesPerSecond < 1) {
+            throw new IllegalArgumentException("Time scale must be positive: " + minutesPerSecond);
+        }
+        WorkloadProfile copy = copy();
+        copy.timeScale = minutesPerSecond;
+        return copy;
+    }
+
+    /**
+     * Returns the seed.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the weight of a kind of command.
+     *
+     * @param action the kind of command
+     * @return its weight
+     */
+    public int getWeight(Action action) {
+        return actionMix[action.ordinal()];
+    }
+
+    /**
+     * Returns the weight of a kind of "when" condition.
+     *
+     * @param trigger the kind of condition
+     * @return its weight
+     */
+    public int getWhenWeight(Trigger trigger) {
+        return whenMix[trigger.ordinal()];
+    }
+
+    /**
+     * Returns the weight of a kind of "until" condition.
+     *
+     * @param trigger the kind of condition
+     * @return its weight
+     */
+    public int getUntilWeight(Trigger trigger) {
+        return untilMix[trigger.ordinal()];
+    }
+
+    /**
+     * Returns the number of locations.
+     *
+     * @return the number of locations, or 0 if commands have none
+     */
+    public int getLocations() {
+        return locations;
+    }
+
+    /**
+     * Returns the skew of device popularity.
+     *
+     * @return the Zipf exponent
+     */
+    public double getDeviceSkew() {
+        return deviceSkew;
+    }
+
+    /**
+     * Returns the share of mistaken lines.
+     *
+     * @return the probability that a line has a mistake
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Returns the arrival rate.
+     *
+     * @return the mean number of lines arriving each second, or 0 if unlimited
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Returns how the gaps between arrivals are spread.
+     *
+     * @return the spread of the gaps
+     */
+    public Arrivals getArrivals() {
+        return arrivals;
+    }
+
+    /**
+     * Returns the speed of simulated time.
+     *
+     * @return the number of simulated minutes passing each real second
+     */
+    public int getTimeScale() {
+        return timeScale;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkloadProfile{seed=" + seed
+                + ", actions=" + Arrays.toString(actionMix)
+                + ", when=" + Arrays.toString(whenMix)
+                + ", until=" + Arrays.toString(untilMix)
+                + ", locations=" + locations
+                + ", skew=" + deviceSkew
+                + ", errors=" + errorRate
+                + ", rate=" + (rate == 0 ? "unlimited" : rate + "/s " + arrivals.name().toLowerCase())
+                + ", timeScale=" + timeScale + "min/s}";
+    }
+}
@@ -0,0 +1,97 @@
+package com.tong.cits5501.workload;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks from 1 to {@code n} with probability proportional to
+ * {@code 1 / rank^exponent}, by the rejection-inversion method of Hörmann
+ * and Derflinger. Sampling takes constant time and memory whatever the
+ * number of ranks, so millions of devices can be ranked without a table of
+ * their probabilities. An exponent of 0 draws every rank equally often.
+ */
+final class ZipfSampler {
+
+    private final int n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+
+    /**
+     * Constructs a sampler over ranks 1 to {@code n}.
+     *
+     * @param n        the number of ranks
+     * @param exponent the skew; 0 for uniform, about 1 for a classic Zipf distribution
+     * @throws IllegalArgumentException if there are no ranks or the exponent is negative
+     */
+    ZipfSampler(int n, double exponent) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Number of ranks must be positive: " + n);
+        }
+        if (!(exponent >= 0)) {
+            throw new IllegalArgumentException("Exponent must not be negative: " + exponent);
+        }
+        this.n = n;
+        this.exponent = exponent;
+        hIntegralX1 = hIntegral(1.5) - 1;
+        hIntegralN = hIntegral(n + 0.5);
+        s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * Draws a rank.
+     *
+     * @param random the source of randomness
+     * @return a rank from 1, the most likely, to {@code n}
+     */
+    int sample(SplittableRandom random) {
+        if (exponent == 0) {
+            return 1 + random.nextInt(n);
+        }
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) Math.min(Math.max(x + 0.5, 1), n);
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * The unnormalised probability of rank {@code x}.
+     */
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    /**
+     * An antiderivative of {@link #h(double)}.
+     */
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return expm1OverX((1 - exponent) * logX) * logX;
+    }
+
+    /**
+     * The inverse of {@link #hIntegral(double)}.
+     */
+    private double hIntegralInverse(double x) {
+        double t = Math.max(x * (1 - exponent), -1);
+        return Math.exp(log1pOverX(t) * x);
+    }
+
+    /**
+     * {@code log(1 + x) / x}, accurate near 0.
+     */
+    private static double log1pOverX(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /**
+     * {@code (exp(x) - 1) / x}, accurate near 0.
+     */
+    private static double expm1OverX(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
@@ -0,0 +1,74 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.parser.BatchRunner;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link BatchRunner}.
+ * Verifies that parallel runs print their results in input order.
+ */
+public class BatchRunnerTest {
+
+    private static final String[] LINES = {
+            "kitchen turn lamp on",
+            "open gate when current-temperature greater-than 300K",
+            "turn lamp sideways",
+            "set thermostat to 295K until 7:30 pm",
+            "hall lock blast-door",
+            "turn",
+    };
+
+    /**
+     * Tests that a run spanning several chunks prints the same output, in
+     * the same order, as parsing the lines one at a time.
+     *
+     * @throws IOException never, as the input and output are in memory
+     */
+    @Test
+    void testOutputInInputOrderAcrossChunks() throws IOException {
+        REPL repl = new REPL();
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        int errors = 0;
+        // Enough lines for three chunks, with a partial last chunk
+        int count = 40_000;
+        for (int i = 0; i < count; i++) {
+            // Vary the location so that lines in different chunks differ
+            String line = LINES[i % LINES.length].startsWith("turn")
+                    ? LINES[i % LINES.length] : "room" + i + " " + LINES[i % LINES.length];
+            input.append(line).append('\n');
+            expected.append(repl.parseCommand(line)).append(System.lineSeparator());
+            if (!repl.parse(line).isSuccess()) {
+                errors++;
+            }
+        }
+
+        StringWriter out = new StringWriter();
+        BatchRunner.Summary summary;
+        try (BatchRunner runner = new BatchRunner(new REPL(), 4)) {
+            summary = runner.run(new BufferedReader(new StringReader(input.toString())), out);
+        }
+
+        assertEquals(count, summary.getLines());
+        assertEquals(errors, summary.getErrors());
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    /**
+     * Tests that an option given without a value is rejected rather than ignored.
+     */
+    @Test
+    void testDanglingOptionRejected() {
+        assertThrows(IllegalArgumentException.class, () -> REPL.main(new String[]{"--batch"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> REPL.main(new String[]{"--threads", "2", "--batch"}));
+    }
+}
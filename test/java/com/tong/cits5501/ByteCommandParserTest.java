@@ -0,0 +1,79 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.parser.ByteCommandParser;
+import com.tong.cits5501.parser.ParseResult;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link ByteCommandParser}.
+ * Verifies that parsing memory-mapped bytes gives exactly the results of
+ * parsing the same lines as text.
+ */
+public class ByteCommandParserTest {
+
+    private static final String[] LINES = {
+            "kitchen turn lamp on",
+            "turn oven off when current-temperature greater-than 300K",
+            "open gate until 7:30 pm",
+            "set thermostat to 295 K",
+            "turn lamp sideways",
+            "turn",
+            "",
+            "   ",
+            // Non-ASCII lines are decoded before parsing
+            "küche turn lamp on",
+            "salle-à-manger lock blast-door when 10:15 am",
+            "turn lämp on",
+            "set thermostat to 2°K",
+            "küche turn lamp dim",
+    };
+
+    /**
+     * Tests that a mapped file with mixed line endings parses line for line
+     * as {@link REPL#parse(String)} does, including lines that are not ASCII,
+     * with error positions given in bytes rather than characters.
+     *
+     * @param dir a temporary directory for the command file
+     * @throws IOException if the file cannot be written or mapped
+     */
+    @Test
+    void testMappedFileMatchesTextParsing(@TempDir Path dir) throws IOException {
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < LINES.length; i++) {
+            file.append(LINES[i]).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        // The last line has no line ending
+        file.append(LINES[0]);
+        Path commands = Files.writeString(dir.resolve("commands.txt"), file, StandardCharsets.UTF_8);
+
+        REPL repl = new REPL();
+        List<ParseResult> results = new ArrayList<>();
+        long count = new ByteCommandParser(repl.getParser()).parseFile(commands, (line, result) -> {
+            assertEquals(results.size() + 1, line, "lines should be numbered from 1, in order");
+            results.add(result);
+        });
+
+        assertEquals(LINES.length + 1, count);
+        for (int i = 0; i <= LINES.length; i++) {
+            String line = LINES[i % LINES.length];
+            ParseResult expected = repl.parse(line);
+            ParseResult actual = results.get(i);
+            assertEquals(expected.render(), actual.render(), line);
+            assertEquals(expected.getError(), actual.getError(), line);
+            int position = expected.getPosition();
+            assertEquals(position < 0 ? position : line.substring(0, position).getBytes(StandardCharsets.UTF_8).length,
+                    actual.getPosition(), line);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.command.LightingCommand;
+import com.tong.cits5501.domolect.constant.State;
+import com.tong.cits5501.domolect.execution.CommandCoalescer;
+import com.tong.cits5501.domolect.sensor.VirtualClock;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link CommandCoalescer}.
+ * Verifies that bursts to one device collapse to the last writer and that
+ * commands which would not change a device are dropped.
+ */
+public class CommandCoalescerTest {
+
+    private final VirtualClock clock = VirtualClock.at(LocalDateTime.of(2024, 1, 1, 0, 0), ZoneOffset.UTC);
+    private final CommandParser parser = new REPL().getParser();
+    private final List<Command> executed = new ArrayList<>();
+    private final CommandCoalescer coalescer = new CommandCoalescer(Duration.ofMillis(50), clock, command -> {
+        executed.add(command);
+        command.execute();
+    });
+
+    private void submit(String line) {
+        coalescer.accept(parser.parse(line).getCommand());
+    }
+
+    /**
+     * Tests that only the last command in a device's window is executed, and
+     * only once the window has closed.
+     */
+    @Test
+    void testLastWriterWins() {
+        submit("kitchen turn lamp on");
+        submit("kitchen turn lamp off");
+        submit("hall turn lamp on");
+        submit("kitchen turn lamp on");
+        submit("open gate");
+        submit("lock gate");
+
+        coalescer.poll();
+        assertTrue(executed.isEmpty(), "windows are still open");
+        clock.advance(Duration.ofMillis(50));
+        coalescer.poll();
+
+        assertEquals(4, executed.size());
+        LightingCommand first = (LightingCommand) executed.get(0);
+        assertEquals("kitchen", first.getLocation().getName());
+        assertEquals(State.ON, first.getState());
+        assertEquals(2, coalescer.getSuperseded());
+        assertEquals(0, coalescer.getHeld());
+    }
+
+    /**
+     * Tests that a burst leaving a device in its current state never reaches it.
+     */
+    @Test
+    void testNoOpsAreDropped() {
+        submit("turn lamp on");
+        coalescer.flush();
+
+        submit("turn lamp off");
+        submit("turn lamp on");
+        coalescer.flush();
+
+        assertEquals(1, executed.size());
+        assertEquals(1, coalescer.getDropped());
+        assertEquals(3, coalescer.getSubmitted());
+    }
+
+    /**
+     * Tests that a command is compared with the state last released for its
+     * device rather than with the device, so that with a downstream stage
+     * that has yet to carry out what it was given, a command undoing a
+     * released one is not taken for a no-op.
+     */
+    @Test
+    void testDeferredDownstreamKeepsLastState() {
+        List<Command> queued = new ArrayList<>();
+        CommandCoalescer deferred = new CommandCoalescer(Duration.ofMillis(50), clock, queued::add);
+        deferred.accept(parser.parse("turn lamp on").getCommand());
+        deferred.flush();
+        deferred.accept(parser.parse("turn lamp off").getCommand());
+        deferred.flush();
+        deferred.accept(parser.parse("turn lamp off").getCommand());
+        deferred.flush();
+
+        assertEquals(2, queued.size(), "the lamp still reads off, but \"on\" has been released");
+        queued.forEach(Command::execute);
+        assertEquals(State.OFF, ((LightingCommand) queued.get(1)).getLightSource().getState());
+        assertEquals(1, deferred.getDropped());
+    }
+}
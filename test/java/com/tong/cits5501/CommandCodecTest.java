@@ -0,0 +1,141 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.codec.CommandDecoder;
+import com.tong.cits5501.domolect.codec.CommandEncoder;
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.device.DeviceCatalog;
+import com.tong.cits5501.domolect.sensor.VirtualClock;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link CommandEncoder} and {@link CommandDecoder}.
+ */
+public class CommandCodecTest {
+
+    private final VirtualClock clock = VirtualClock.at(LocalDateTime.of(2024, 1, 1, 0, 0), ZoneOffset.UTC);
+    private final DeviceCatalog catalog = new REPL().getCatalog();
+    private final CommandParser parser = new CommandParser(catalog, clock, () -> 290);
+
+    /**
+     * Tests that every kind of command and condition survives a round trip,
+     * and that names already sent are encoded as short ids.
+     */
+    @Test
+    void testRoundTrip() {
+        List<String> lines = List.of(
+                "turn lamp on",
+                "kitchen turn coffee-maker off when 07:30 am until current-temperature greater-than 300K",
+                "garage open garage-door when current-temperature less-than 280K until 11:59 pm",
+                "lock gate",
+                "hall set thermostat to 295K when 12:00 am",
+                "kitchen turn coffee-maker off when 07:30 am until current-temperature greater-than 300K");
+        CommandEncoder encoder = new CommandEncoder();
+        CommandDecoder decoder = new CommandDecoder(catalog, clock, () -> 290);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        int[] sizes = new int[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            int before = buffer.position();
+            encoder.encode(parser.parse(lines.get(i)), buffer);
+            sizes[i] = buffer.position() - before;
+        }
+        assertTrue(sizes[5] < sizes[1], "repeated names should be sent as ids");
+        assertTrue(sizes[5] <= 16, "a command with known names should be a few bytes: " + sizes[5]);
+
+        buffer.flip();
+        for (String line : lines) {
+            AugmentedCommand decoded = decoder.decodeAugmented(buffer);
+            assertEquals(parser.parse(line).toString(), decoded.toString(), line);
+        }
+        assertFalse(buffer.hasRemaining());
+        assertEquals(encoder.getDictionarySize(), decoder.getDictionarySize());
+    }
+
+    /**
+     * Tests that a message that does not fit, or has only partly arrived,
+     * leaves the buffer and the dictionary as they were.
+     */
+    @Test
+    void testIncompleteMessagesCanBeRetried() {
+        CommandEncoder encoder = new CommandEncoder();
+        CommandDecoder decoder = new CommandDecoder(catalog, clock, null);
+        AugmentedCommand command = parser.parse("bedroom turn lamp on when 09:00 pm");
+
+        ByteBuffer small = ByteBuffer.allocate(8);
+        assertThrows(BufferOverflowException.class, () -> encoder.encode(command, small));
+        assertEquals(0, small.position());
+        assertEquals(0, encoder.getDictionarySize());
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        encoder.encode(command, buffer);
+        encoder.encode(command, buffer);
+        buffer.flip();
+
+        ByteBuffer partial = buffer.duplicate().limit(5);
+        assertThrows(BufferUnderflowException.class, () -> decoder.decodeAugmented(partial));
+        assertEquals(0, partial.position());
+        assertEquals(0, decoder.getDictionarySize());
+
+        assertEquals(command.toString(), decoder.decodeAugmented(buffer).toString());
+        assertEquals(command.toString(), decoder.decodeAugmented(buffer).toString());
+    }
+
+    /**
+     * Tests that a message of another format version is rejected.
+     */
+    @Test
+    void testWrongVersionIsRejected() {
+        ByteBuffer buffer = encode("turn lamp on");
+        buffer.put(0, (byte) (buffer.get(0) + 1));
+        CommandDecoder decoder = new CommandDecoder(catalog, clock, null);
+        assertThrows(IllegalArgumentException.class, () -> decoder.decodeAugmented(buffer));
+    }
+
+    /**
+     * Tests that a state ordinal past the end of the enum is rejected without
+     * adding the message's location to the catalog.
+     */
+    @Test
+    void testOutOfRangeOrdinalIsRejected() {
+        ByteBuffer buffer = encode("attic turn lamp on");
+        // The state byte comes just before the two empty condition tags.
+        buffer.put(buffer.limit() - 3, (byte) 7);
+        DeviceCatalog receiver = new REPL().getCatalog();
+        CommandDecoder decoder = new CommandDecoder(receiver, clock, null);
+        assertThrows(IllegalArgumentException.class, () -> decoder.decodeAugmented(buffer));
+        assertEquals(0, decoder.getDictionarySize());
+        assertNull(receiver.findLocation("attic", 0, 5));
+    }
+
+    /**
+     * Tests that a name id the decoder was never sent is rejected.
+     */
+    @Test
+    void testUnknownDictionaryIdIsRejected() {
+        CommandEncoder encoder = new CommandEncoder();
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        encoder.encode(parser.parse("turn lamp on"), buffer);
+        int first = buffer.position();
+        encoder.encode(parser.parse("turn lamp off"), buffer);
+        buffer.flip().position(first);
+
+        CommandDecoder decoder = new CommandDecoder(catalog, clock, null);
+        assertThrows(IllegalArgumentException.class, () -> decoder.decodeAugmented(buffer));
+    }
+
+    private ByteBuffer encode(String line) {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        new CommandEncoder().encode(parser.parse(line), buffer);
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,91 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.events.ParseEvent;
+import com.tong.cits5501.domolect.schedule.CommandMonitor;
+import com.tong.cits5501.domolect.sensor.TemperatureSensor;
+import com.tong.cits5501.domolect.sensor.VirtualClock;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the Java Flight Recorder events in
+ * {@code com.tong.cits5501.domolect.events}.
+ */
+public class CommandEventsTest {
+
+    private final VirtualClock clock = VirtualClock.at(LocalDateTime.of(2024, 1, 1, 6, 0), ZoneOffset.UTC);
+    private final TemperatureSensor sensor = () -> 290;
+    private final CommandParser parser = new CommandParser(new REPL().getCatalog(), clock, sensor);
+    private final CommandMonitor monitor = new CommandMonitor(clock, sensor, Command::execute);
+
+    /**
+     * Tests that a command's parse, conditions, execution and device
+     * transitions are recorded with its type, device and location.
+     */
+    @Test
+    void testLifecycleIsRecorded(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("domolect.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("Parse", "ConditionRegistered", "ConditionFired", "Execute", "DeviceTransition")) {
+                recording.enable("domolect." + name);
+            }
+            recording.start();
+            assertFalse(parser.tryParse("turn lamp sideways").isSuccess());
+            monitor.submit(parser.parse("study turn lamp on when 06:30 am until 07:00 am"));
+            monitor.runFor(Duration.ofHours(1));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        // Events committed by one thread are written in the order they were committed
+        List<String> events = RecordingFile.readAllEvents(file).stream()
+                .map(CommandEventsTest::describe)
+                .toList();
+
+        assertEquals(List.of(
+                "Parse null null null INVALID_STATE",
+                "Parse LightingCommand lamp study ok",
+                "ConditionRegistered LightingCommand lamp study when",
+                "ConditionFired LightingCommand lamp study when",
+                "Execute LightingCommand lamp study ok",
+                "DeviceTransition LightingCommand lamp study ON",
+                "ConditionRegistered LightingCommand lamp study until",
+                "ConditionFired LightingCommand lamp study until",
+                "Execute LightingCommand lamp study ok",
+                "DeviceTransition LightingCommand lamp study OFF"), events);
+    }
+
+    /**
+     * Tests that an event is not committed while no recording has it enabled.
+     */
+    @Test
+    void testDisabledEventIsNotCommitted() {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        assertFalse(event.shouldCommit());
+    }
+
+    private static String describe(RecordedEvent event) {
+        String name = event.getEventType().getName().substring("domolect.".length());
+        String detail = event.hasField("outcome") ? event.getString("outcome")
+                : event.hasField("clause") ? event.getString("clause")
+                : event.getString("transition");
+        return name + " " + event.getString("commandType") + " " + event.getString("device")
+                + " " + event.getString("location") + " " + detail;
+    }
+}
@@ -0,0 +1,139 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.command.TimeCondition;
+import com.tong.cits5501.domolect.constant.State;
+import com.tong.cits5501.domolect.device.DeviceCatalog;
+import com.tong.cits5501.domolect.journal.CommandJournal;
+import com.tong.cits5501.domolect.sensor.VirtualClock;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link CommandJournal}.
+ */
+public class CommandJournalTest {
+
+    private final VirtualClock clock = VirtualClock.at(LocalDateTime.of(2024, 1, 1, 0, 0), ZoneOffset.UTC);
+    private final DeviceCatalog catalog = new REPL().getCatalog();
+    private final CommandParser parser = new CommandParser(catalog, clock, () -> 290);
+
+    private static List<String> describe(Iterable<AugmentedCommand> commands) {
+        List<String> descriptions = new ArrayList<>();
+        commands.forEach(command -> descriptions.add(command.toString()));
+        return descriptions;
+    }
+
+    /**
+     * Tests that reopening a journal replays the commands accepted but not
+     * retired, across several segments and in acceptance order.
+     */
+    @Test
+    void testReplayRestoresPendingCommands(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("journal");
+        List<AugmentedCommand> expected = new ArrayList<>();
+        try (CommandJournal journal = CommandJournal.open(file, 256, catalog, clock, () -> 290)) {
+            for (int i = 0; i < 50; i++) {
+                AugmentedCommand command = parser.parse("room" + i + " turn lamp on when 0" + (i % 9 + 1)
+                        + ":00 am until current-temperature greater-than " + (280 + i) + "K");
+                long id = journal.append(command);
+                if (i % 3 == 0) {
+                    assertTrue(journal.retire(id));
+                } else {
+                    expected.add(command);
+                }
+            }
+            journal.append(parser.parse("hall set thermostat to 295K"));
+            journal.sync();
+        }
+        expected.add(parser.parse("hall set thermostat to 295K"));
+
+        try (CommandJournal journal = CommandJournal.open(file, 256, catalog, clock, () -> 290)) {
+            assertEquals(describe(expected), describe(journal.getPending().values()));
+            assertEquals(52, journal.append(parser.parse("open gate when 06:00 am")), "ids must not be reused");
+        }
+    }
+
+    /**
+     * Tests that a record torn by a crash is discarded on replay and that the
+     * journal can be appended to afterwards.
+     */
+    @Test
+    void testTornRecordIsDiscarded(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("journal");
+        long position;
+        try (CommandJournal journal = CommandJournal.open(file, 4096, catalog, clock, null)) {
+            journal.append(parser.parse("turn oven on when 07:00 am"));
+            journal.append(parser.parse("turn oven off when 08:00 am"));
+            position = 4096;
+        }
+        try (FileChannel channel = FileChannel.open(file.resolve("segment-0000000000.log"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Corrupt a byte in the middle of the second record
+            ByteBuffer first = ByteBuffer.allocate(4);
+            channel.read(first, 0);
+            int secondRecord = first.flip().getInt();
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0x7F}), secondRecord + 20);
+            assertEquals(position, channel.size());
+        }
+
+        try (CommandJournal journal = CommandJournal.open(file, 4096, catalog, clock, null)) {
+            assertEquals(1, journal.size());
+            journal.append(parser.parse("turn oven off when 09:00 am"));
+        }
+        try (CommandJournal journal = CommandJournal.open(file, 4096, catalog, clock, null)) {
+            assertEquals(List.of(LocalTime.of(7, 0), LocalTime.of(9, 0)), journal.getPending().values().stream()
+                    .map(command -> ((TimeCondition) command.getWhenCondition()).getTime())
+                    .toList());
+        }
+    }
+
+    /**
+     * Tests that a snapshot replaces the segments it covers, and that a
+     * journal reopened from it restores pending commands, device states and
+     * the records written after it.
+     */
+    @Test
+    void testSnapshotCompactsOldSegments(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("journal");
+        try (CommandJournal journal = CommandJournal.open(file, 256, catalog, clock, null)) {
+            for (int i = 0; i < 40; i++) {
+                long id = journal.append(parser.parse("room" + i + " turn lamp on when 07:00 am"));
+                if (i < 30) {
+                    journal.retire(id);
+                }
+            }
+            parser.parse("room1 turn oven on").execute();
+            journal.snapshot();
+            journal.append(parser.parse("open gate when 06:00 am"));
+            assertTrue(journal.getTailLength() < 256);
+        }
+        try (Stream<Path> files = Files.list(file)) {
+            List<String> names = files.map(path -> path.getFileName().toString()).toList();
+            assertEquals(1, names.stream().filter(name -> name.startsWith("snapshot-")).count());
+            assertTrue(names.stream().filter(name -> name.startsWith("segment-")).count() <= 2,
+                    "segments before the snapshot should be deleted: " + names);
+        }
+
+        DeviceCatalog restarted = new REPL().getCatalog();
+        try (CommandJournal journal = CommandJournal.open(file, 256, restarted, clock, null)) {
+            assertEquals(11, journal.size());
+            assertEquals(State.ON, restarted.appliance(restarted.location("room1"), restarted.find("oven")).getState());
+        }
+    }
+}
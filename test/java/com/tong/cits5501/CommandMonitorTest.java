@@ -0,0 +1,195 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.device.DeviceCatalog;
+import com.tong.cits5501.domolect.journal.CommandJournal;
+import com.tong.cits5501.domolect.schedule.CommandMonitor;
+import com.tong.cits5501.domolect.sensor.TemperatureSensor;
+import com.tong.cits5501.domolect.sensor.VirtualClock;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link CommandMonitor} and the conditions it evaluates.
+ * Runs on a {@link VirtualClock} with a sensor that follows the simulated
+ * time of day, so a whole day is replayed deterministically.
+ */
+public class CommandMonitorTest {
+
+    private final VirtualClock clock = VirtualClock.at(LocalDateTime.of(2024, 1, 1, 6, 0), ZoneOffset.UTC);
+
+    /**
+     * A sensor that reads 280K until noon and 300K from noon onwards.
+     */
+    private final TemperatureSensor sensor = () -> LocalTime.now(clock).getHour() < 12 ? 280 : 300;
+
+    private final DeviceCatalog catalog = new REPL().getCatalog();
+    private final CommandParser parser = new CommandParser(catalog, clock, sensor);
+    private final List<String> executed = new ArrayList<>();
+    private final Consumer<Command> recorder = command -> executed.add(LocalTime.now(clock) + " " + describe(command));
+    private final CommandMonitor monitor = new CommandMonitor(clock, sensor, recorder);
+
+    private static String describe(Command command) {
+        String text = command.toString();
+        return text.substring(0, text.indexOf(','));
+    }
+
+    /**
+     * Tests that parsed conditions are evaluated against the injected clock and sensor.
+     */
+    @Test
+    void testConditionsUseInjectedSources() {
+        AugmentedCommand command = parser.parse("turn lamp on when 06:30 am until current-temperature greater-than 290K");
+
+        assertFalse(command.getWhenCondition().isSatisfied());
+        assertFalse(command.getUntilCondition().isSatisfied());
+        clock.advance(Duration.ofMinutes(30));
+        assertTrue(command.getWhenCondition().isSatisfied());
+        clock.advance(Duration.ofHours(6));
+        assertTrue(command.getUntilCondition().isSatisfied());
+    }
+
+    /**
+     * Tests that a simulated day fires each command at its "when" condition
+     * and reverses it at its "until" condition.
+     */
+    @Test
+    void testSimulatedDay() {
+        monitor.submit(parser.parse("turn coffee-maker on when 07:00 am until 07:30 am"));
+        monitor.submit(parser.parse("open window when current-temperature greater-than 295K until 05:00 pm"));
+        monitor.submit(parser.parse("turn lamp on"));
+        monitor.submit(parser.parse("turn bulb on when current-temperature greater-than 295K"));
+        assertEquals(List.of("06:00 LightingCommand [lightSource=lamp"), executed);
+
+        monitor.runFor(Duration.ofDays(1));
+
+        assertEquals(List.of(
+                "06:00 LightingCommand [lightSource=lamp",
+                "07:00 ApplianceCommand [appliance=coffee-maker",
+                "07:30 ApplianceCommand [appliance=coffee-maker",
+                "12:00 BarrierCommand [barrier=window",
+                "12:00 LightingCommand [lightSource=bulb",
+                "17:00 BarrierCommand [barrier=window"), executed);
+        assertEquals(0, monitor.getPending());
+        assertEquals(0, monitor.getActive());
+    }
+
+    /**
+     * Tests that a command the executor throws on is counted and skipped
+     * without holding up the commands met with it or the reversals after it.
+     */
+    @Test
+    void testFailingCommandDoesNotStallMonitor() {
+        CommandMonitor failing = new CommandMonitor(clock, sensor, command -> {
+            if (describe(command).contains("coffee-maker")) {
+                throw new IllegalStateException("Appliance is already on");
+            }
+            recorder.accept(command);
+        });
+        failing.submit(parser.parse("turn coffee-maker on when current-temperature greater-than 295K until 01:00 pm"));
+        failing.submit(parser.parse("turn bulb on when current-temperature greater-than 295K"));
+        failing.submit(parser.parse("turn lamp on when 07:00 am until current-temperature greater-than 295K"));
+        failing.submit(parser.parse("open window when 01:00 pm"));
+
+        failing.runFor(Duration.ofDays(1));
+
+        assertEquals(List.of(
+                "07:00 LightingCommand [lightSource=lamp",
+                "12:00 LightingCommand [lightSource=bulb",
+                "12:00 LightingCommand [lightSource=lamp",
+                "13:00 BarrierCommand [barrier=window"), executed);
+        assertEquals(1, failing.getFailed());
+        assertEquals(4, failing.getExecuted());
+        assertEquals(0, failing.getPending());
+        assertEquals(0, failing.getActive());
+    }
+
+    /**
+     * Tests that a reversal the executor throws on does not stop the other
+     * reversals due at the same time, and that each is retired from the
+     * journal whatever its outcome.
+     *
+     * @param dir a temporary directory for the journal
+     * @throws IOException if the journal cannot be written
+     */
+    @Test
+    void testFailingReversalDoesNotDropTheRest(@TempDir Path dir) throws IOException {
+        try (CommandJournal journal = CommandJournal.open(dir.resolve("journal"), catalog, clock, sensor)) {
+            CommandMonitor failing = new CommandMonitor(clock, sensor, command -> {
+                if (LocalTime.now(clock).getHour() == 8) {
+                    throw new IllegalStateException("Device did not respond");
+                }
+                recorder.accept(command);
+            }, journal);
+            failing.submit(parser.parse("turn lamp on until 08:00 am"));
+            failing.submit(parser.parse("turn coffee-maker on until 08:00 am"));
+            failing.submit(parser.parse("open window until 09:00 am"));
+            assertEquals(3, journal.size());
+
+            failing.runFor(Duration.ofHours(4));
+
+            assertEquals(2, failing.getFailed());
+            assertEquals(0, failing.getActive());
+            assertEquals(0, journal.size(), "every reversal should be retired");
+            assertEquals("09:00 BarrierCommand [barrier=window", executed.get(executed.size() - 1));
+        }
+    }
+
+    /**
+     * Tests that a monitor keeps its journal up to date and that a monitor
+     * over the reopened journal picks up where the first left off: a command
+     * already carried out is carried out again and reversed on time, and a
+     * command still waiting for its "when" condition keeps waiting.
+     *
+     * @param dir a temporary directory for the journal
+     * @throws IOException if the journal cannot be written
+     */
+    @Test
+    void testJournalRebuildsScheduleAfterRestart(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("journal");
+        try (CommandJournal journal = CommandJournal.open(file, catalog, clock, sensor)) {
+            CommandMonitor journaled = new CommandMonitor(clock, sensor, recorder, journal);
+            journaled.submit(parser.parse("turn coffee-maker on when 07:00 am until 07:30 am"));
+            journaled.submit(parser.parse("turn lamp on"));
+            journaled.submit(parser.parse("open window when current-temperature greater-than 295K"));
+            assertEquals(2, journal.size(), "the lamp command is done and should be retired");
+
+            journaled.runFor(Duration.ofMinutes(70));
+            assertEquals(2, journal.size(), "the coffee-maker is still to be turned off");
+        }
+        assertEquals(List.of(
+                "06:00 LightingCommand [lightSource=lamp",
+                "07:00 ApplianceCommand [appliance=coffee-maker"), executed);
+        executed.clear();
+
+        DeviceCatalog restarted = new REPL().getCatalog();
+        try (CommandJournal journal = CommandJournal.open(file, restarted, clock, sensor)) {
+            CommandMonitor recovered = new CommandMonitor(clock, sensor, recorder, journal);
+            assertEquals(List.of("07:10 ApplianceCommand [appliance=coffee-maker"), executed);
+            assertEquals(1, recovered.getPending());
+            assertEquals(1, recovered.getActive());
+
+            recovered.runFor(Duration.ofHours(6));
+            assertEquals(List.of(
+                    "07:10 ApplianceCommand [appliance=coffee-maker",
+                    "07:30 ApplianceCommand [appliance=coffee-maker",
+                    "12:00 BarrierCommand [barrier=window"), executed);
+            assertEquals(0, journal.size());
+        }
+    }
+}
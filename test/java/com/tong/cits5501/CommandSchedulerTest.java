@@ -0,0 +1,79 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.schedule.CommandScheduler;
+import com.tong.cits5501.domolect.schedule.TimingWheel;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link CommandScheduler}.
+ * Verifies that time-conditioned commands fire at their minute, wrap past
+ * midnight and can be cancelled.
+ */
+public class CommandSchedulerTest {
+
+    private final CommandParser parser = new REPL().getParser();
+    private final List<String> fired = new ArrayList<>();
+    private final CommandScheduler scheduler = new CommandScheduler(LocalTime.of(22, 0),
+            command -> fired.add(scheduledTime() + " " + command.getCommand().getClass().getSimpleName()));
+
+    private String scheduledTime() {
+        return scheduler.getTime().toString();
+    }
+
+    /**
+     * Tests that commands fire in time order at their minute, including
+     * commands due after midnight.
+     */
+    @Test
+    void testCommandsFireAtTheirMinute() {
+        scheduler.schedule(parser.parse("open gate when 06:15 am"));
+        scheduler.schedule(parser.parse("turn lamp on when 10:30 pm"));
+        scheduler.schedule(parser.parse("turn coffee-maker on when 11:59 pm"));
+
+        scheduler.advance(Duration.ofMinutes(30));
+        assertEquals(List.of("22:30 LightingCommand"), fired);
+        assertEquals(2, scheduler.size());
+
+        scheduler.advance(Duration.ofHours(12));
+        assertEquals(List.of("22:30 LightingCommand", "23:59 ApplianceCommand", "06:15 BarrierCommand"), fired);
+        assertEquals(0, scheduler.size());
+    }
+
+    /**
+     * Tests that a cancelled command never fires and that a command for the
+     * current minute waits a full day.
+     */
+    @Test
+    void testCancelAndSameMinute() {
+        TimingWheel.Timer<AugmentedCommand> lamp = scheduler.schedule(parser.parse("turn lamp on when 10:05 pm"));
+        scheduler.schedule(parser.parse("close gate when 10:00 pm"));
+
+        assertTrue(scheduler.cancel(lamp));
+        assertFalse(scheduler.cancel(lamp), "a timer can only be cancelled once");
+        scheduler.advance(Duration.ofHours(23));
+        assertTrue(fired.isEmpty());
+
+        scheduler.advance(Duration.ofHours(1));
+        assertEquals(List.of("22:00 BarrierCommand"), fired);
+    }
+
+    /**
+     * Tests that commands without a time "when" condition are rejected.
+     */
+    @Test
+    void testRejectsCommandWithoutTimeCondition() {
+        assertThrows(IllegalArgumentException.class, () -> scheduler.schedule(parser.parse("turn lamp on")));
+        assertThrows(IllegalArgumentException.class,
+                () -> scheduler.schedule(parser.parse("turn lamp on when current-temperature less-than 290K")));
+    }
+}
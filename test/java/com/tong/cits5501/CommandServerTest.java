@@ -0,0 +1,199 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.device.DeviceCatalog;
+import com.tong.cits5501.domolect.execution.LocationDispatcher;
+import com.tong.cits5501.domolect.metrics.Latencies;
+import com.tong.cits5501.parser.CommandServer;
+import com.tong.cits5501.parser.ParseError;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link CommandServer}.
+ */
+public class CommandServerTest {
+
+    /**
+     * Tests that lines pipelined in one write over TCP are answered in order,
+     * that only the commands parsed successfully are executed, and that
+     * {@code exit} closes the connection.
+     */
+    @Test
+    void testPipelinedLinesAreAnsweredInOrder() throws IOException {
+        List<AugmentedCommand> executed = Collections.synchronizedList(new ArrayList<>());
+        try (CommandServer server = new CommandServer(new REPL(), executed::add, 2)) {
+            SocketAddress address = server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel channel = SocketChannel.open(address)) {
+                send(channel, "turn lamp on\r\nkitchen open gate when 07:30 am\nfly to the moon\nexit\n");
+                BufferedReader reader = reader(channel);
+                assertTrue(response(reader).startsWith("Command recognized: "));
+                String second = response(reader);
+                assertTrue(second.contains("When condition: "), second);
+                assertTrue(response(reader).startsWith("Error"));
+                assertNull(reader.readLine(), "the connection should be closed after exit");
+            }
+            assertEquals(2, executed.size());
+            assertEquals(3, server.getLines());
+            assertEquals(1, server.getAccepted());
+        }
+    }
+
+    /**
+     * Tests that the server answers over a Unix-domain socket, and that an
+     * overlong line is rejected without losing the lines after it.
+     */
+    @Test
+    void testUnixDomainSocketAndOverlongLine(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("domolect.sock");
+        try (CommandServer server = new CommandServer(new REPL(), command -> { }, 1)) {
+            server.bind(UnixDomainSocketAddress.of(path));
+            try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                channel.connect(UnixDomainSocketAddress.of(path));
+                send(channel, "x".repeat(CommandServer.MAX_LINE * 2) + "\nturn lamp off\n");
+                BufferedReader reader = reader(channel);
+                assertEquals("Error: Line too long", response(reader));
+                assertTrue(response(reader).startsWith("Command recognized: "));
+            }
+        }
+        assertFalse(Files.exists(path), "the socket file should be removed on close");
+    }
+
+    /**
+     * Tests that a line of exactly {@link CommandServer#MAX_LINE} bytes is
+     * accepted whichever terminator it has, and that one byte more is not.
+     */
+    @Test
+    void testLineOfMaximumLength() throws IOException {
+        String action = " turn lamp on";
+        String longest = "a".repeat(CommandServer.MAX_LINE - action.length()) + action;
+        try (CommandServer server = new CommandServer(new REPL(), command -> { }, 1)) {
+            SocketAddress address = server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel channel = SocketChannel.open(address)) {
+                send(channel, longest + "\n" + longest.replace("lamp", "bulb") + "\r\n" + "a" + longest + "\r\n");
+                BufferedReader reader = reader(channel);
+                assertTrue(response(reader).startsWith("Command recognized: "));
+                assertTrue(response(reader).startsWith("Command recognized: "));
+                assertEquals("Error: Line too long", response(reader));
+            }
+        }
+    }
+
+    /**
+     * Tests that commands handed to a {@link LocationDispatcher} are carried
+     * out on its shard threads rather than on the event loops.
+     */
+    @Test
+    void testCommandsAreCarriedOutOffTheEventLoop() throws IOException, InterruptedException {
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        try (LocationDispatcher dispatcher = new LocationDispatcher(2, command -> threads.add(Thread.currentThread().getName()));
+             CommandServer server = new CommandServer(new REPL(), command -> dispatcher.accept(command.getCommand()), 2)) {
+            SocketAddress address = server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel channel = SocketChannel.open(address)) {
+                send(channel, "kitchen turn lamp on\nhall open gate\nexit\n");
+                BufferedReader reader = reader(channel);
+                response(reader);
+                response(reader);
+                assertNull(reader.readLine());
+            }
+            dispatcher.awaitIdle();
+            assertEquals(2, threads.size());
+            for (String thread : threads) {
+                assertTrue(thread.startsWith("domolect-shard-"), thread);
+            }
+        }
+    }
+
+    /**
+     * Tests that the server caps the locations its clients can add to the
+     * catalog, keeping a lower cap it was given, and that lines naming
+     * locations already known are still served once the cap is reached.
+     */
+    @Test
+    void testNewLocationsAreCapped() throws IOException {
+        REPL unlimited = new REPL();
+        new CommandServer(unlimited, command -> { }, 1).close();
+        assertEquals(CommandServer.MAX_LOCATIONS, unlimited.getCatalog().getLocationLimit());
+
+        REPL repl = new REPL();
+        DeviceCatalog catalog = repl.getCatalog();
+        catalog.limitLocations(2);
+        try (CommandServer server = new CommandServer(repl, command -> { }, 1)) {
+            SocketAddress address = server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel channel = SocketChannel.open(address)) {
+                send(channel, "kitchen turn lamp on\nhall turn lamp on\nattic turn lamp on\nkitchen turn lamp off\n");
+                BufferedReader reader = reader(channel);
+                assertTrue(response(reader).startsWith("Command recognized: "));
+                assertTrue(response(reader).startsWith("Command recognized: "));
+                String refused = response(reader);
+                assertTrue(refused.contains(ParseError.TOO_MANY_LOCATIONS.getMessage()), refused);
+                assertTrue(response(reader).startsWith("Command recognized: "));
+            }
+        }
+        assertEquals(2, catalog.getLocationLimit());
+        assertNull(catalog.findLocation("attic", 0, 5), "a refused location should not be interned");
+    }
+
+    /**
+     * Tests that clients can read latencies through the meta-commands but
+     * not reset them or change their sampling.
+     */
+    @Test
+    void testMetaCommandsAreReadOnly() throws IOException {
+        try (CommandServer server = new CommandServer(new REPL(), command -> { }, 1)) {
+            SocketAddress address = server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel channel = SocketChannel.open(address)) {
+                send(channel, ":latency\n:latency reset\n:latency sample 1\n");
+                BufferedReader reader = reader(channel);
+                assertFalse(response(reader).startsWith("Error"));
+                assertEquals("Error: Only :latency may be run here", response(reader));
+                assertEquals("Error: Only :latency may be run here", response(reader));
+            }
+        }
+        assertEquals(Latencies.DEFAULT_SAMPLING, Latencies.getSampling());
+    }
+
+    private static void send(SocketChannel channel, String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static BufferedReader reader(SocketChannel channel) {
+        return new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+    }
+
+    private static String response(BufferedReader reader) throws IOException {
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            if (response.length() > 0) {
+                response.append('\n');
+            }
+            response.append(line);
+        }
+        return response.toString();
+    }
+}
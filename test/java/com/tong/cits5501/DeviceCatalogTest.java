@@ -0,0 +1,121 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.LightingCommand;
+import com.tong.cits5501.domolect.command.Location;
+import com.tong.cits5501.domolect.constant.DeviceKind;
+import com.tong.cits5501.domolect.constant.State;
+import com.tong.cits5501.domolect.device.Appliance;
+import com.tong.cits5501.domolect.device.DeviceCatalog;
+import com.tong.cits5501.domolect.device.DeviceStateStore;
+import com.tong.cits5501.domolect.device.LightSource;
+import com.tong.cits5501.parser.CommandParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link DeviceCatalog}.
+ * Verifies name lookup and that devices are canonical per (location, name) pair.
+ */
+public class DeviceCatalogTest {
+
+    private DeviceCatalog catalog;
+
+    /**
+     * Sets up a catalog with a small vocabulary before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        catalog = new DeviceCatalog();
+        catalog.register(DeviceKind.LIGHT_SOURCE, List.of("lamp", "bulb"));
+        catalog.register(DeviceKind.APPLIANCE, List.of("oven", "coffee-maker"));
+        catalog.register(DeviceKind.THERMAL_DEVICE, List.of("oven", "thermostat"));
+    }
+
+    /**
+     * Tests that a name can be found from a region of a larger string and
+     * that a name registered under two kinds belongs to both.
+     */
+    @Test
+    void testFindByRegion() {
+        String line = "kitchen turn oven on";
+        DeviceCatalog.Entry oven = catalog.find(line, 13, 17);
+
+        assertNotNull(oven, "oven should be found from the middle of the line");
+        assertEquals("oven", oven.getName());
+        assertTrue(oven.is(DeviceKind.APPLIANCE));
+        assertTrue(oven.is(DeviceKind.THERMAL_DEVICE));
+        assertFalse(oven.is(DeviceKind.LIGHT_SOURCE));
+        assertNull(catalog.find(line, 0, 7), "kitchen is not a device");
+    }
+
+    /**
+     * Tests that the same (location, name) pair always yields the same device
+     * object, and that different locations yield different devices.
+     */
+    @Test
+    void testCanonicalDevices() {
+        DeviceCatalog.Entry lamp = catalog.find("lamp");
+        Location kitchen = catalog.location("kitchen");
+
+        assertSame(kitchen, catalog.location("kitchen"), "locations should be interned");
+        assertSame(catalog.lightSource(kitchen, lamp), catalog.lightSource(kitchen, lamp));
+        assertSame(catalog.lightSource(null, lamp), catalog.lightSource(null, lamp));
+        assertNotSame(catalog.lightSource(kitchen, lamp), catalog.lightSource(null, lamp));
+        assertThrows(IllegalArgumentException.class, () -> catalog.appliance(kitchen, lamp));
+    }
+
+    /**
+     * Tests that two parsed commands addressing the same device share it.
+     */
+    @Test
+    void testParsedCommandsShareDevice() {
+        CommandParser parser = new CommandParser(catalog);
+        LightSource first = ((LightingCommand) parser.parse("kitchen turn lamp on").getCommand()).getLightSource();
+        LightSource second = ((LightingCommand) parser.parse("kitchen turn lamp off").getCommand()).getLightSource();
+        LightSource elsewhere = ((LightingCommand) parser.parse("hall turn lamp off").getCommand()).getLightSource();
+
+        assertSame(first, second);
+        assertNotSame(first, elsewhere);
+    }
+
+    /**
+     * Tests that invalid lines leave no location behind in the catalog, and
+     * that a valid line adds its location.
+     */
+    @Test
+    void testInvalidLinesAddNoLocation() {
+        CommandParser parser = new CommandParser(catalog);
+        assertFalse(parser.tryParse("junk1 x").isSuccess());
+        assertFalse(parser.tryParse("junk2 turn lamp sideways").isSuccess());
+        assertFalse(parser.tryParse("junk3 turn lamp on until 13:00 pm").isSuccess());
+
+        assertNull(catalog.findLocation("junk1", 0, 5));
+        assertNull(catalog.findLocation("junk2", 0, 5));
+        assertNull(catalog.findLocation("junk3", 0, 5));
+
+        assertTrue(parser.tryParse("attic turn lamp on").isSuccess());
+        assertSame(catalog.location("attic"), catalog.findLocation("attic", 0, 5));
+    }
+
+    /**
+     * Tests that device states live in the catalog's shared state store.
+     */
+    @Test
+    void testStatesLiveInStore() {
+        DeviceStateStore store = catalog.getStateStore();
+        LightSource lamp = catalog.lightSource(null, catalog.find("lamp"));
+        Appliance oven = catalog.appliance(catalog.location("kitchen"), catalog.find("oven"));
+        lamp.turnOn();
+        oven.turnOn();
+        oven.turnOff();
+
+        assertEquals(State.ON, lamp.getState());
+        assertEquals(State.OFF, oven.getState());
+        assertEquals(1, store.count(State.ON));
+        assertArrayEquals(new byte[]{DeviceStateStore.ON, DeviceStateStore.OFF}, store.snapshot());
+    }
+}
@@ -0,0 +1,122 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.constant.State;
+import com.tong.cits5501.domolect.device.DeviceStateStore;
+import com.tong.cits5501.domolect.device.LightSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test for concurrent device state transitions.
+ * Many threads switch the same devices on and off at once; every transition
+ * that reports success must be a real change of state, so for a device that
+ * starts off the successful "on" transitions outnumber the successful "off"
+ * transitions by exactly one if it ends on, and equal them if it ends off.
+ */
+public class DeviceStateConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    /**
+     * Runs {@code task} on {@link #THREADS} threads released at the same moment.
+     */
+    private static void race(ThrowingTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThrowingTask {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Tests that contended transitions on a small set of devices are neither
+     * lost nor duplicated.
+     */
+    @Test
+    void testNoLostOrDuplicatedTransitions() throws Exception {
+        int devices = 4;
+        int attempts = 200_000;
+        DeviceStateStore store = new DeviceStateStore();
+        for (int i = 0; i < devices; i++) {
+            store.register(State.OFF);
+        }
+        AtomicLongArray ons = new AtomicLongArray(devices);
+        AtomicLongArray offs = new AtomicLongArray(devices);
+
+        race(thread -> {
+            for (int i = 0; i < attempts; i++) {
+                int id = i % devices;
+                if ((i + thread) % 2 == 0) {
+                    if (store.transition(id, State.ON)) {
+                        ons.incrementAndGet(id);
+                    }
+                } else if (store.transition(id, State.OFF)) {
+                    offs.incrementAndGet(id);
+                }
+            }
+        });
+
+        for (int id = 0; id < devices; id++) {
+            long expected = store.get(id) == State.ON ? 1 : 0;
+            assertEquals(expected, ons.get(id) - offs.get(id), "device " + id);
+            assertTrue(ons.get(id) > 0, "device " + id + " should have been switched");
+        }
+    }
+
+    /**
+     * Tests that when many threads turn the same light source on and off,
+     * each call either changes its state or throws.
+     */
+    @Test
+    void testLightSourceTransitionsAreAtomic() throws Exception {
+        LightSource lamp = new LightSource("lamp", State.OFF);
+        AtomicLongArray counts = new AtomicLongArray(2);
+
+        race(thread -> {
+            for (int i = 0; i < 1_000; i++) {
+                try {
+                    if (thread % 2 == 0) {
+                        lamp.turnOn();
+                        counts.incrementAndGet(0);
+                    } else {
+                        lamp.turnOff();
+                        counts.incrementAndGet(1);
+                    }
+                } catch (IllegalStateException e) {
+                    // Another thread got there first
+                }
+            }
+        });
+
+        long expected = lamp.getState() == State.ON ? 1 : 0;
+        assertEquals(expected, counts.get(0) - counts.get(1));
+    }
+}
@@ -0,0 +1,81 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.metrics.Latencies;
+import com.tong.cits5501.domolect.metrics.LatencyHistogram;
+import com.tong.cits5501.domolect.metrics.LatencySnapshot;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link LatencyHistogram} and {@link Latencies}.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Tests that percentiles are reported to within a bucket, and never
+     * below the true value, for values recorded from several threads.
+     */
+    @Test
+    void testPercentilesFromManyThreads() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (long value = 1; value <= 100_000; value++) {
+                    histogram.record(value);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(400_000, snapshot.getCount());
+        assertEquals(50_000.5, snapshot.getMean(), 0.001);
+        assertEquals(1, snapshot.getMin());
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long exact = (long) Math.ceil(percentile * 1000);
+            long reported = snapshot.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact && reported <= exact * 1.07,
+                    "p" + percentile + " should be near " + exact + " but was " + reported);
+        }
+        assertTrue(snapshot.getMax() >= 100_000 && snapshot.getMax() <= 107_000);
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+
+    /**
+     * Tests that parsing and executing record per command type and per
+     * device, and that the REPL meta-command reports and resets them.
+     */
+    @Test
+    void testStagesAreRecordedAndReported() {
+        REPL repl = new REPL();
+        Latencies.setSampling(1);
+        try {
+            Latencies.reset();
+            repl.getParser().parse("study turn lamp on").execute();
+            repl.parseCommand("turn lamp dim");
+
+            assertEquals(1, Latencies.snapshot().get("parse LightingCommand").getCount());
+            assertEquals(1, Latencies.snapshot().get("parse ParseError").getCount());
+            assertEquals(1, Latencies.snapshot().get("execute LightingCommand").getCount());
+            assertEquals(1, Latencies.snapshot().get("actuate study lamp").getCount());
+            assertEquals(2, Latencies.snapshot(Latencies.Stage.PARSE).getCount());
+
+            String report = repl.runMetaCommand(":latency");
+            assertTrue(report.contains("actuate study lamp: count=1"), report);
+            assertEquals("Latencies reset.", repl.runMetaCommand(":latency reset"));
+            assertTrue(Latencies.snapshot().isEmpty());
+            assertTrue(repl.runMetaCommand(":latency sample 3").startsWith("Error"));
+        } finally {
+            Latencies.setSampling(Latencies.DEFAULT_SAMPLING);
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.tong.cits5501;
 
+import com.tong.cits5501.domolect.Executable;
 import com.tong.cits5501.domolect.command.LightingCommand;
 import com.tong.cits5501.domolect.command.Location;
 import com.tong.cits5501.domolect.constant.State;
 import com.tong.cits5501.domolect.device.LightSource;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -56,4 +60,24 @@ public class LightingCommandTest {
         assertEquals(State.OFF, command.getState(), "getState() should return State.OFF");
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests that executeAsync carries the command out on a virtual thread and
+     * reports failures through the returned future.
+     */
+    @Test
+    void testExecuteAsyncRunsOnVirtualThread() {
+        LightSource lamp = new LightSource("lamp", State.OFF);
+        LightingCommand command = new LightingCommand(null, lamp, State.ON);
+
+        AtomicBoolean virtual = new AtomicBoolean();
+        Executable probe = () -> virtual.set(Thread.currentThread().isVirtual());
+        probe.executeAsync().join();
+        assertTrue(virtual.get(), "actions should run on a virtual thread");
+
+        command.executeAsync().join();
+        assertEquals(State.ON, lamp.getState());
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> command.executeAsync().join());
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+    }
+}
@@ -0,0 +1,92 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.command.Location;
+import com.tong.cits5501.domolect.execution.LocationDispatcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link LocationDispatcher}.
+ */
+public class LocationDispatcherTest {
+
+    /**
+     * A command that records its sequence number when executed.
+     */
+    private static final class Numbered extends Command {
+        final int number;
+
+        Numbered(Location location, int number) {
+            super(location);
+            this.number = number;
+        }
+
+        @Override
+        protected Enum<?> doExecute() {
+            return null;
+        }
+    }
+
+    /**
+     * Tests that commands for the same location run in submission order while
+     * commands for many locations are spread over the shards.
+     */
+    @Test
+    void testOrderIsKeptWithinEachLocation() throws Exception {
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        try (LocationDispatcher dispatcher = new LocationDispatcher(4, command -> seen
+                .computeIfAbsent(command.getLocation().getName(), name -> Collections.synchronizedList(new ArrayList<>()))
+                .add(((Numbered) command).number))) {
+            for (int i = 0; i < 10_000; i++) {
+                dispatcher.accept(new Numbered(new Location("room" + (i % 37)), i));
+            }
+            dispatcher.awaitIdle();
+            assertEquals(10_000, dispatcher.getExecuted());
+        }
+
+        assertEquals(37, seen.size());
+        for (List<Integer> numbers : seen.values()) {
+            for (int i = 1; i < numbers.size(); i++) {
+                assertTrue(numbers.get(i - 1) < numbers.get(i), "out of order: " + numbers);
+            }
+        }
+    }
+
+    /**
+     * Tests that a command without a location runs after every earlier command
+     * and before every later one.
+     */
+    @Test
+    void testGlobalCommandIsOrderedAgainstEveryLocation() {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        try (LocationDispatcher dispatcher = new LocationDispatcher(4, command -> {
+            if (command.getLocation() == null) {
+                order.add(-1);
+            } else {
+                order.add(((Numbered) command).number);
+            }
+        })) {
+            for (int i = 0; i < 100; i++) {
+                dispatcher.accept(new Numbered(new Location("room" + i), i));
+            }
+            dispatcher.accept(new Numbered(null, -1));
+            for (int i = 100; i < 200; i++) {
+                dispatcher.accept(new Numbered(new Location("room" + i), i));
+            }
+        }
+
+        assertEquals(201, order.size());
+        int global = order.indexOf(-1);
+        assertEquals(100, global);
+        assertTrue(order.subList(0, global).stream().allMatch(n -> n < 100));
+        assertTrue(order.subList(global + 1, order.size()).stream().allMatch(n -> n >= 100));
+    }
+}
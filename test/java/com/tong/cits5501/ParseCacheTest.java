@@ -0,0 +1,75 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.parser.ParseCache;
+import com.tong.cits5501.parser.ParseResult;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link ParseCache}.
+ * Verifies hit and miss accounting, key normalisation and LRU eviction.
+ */
+public class ParseCacheTest {
+
+    private final REPL repl = new REPL();
+    private final AtomicInteger parses = new AtomicInteger();
+    private final Function<String, ParseResult> parser = line -> {
+        parses.incrementAndGet();
+        return repl.getParser().tryParse(line);
+    };
+
+    /**
+     * Tests that lines differing only in whitespace share a cache entry.
+     */
+    @Test
+    void testWhitespaceVariantsShareEntry() {
+        ParseCache cache = new ParseCache(8);
+
+        ParseResult first = cache.get("kitchen turn lamp on", parser);
+        ParseResult second = cache.get("  kitchen   turn\tlamp on", parser);
+
+        assertSame(first.getCommand(), second.getCommand());
+        assertEquals(1, parses.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Tests that the least recently used entry is evicted first.
+     */
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        ParseCache cache = new ParseCache(2);
+
+        cache.get("turn lamp on", parser);
+        cache.get("turn bulb on", parser);
+        cache.get("turn lamp on", parser); // lamp is now the most recent
+        cache.get("open gate", parser);    // evicts bulb
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        cache.get("turn lamp on", parser);
+        assertEquals(3, parses.get(), "lamp should still be cached");
+        cache.get("turn bulb on", parser);
+        assertEquals(4, parses.get(), "bulb should have been evicted");
+    }
+
+    /**
+     * Tests that lines which fail to parse are not cached.
+     */
+    @Test
+    void testErrorsAreNotCached() {
+        ParseCache cache = new ParseCache(8);
+
+        assertFalse(cache.get("turn lamp dim", parser).isSuccess());
+        assertFalse(cache.get("turn lamp dim", parser).isSuccess());
+
+        assertEquals(0, cache.size());
+        assertEquals(2, parses.get());
+    }
+}
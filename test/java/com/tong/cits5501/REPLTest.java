@@ -1,5 +1,8 @@
 package com.tong.cits5501;
 
+import com.tong.cits5501.domolect.command.LightingCommand;
+import com.tong.cits5501.parser.ParseError;
+import com.tong.cits5501.parser.ParseResult;
 import com.tong.cits5501.parser.REPL;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -7,8 +10,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Test class for the REPL (Read-Eval-Print Loop) implementation.
@@ -256,4 +258,29 @@ public class REPLTest {
         assertTrue(result.contains("Until condition: TimeCondition at 23:59"));
         assertTrue(result.contains("Simulated execution: Turning on the synchrotron at basement"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that the structured API returns the parsed command without rendering it.
+     */
+    @Test
+    void testStructuredSuccess() {
+        ParseResult result = repl.parse("kitchen turn lamp on until 10:00 pm");
+        assertTrue(result.isSuccess());
+        assertInstanceOf(LightingCommand.class, result.getCommand().getCommand());
+        assertEquals("kitchen", result.getCommand().getCommand().getLocation().getName());
+        assertEquals(repl.parseCommand("kitchen turn lamp on until 10:00 pm"), result.render());
+    }
+
+    /**
+     * Tests that the structured API reports the error code and the offset of the offending word.
+     */
+    @Test
+    void testStructuredError() {
+        ParseResult result = repl.parse("kitchen turn lamp dim");
+        assertFalse(result.isSuccess());
+        assertNull(result.getCommand());
+        assertEquals(ParseError.INVALID_STATE, result.getError());
+        assertEquals(18, result.getPosition());
+        assertEquals("Error: Invalid state. Use ON or OFF", result.render());
+    }
+}
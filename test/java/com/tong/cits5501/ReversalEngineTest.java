@@ -0,0 +1,106 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.command.ApplianceCommand;
+import com.tong.cits5501.domolect.command.BarrierCommand;
+import com.tong.cits5501.domolect.command.Command;
+import com.tong.cits5501.domolect.command.LightingCommand;
+import com.tong.cits5501.domolect.constant.BarrierAction;
+import com.tong.cits5501.domolect.constant.State;
+import com.tong.cits5501.domolect.schedule.ReversalEngine;
+import com.tong.cits5501.parser.CommandParser;
+import com.tong.cits5501.parser.REPL;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link ReversalEngine}.
+ * Verifies that activated commands are reversed when their "until"
+ * condition is met, and not after they have been deactivated.
+ */
+public class ReversalEngineTest {
+
+    private final CommandParser parser = new REPL().getParser();
+    private final List<List<Command>> batches = new ArrayList<>();
+    private final ReversalEngine engine = new ReversalEngine(LocalTime.of(7, 0), batches::add);
+
+    /**
+     * Tests that a command lasting until a time of day is reversed at that
+     * minute and not before.
+     */
+    @Test
+    void testReversedAtUntilTime() {
+        AugmentedCommand brew = parser.parse("kitchen turn coffee-maker on until 07:30 am");
+        ReversalEngine.Activation activation = engine.activate(brew);
+
+        engine.advanceTo(7 * 60 + 29);
+        assertTrue(batches.isEmpty());
+        assertTrue(activation.isActive());
+
+        engine.advanceTo(7 * 60 + 30);
+        assertEquals(1, batches.size());
+        ApplianceCommand inverse = (ApplianceCommand) batches.get(0).get(0);
+        assertEquals(State.OFF, inverse.getState());
+        assertSame(((ApplianceCommand) brew.getCommand()).getAppliance(), inverse.getAppliance());
+        assertSame(brew.getCommand().getLocation(), inverse.getLocation());
+        assertFalse(activation.isActive());
+        assertEquals(0, engine.size());
+    }
+
+    /**
+     * Tests that a command lasting until a temperature is reversed by the
+     * first reading at which its condition holds, and at once if it already
+     * holds when activated.
+     */
+    @Test
+    void testReversedAtUntilTemperature() {
+        ReversalEngine.Activation window = engine.activate(
+                parser.parse("open window until current-temperature greater-than 295K"));
+
+        engine.onTemperature(290);
+        assertTrue(batches.isEmpty());
+        assertEquals(1, engine.size());
+
+        engine.onTemperature(300);
+        assertEquals(1, batches.size());
+        BarrierCommand inverse = (BarrierCommand) batches.get(0).get(0);
+        assertEquals(BarrierAction.CLOSE, inverse.getAction());
+        assertFalse(window.isActive());
+
+        ReversalEngine.Activation lamp = engine.activate(
+                parser.parse("turn lamp on until current-temperature greater-than 295K"));
+        assertEquals(2, batches.size(), "a condition that already holds should reverse at once");
+        assertEquals(State.OFF, ((LightingCommand) batches.get(1).get(0)).getState());
+        assertFalse(lamp.isActive());
+        assertEquals(0, engine.size());
+    }
+
+    /**
+     * Tests that deactivated commands are never reversed, whichever kind of
+     * condition they wait on.
+     */
+    @Test
+    void testDeactivatedCommandNotReversed() {
+        ReversalEngine.Activation gate = engine.activate(parser.parse("lock gate until 08:00 am"));
+        ReversalEngine.Activation oven = engine.activate(
+                parser.parse("turn oven on until current-temperature greater-than 295K"));
+        assertEquals(2, engine.size());
+
+        assertTrue(engine.deactivate(gate));
+        assertTrue(engine.deactivate(oven));
+        assertFalse(engine.deactivate(gate), "a command can only be deactivated once");
+        assertFalse(engine.deactivate(oven), "a command can only be deactivated once");
+        assertFalse(gate.isActive());
+        assertFalse(oven.isActive());
+
+        engine.advanceTo(9 * 60);
+        engine.onTemperature(300);
+        assertTrue(batches.isEmpty());
+        assertEquals(0, engine.size());
+    }
+}
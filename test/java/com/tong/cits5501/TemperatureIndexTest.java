@@ -0,0 +1,71 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.TemperatureCondition;
+import com.tong.cits5501.domolect.constant.Comparison;
+import com.tong.cits5501.domolect.schedule.TemperatureIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link TemperatureIndex}.
+ * Verifies that each reading reports exactly the conditions whose truth value changed.
+ */
+public class TemperatureIndexTest {
+
+    private final TemperatureIndex<String> index = new TemperatureIndex<>();
+
+    /**
+     * Sets up an index with conditions either side of 300K before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        index.add(new TemperatureCondition(300, Comparison.GREATER_THAN), "above 300");
+        index.add(new TemperatureCondition(290, Comparison.GREATER_THAN), "above 290");
+        index.add(new TemperatureCondition(300, Comparison.LESS_THAN), "below 300");
+        index.add(new TemperatureCondition(300, Comparison.EQUAL_TO), "at 300");
+    }
+
+    private Map<String, Boolean> read(int kelvin) {
+        Map<String, Boolean> changes = new TreeMap<>();
+        index.update(kelvin, changes::put);
+        return changes;
+    }
+
+    /**
+     * Tests that the first reading reports the conditions that hold.
+     */
+    @Test
+    void testFirstReadingReportsSatisfiedConditions() {
+        assertEquals(Map.of("above 290", true, "below 300", true), read(295));
+    }
+
+    /**
+     * Tests the boundaries: reaching a threshold exactly affects only the
+     * equal-to and less-than conditions, and crossing it affects greater-than.
+     */
+    @Test
+    void testThresholdBoundaries() {
+        read(295);
+        assertEquals(Map.of("below 300", false, "at 300", true), read(300));
+        assertEquals(Map.of("above 300", true, "at 300", false), read(301));
+        assertEquals(Map.of(), read(301), "an unchanged reading changes nothing");
+        assertEquals(Map.of("above 300", false, "above 290", false, "below 300", true), read(280));
+    }
+
+    /**
+     * Tests that removed conditions are no longer reported.
+     */
+    @Test
+    void testRemove() {
+        TemperatureCondition above300 = new TemperatureCondition(300, Comparison.GREATER_THAN);
+        assertTrue(index.remove(above300, "above 300"));
+        assertFalse(index.remove(above300, "above 300"));
+        assertEquals(3, index.size());
+        assertEquals(Map.of("above 290", true), read(310));
+    }
+}
@@ -0,0 +1,133 @@
+package com.tong.cits5501;
+
+import com.tong.cits5501.domolect.command.AugmentedCommand;
+import com.tong.cits5501.domolect.command.TemperatureCondition;
+import com.tong.cits5501.domolect.command.ThermalDeviceCommand;
+import com.tong.cits5501.domolect.command.TimeCondition;
+import com.tong.cits5501.parser.ParseResult;
+import com.tong.cits5501.parser.REPL;
+import com.tong.cits5501.workload.LoadDriver;
+import com.tong.cits5501.workload.LoadReport;
+import com.tong.cits5501.workload.WorkloadGenerator;
+import com.tong.cits5501.workload.WorkloadProfile;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link WorkloadGenerator} and {@link LoadDriver}.
+ */
+public class WorkloadGeneratorTest {
+
+    private final REPL repl = new REPL();
+
+    /**
+     * Tests that a seeded generator repeats itself, that every line it does
+     * not mean to be mistaken parses, and that every combination of
+     * condition forms turns up.
+     */
+    @Test
+    void testLinesAreSeededAndValid() {
+        WorkloadProfile profile = WorkloadProfile.defaults().withErrorRate(0).withSeed(42);
+        WorkloadGenerator generator = new WorkloadGenerator(repl.getGrammar(), profile);
+        WorkloadGenerator again = new WorkloadGenerator(repl.getGrammar(), profile);
+
+        Set<String> forms = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            String line = generator.next();
+            assertEquals(line, again.next());
+            ParseResult result = repl.parse(line);
+            assertTrue(result.isSuccess(), () -> line + ": " + result.render());
+            AugmentedCommand command = result.getCommand();
+            forms.add(form(command.getWhenCondition()) + "/" + form(command.getUntilCondition()));
+            if (command.getCommand() instanceof ThermalDeviceCommand) {
+                assertNull(command.getUntilCondition(), line);
+            }
+        }
+        assertEquals(9, forms.size(), forms::toString);
+    }
+
+    private static String form(Object condition) {
+        return condition instanceof TimeCondition ? "time"
+                : condition instanceof TemperatureCondition ? "temperature" : "none";
+    }
+
+    /**
+     * Tests that the share of mistaken lines follows the error rate.
+     */
+    @Test
+    void testErrorRate() {
+        WorkloadGenerator generator = new WorkloadGenerator(repl.getGrammar(), WorkloadProfile.defaults().withErrorRate(0.2));
+        int invalid = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (!repl.parse(generator.next()).isSuccess()) {
+                invalid++;
+            }
+        }
+        assertEquals(2_000, invalid, 150);
+
+        WorkloadGenerator mistaken = new WorkloadGenerator(repl.getGrammar(), WorkloadProfile.defaults().withErrorRate(1));
+        for (int i = 0; i < 1_000; i++) {
+            String line = mistaken.next();
+            assertFalse(repl.parse(line).isSuccess(), line);
+        }
+    }
+
+    /**
+     * Tests that device popularity is skewed by the Zipf exponent, and even
+     * without skew.
+     */
+    @Test
+    void testDeviceSkew() {
+        WorkloadProfile barriers = WorkloadProfile.defaults().withErrorRate(0).withActionMix(0, 1, 0)
+                .withWhenMix(1, 0, 0).withUntilMix(1, 0, 0).withLocations(100);
+        int lines = 50_000;
+        // 100 locations of 11 barriers: 1,100 devices, of which the first
+        // rank should get about 1 / H(1100, 1.2) of the lines, about 22%
+        assertEquals(0.22, topShare(barriers.withDeviceSkew(1.2), lines), 0.02);
+        assertTrue(topShare(barriers.withDeviceSkew(0), lines) < 0.002);
+    }
+
+    private double topShare(WorkloadProfile profile, int lines) {
+        WorkloadGenerator generator = new WorkloadGenerator(repl.getGrammar(), profile);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < lines; i++) {
+            String[] words = generator.next().split(" ");
+            counts.merge(words[0] + " " + words[2], 1, Integer::sum);
+        }
+        return counts.values().stream().mapToInt(Integer::intValue).max().orElse(0) / (double) lines;
+    }
+
+    /**
+     * Tests that the driver handles every line due within a run, and
+     * accounts for each one.
+     */
+    @Test
+    void testDriverHandlesEveryArrival() {
+        WorkloadProfile profile = WorkloadProfile.defaults().withRate(5_000)
+                .withArrivals(WorkloadProfile.Arrivals.UNIFORM).withTimeScale(600);
+        LoadDriver driver = new LoadDriver(repl, profile, command -> { });
+        LoadReport report = driver.run(Duration.ofMillis(500), null, progress -> { });
+
+        // One arrival every 200 us, the last 200 us before the end
+        assertEquals(2_499, report.getLines());
+        WorkloadGenerator generator = new WorkloadGenerator(repl.getGrammar(), profile);
+        int invalid = 0;
+        for (int i = 0; i < 2_499; i++) {
+            if (!repl.parse(generator.next()).isSuccess()) {
+                invalid++;
+            }
+        }
+        assertEquals(invalid, report.getInvalid());
+        assertEquals(report.getLines(), report.getServiceTime().getCount());
+        assertEquals(report.getLines(), report.getResponseTime().getCount());
+        assertTrue(report.getExecuted() > 0);
+        assertEquals(0, report.getFailed());
+    }
+}